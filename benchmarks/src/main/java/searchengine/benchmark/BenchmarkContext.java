@@ -0,0 +1,74 @@
+package searchengine.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+import searchengine.model.Site;
+import searchengine.utils.DataSaver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Приложение без веб-сервера поверх встроенной базы H2 в режиме совместимости с MySQL.
+ * Хранилище текстов и сегменты индекса пишутся во временный каталог.
+ */
+class BenchmarkContext implements AutoCloseable {
+
+    static final String SITE_URL = "https://bench.example.ru";
+    private final Path directory;
+    private final ConfigurableApplicationContext context;
+
+    BenchmarkContext(String name) throws IOException {
+        directory = Files.createTempDirectory("search-engine-" + name);
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + name
+                                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=RANK,VALUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.open-in-view=false",
+                        "indexing-settings.sites[0].url=" + SITE_URL,
+                        "indexing-settings.sites[0].name=Benchmark",
+                        "indexing-settings.sites[0].write-batch-size=100",
+                        "connection-data.user-agent=SearchEngineBenchmark",
+                        "connection-data.referrer=https://www.google.com",
+                        "search-cache.max-size=0",
+                        "content-store.directory=" + directory.resolve("content"),
+                        "search.index-directory=" + directory.resolve("index"),
+                        "index-merge.interval=1h")
+                .run();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    Site createSite() {
+        Site site = new Site();
+        site.setUrl(SITE_URL);
+        site.setName("Benchmark");
+        site.setStatus(Site.Status.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        return bean(DataSaver.class).saveSite(site);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.content.ContentStore;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.morphology.Language;
+import searchengine.utils.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись данных индексации через очередь записи сайта во встроенную базу: страница,
+ * леммы, индекс и позиции. Одна операция - страница; пачка из {@value #BATCH} страниц
+ * дожидается записи, чтобы измерялась пропускная способность, а не заполнение очереди.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@OperationsPerInvocation(DataSaverBenchmark.BATCH)
+public class DataSaverBenchmark {
+
+    static final int BATCH = 100;
+    private static final int PAGES = 200;
+    private BenchmarkContext context;
+    private DataSaver dataSaver;
+    private Site site;
+    private String[] titles;
+    private long[] pointers;
+    private Map<String, Float>[] ranks;
+    private byte[][] positions;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        context = new BenchmarkContext("datasaver");
+        dataSaver = context.bean(DataSaver.class);
+        ContentStore contentStore = context.bean(ContentStore.class);
+        site = context.createSite();
+        HtmlCorpus corpus = new HtmlCorpus(3);
+        titles = new String[PAGES];
+        pointers = new long[PAGES];
+        ranks = new Map[PAGES];
+        positions = new byte[PAGES][];
+        for (int i = 0; i < PAGES; i++) {
+            String html = corpus.page(i);
+            HtmlContent content = HtmlExtractor.extract(html);
+            String text = content.getText();
+            int[] offsets = WordOffsets.find(text);
+            Map<String, int[]> pagePositions = LemmaFinder.findLemmaPositions(text, offsets, Language.DEFAULT);
+            Map<String, Float> pageRanks = new HashMap<>();
+            pagePositions.forEach((lemma, wordPositions) -> pageRanks.put(lemma, (float) wordPositions.length));
+            titles[i] = content.getTitle();
+            pointers[i] = contentStore.write(text, WordOffsets.encode(offsets), html);
+            ranks[i] = pageRanks;
+            positions[i] = PositionCodec.encode(pagePositions);
+        }
+    }
+
+    @Benchmark
+    public void saveIndexingData() {
+        for (int i = 0; i < BATCH; i++) {
+            int number = next++;
+            int source = number % PAGES;
+            Page page = new Page();
+            page.setSite(site);
+            page.setPath("/page/" + number);
+            page.setCode(200);
+            page.setTitle(titles[source]);
+            page.setContent("");
+            page.setContentPointer(pointers[source]);
+            dataSaver.saveIndexingData(page, ranks[source], positions[source]);
+        }
+        dataSaver.flush(site);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+    }
+}
@@ -0,0 +1,97 @@
+package searchengine.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Детерминированный корпус русскоязычных страниц: частоты слов распределены по закону Ципфа,
+ * в разметке есть меню, заголовки, скрипты и вкрапления английских слов, как на новостных сайтах.
+ */
+public class HtmlCorpus {
+
+    static final String[] WORDS = {
+            "год", "человек", "время", "дело", "жизнь", "день", "рука", "работа", "слово", "место",
+            "вопрос", "лицо", "глаз", "страна", "друг", "сторона", "дом", "случай", "ребёнок", "голова",
+            "система", "вид", "конец", "город", "часть", "женщина", "земля", "решение", "власть", "машина",
+            "закон", "война", "история", "образ", "право", "мир", "компания", "проект", "рынок", "цена",
+            "правительство", "президент", "министр", "банк", "рубль", "доллар", "нефть", "газ", "экономика", "бюджет",
+            "школа", "университет", "студент", "курс", "программа", "данные", "сеть", "сайт", "поиск", "страница",
+            "говорить", "сказать", "знать", "стать", "мочь", "хотеть", "видеть", "получить", "сделать", "работать",
+            "сообщить", "заявить", "отметить", "рассказать", "объявить", "решить", "начать", "продолжить", "выйти", "открыть",
+            "новый", "большой", "российский", "главный", "первый", "последний", "высокий", "государственный", "важный", "международный",
+            "быстрый", "крупный", "местный", "старый", "молодой", "сильный", "открытый", "общий", "полный", "личный",
+            "годы", "людей", "временем", "делах", "жизни", "дня", "руками", "работы", "словами", "местах",
+            "вопросов", "странах", "друзьями", "домов", "случаях", "детей", "городах", "частями", "решения", "законов",
+            "говорил", "сказала", "знают", "стали", "могут", "хотели", "видел", "получили", "сделано", "работают",
+            "новая", "большие", "российских", "главной", "первых", "последние", "важным", "международной", "крупнейших", "местные",
+            "очень", "также", "только", "уже", "ещё", "всегда", "сегодня", "вчера", "теперь", "именно"
+    };
+    private static final String[] ENGLISH = {"online", "market", "data", "cloud", "service", "update", "release", "team"};
+    private static final String[] SEPARATORS = {" и ", " в ", " на ", " по ", " с ", " о ", ", ", " для ", " что ", " не "};
+    private final Random random;
+    private final double[] cumulative;
+
+    public HtmlCorpus(long seed) {
+        random = new Random(seed);
+        cumulative = new double[WORDS.length];
+        double sum = 0;
+        for (int i = 0; i < WORDS.length; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < WORDS.length; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public String word() {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return WORDS[index >= 0 ? index : Math.min(WORDS.length - 1, -index - 1)];
+    }
+
+    public String words(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) builder.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            builder.append(random.nextInt(40) == 0 ? ENGLISH[random.nextInt(ENGLISH.length)] : word());
+        }
+        return builder.toString();
+    }
+
+    public String sentence() {
+        String words = words(6 + random.nextInt(9));
+        return Character.toUpperCase(words.charAt(0)) + words.substring(1) + ". ";
+    }
+
+    public String text(int sentences) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            builder.append(sentence());
+        }
+        return builder.toString();
+    }
+
+    public String page(int number) {
+        StringBuilder html = new StringBuilder(16_384);
+        html.append("<!DOCTYPE html><html lang=\"ru\"><head><meta charset=\"utf-8\"><title>")
+                .append(words(5)).append("</title>")
+                .append("<script>window.dataLayer=window.dataLayer||[];function gtag(){dataLayer.push(arguments);}</script>")
+                .append("<style>.menu{display:flex}.article p{margin:0 0 1em}</style></head><body>")
+                .append("<nav class=\"menu\"><ul>");
+        for (int i = 0; i < 10; i++) {
+            html.append("<li><a href=\"/rubric/").append(i).append("/\">").append(words(2)).append("</a></li>");
+        }
+        html.append("</ul></nav><main class=\"article\"><h1>").append(words(7)).append("</h1>");
+        int paragraphs = 8 + random.nextInt(8);
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<p>").append(text(3 + random.nextInt(4)));
+            if (random.nextInt(3) == 0) {
+                html.append("<a href=\"/news/").append(number).append('/').append(i).append("/\">")
+                        .append(words(3)).append("</a>");
+            }
+            html.append("</p>");
+        }
+        html.append("</main><footer><p>© ").append(words(4)).append("</p></footer></body></html>");
+        return html.toString();
+    }
+}
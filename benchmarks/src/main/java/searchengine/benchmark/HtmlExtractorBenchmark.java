@@ -0,0 +1,51 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.utils.HtmlContent;
+import searchengine.utils.HtmlExtractor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Извлечение заголовка, текста и ссылок страниц корпуса {@link HtmlCorpus}: однопроходным
+ * {@link HtmlExtractor} и через документ Jsoup, как это делалось раньше.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlExtractorBenchmark {
+
+    private static final int PAGES = 200;
+
+    private String[] pages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        HtmlCorpus corpus = new HtmlCorpus(42);
+        pages = new String[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            pages[i] = corpus.page(i);
+        }
+    }
+
+    @Benchmark
+    public HtmlContent extract() {
+        return HtmlExtractor.extract(pages[next++ % PAGES]);
+    }
+
+    @Benchmark
+    public void jsoupDocument(Blackhole blackhole) {
+        Document document = Jsoup.parse(pages[next++ % PAGES]);
+        blackhole.consume(document.title());
+        blackhole.consume(document.body().text());
+        blackhole.consume(document.getElementsByTag("a"));
+        blackhole.consume(document.toString());
+    }
+}
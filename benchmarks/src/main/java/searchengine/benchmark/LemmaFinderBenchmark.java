@@ -0,0 +1,53 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.morphology.Language;
+import searchengine.utils.HtmlExtractor;
+import searchengine.utils.LemmaFinder;
+import searchengine.utils.WordOffsets;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация текста страниц корпуса {@link HtmlCorpus}, уже извлечённого {@link HtmlExtractor},
+ * вместе с разбиением на слова, как при индексации страницы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmaFinderBenchmark {
+
+    private static final int PAGES = 200;
+
+    @Param({"russian", "russian,english"})
+    public String languages;
+
+    private List<Language> analyzers;
+    private String[] texts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        analyzers = Arrays.stream(languages.split(","))
+                .map(name -> Language.valueOf(name.toUpperCase(Locale.ROOT)))
+                .toList();
+        HtmlCorpus corpus = new HtmlCorpus(42);
+        texts = new String[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            texts[i] = HtmlExtractor.extract(corpus.page(i)).getText();
+        }
+    }
+
+    @Benchmark
+    public Map<String, int[]> findLemmaPositions() {
+        String text = texts[next++ % PAGES];
+        return LemmaFinder.findLemmaPositions(text, WordOffsets.find(text), analyzers);
+    }
+}
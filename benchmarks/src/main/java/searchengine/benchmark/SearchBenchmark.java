@@ -0,0 +1,87 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.content.ContentStore;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.morphology.Language;
+import searchengine.search.SearchIndex;
+import searchengine.services.IndexingService;
+import searchengine.utils.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск с выборкой сниппетов по синтетическому сайту из {@value #PAGES} страниц во встроенной базе.
+ * Кеш результатов отключён, запросы из одного, двух и пяти слов перебираются по кругу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int PAGES = 100_000;
+    private static final int QUERIES = 256;
+
+    @Param({"1", "2", "5"})
+    public int words;
+
+    private BenchmarkContext context;
+    private IndexingService indexingService;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = new BenchmarkContext("search");
+        DataSaver dataSaver = context.bean(DataSaver.class);
+        ContentStore contentStore = context.bean(ContentStore.class);
+        Site site = context.createSite();
+        HtmlCorpus corpus = new HtmlCorpus(11);
+        for (int number = 1; number <= PAGES; number++) {
+            String title = corpus.words(5);
+            String text = corpus.text(8 + number % 12);
+            Map<String, int[]> positions = LemmaFinder.findLemmaPositions(text, WordOffsets.find(text), Language.DEFAULT);
+            Map<String, Float> ranks = new HashMap<>();
+            positions.forEach((lemma, wordPositions) -> ranks.put(lemma, (float) wordPositions.length));
+            Page page = new Page();
+            page.setSite(site);
+            page.setPath("/page/" + number);
+            page.setCode(200);
+            page.setTitle(title);
+            page.setContent("");
+            page.setContentPointer(contentStore.write(text, WordOffsets.encode(WordOffsets.find(text)), "<html><head><title>" + title + "</title></head><body><p>"
+                    + text + "</p></body></html>"));
+            dataSaver.saveIndexingData(page, ranks, PositionCodec.encode(positions));
+        }
+        dataSaver.flush(site);
+        context.bean(SearchIndex.class).flush(site.getId());
+        indexingService = context.bean(IndexingService.class);
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            StringBuilder query = new StringBuilder();
+            for (int j = 0; j < words; j++) {
+                if (j > 0) query.append(' ');
+                query.append(corpus.word());
+            }
+            queries[i] = query.toString();
+        }
+    }
+
+    @Benchmark
+    public SearchResponse search() {
+        return indexingService.search(null, queries[next++ % QUERIES], 0, 20);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+    }
+}
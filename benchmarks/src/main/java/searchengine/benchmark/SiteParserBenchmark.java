@@ -0,0 +1,105 @@
+package searchengine.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import searchengine.config.ConnectionData;
+import searchengine.config.ContentStoreSettings;
+import searchengine.config.SiteParserData;
+import searchengine.config.SitesList;
+import searchengine.content.SegmentContentStore;
+import searchengine.crawler.CrawlMetrics;
+import searchengine.model.Site;
+import searchengine.morphology.Language;
+import searchengine.utils.DataSaver;
+import searchengine.utils.SiteParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Полный путь индексации одной страницы: загрузка, разбор HTML, лемматизация, запись текста
+ * в хранилище. Страницы отдаёт локальный HTTP-сервер из корпуса {@link HtmlCorpus},
+ * вместо базы данных подставлена заглушка {@link DataSaver}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SiteParserBenchmark {
+
+    private static final int PAGES = 200;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Path directory;
+    private SegmentContentStore contentStore;
+    private SiteParserData siteParserData;
+    private Site site;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        HtmlCorpus corpus = new HtmlCorpus(7);
+        byte[][] pages = new byte[PAGES][];
+        for (int i = 0; i < PAGES; i++) {
+            pages[i] = corpus.page(i).getBytes(StandardCharsets.UTF_8);
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/page/", exchange -> {
+            byte[] body = pages[Integer.parseInt(exchange.getRequestURI().getPath().substring(6)) % PAGES];
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(2);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        directory = Files.createTempDirectory("search-engine-parser");
+        ContentStoreSettings contentStoreSettings = new ContentStoreSettings();
+        contentStoreSettings.setDirectory(directory.toString());
+        contentStore = new SegmentContentStore(contentStoreSettings);
+        contentStore.open();
+        ConnectionData connectionData = new ConnectionData();
+        connectionData.setUserAgent("SearchEngineBenchmark");
+        connectionData.setReferrer("https://www.google.com");
+        siteParserData = new SiteParserData(Mockito.mock(DataSaver.class), connectionData, new SitesList(),
+                null, null, null, contentStore, new CrawlMetrics(new SimpleMeterRegistry()));
+        site = new Site();
+        site.setId(1);
+        site.setUrl("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+        site.setName("Benchmark");
+    }
+
+    @Benchmark
+    public boolean indexPage() {
+        return new SiteParser("/page/" + next++, site, siteParserData, Language.DEFAULT).indexPage();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        contentStore.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
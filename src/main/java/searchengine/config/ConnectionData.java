@@ -4,6 +4,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 @Getter
 @Setter
@@ -13,4 +14,8 @@ public class ConnectionData {
 
     private String userAgent;
     private String referrer;
+    /**
+     * Наибольший размер загружаемого тела страницы; более длинные страницы обрезаются.
+     */
+    private DataSize maxBodySize = DataSize.ofMegabytes(10);
 }
@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "content-store")
+public class ContentStoreSettings {
+
+    private String directory = "content";
+    private DataSize segmentSize = DataSize.ofMegabytes(256);
+    private Duration compactionInterval = Duration.ofHours(1);
+    private double compactionThreshold = 0.5;
+}
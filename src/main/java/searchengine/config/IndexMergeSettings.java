@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "index-merge")
+public class IndexMergeSettings {
+
+    private Duration interval = Duration.ofSeconds(30);
+    private int segmentsPerTier = 10;
+    private int maxMergeAtOnce = 10;
+    private DataSize floorSegmentSize = DataSize.ofMegabytes(1);
+    private DataSize maxSegmentSize = DataSize.ofGigabytes(1);
+    private double deletesThreshold = 0.3;
+    private DataSize maxBytesPerSecond = DataSize.ofMegabytes(32);
+}
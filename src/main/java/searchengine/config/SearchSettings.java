@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search")
+public class SearchSettings {
+
+    private String scorer = "bm25";
+    private float k1 = 1.2f;
+    private float b = 0.75f;
+    private String indexDirectory = "index";
+    private long flushPostings = 500_000;
+    private int maxPrefixExpansions = 64;
+    private int maxPhraseCandidates = 1000;
+}
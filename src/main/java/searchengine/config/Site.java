@@ -2,10 +2,33 @@ package searchengine.config;
 
 import lombok.Getter;
 import lombok.Setter;
+import searchengine.morphology.Language;
+
+import java.util.List;
 
 @Setter
 @Getter
 public class Site {
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 5;
     private String url;
     private String name;
+    private int writerThreads = 1;
+    private int writeQueueCapacity = 200;
+    private int writeBatchSize = 50;
+    private double requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
+    private int requestBurst = 5;
+    private int maxConnections = 4;
+    private boolean respectCrawlDelay = true;
+    private int weight = 1;
+    private int priority = 0;
+    private int maxInFlight = 32;
+    private List<Language> languages = Language.DEFAULT;
+
+    /**
+     * Частота запросов к хосту должна быть положительной: иначе следующее разрешение не появится никогда.
+     * Ноль и отрицательные значения заменяются значением по умолчанию.
+     */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond > 0 ? requestsPerSecond : DEFAULT_REQUESTS_PER_SECOND;
+    }
 }
@@ -4,6 +4,11 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.springframework.stereotype.Component;
+import searchengine.content.ContentStore;
+import searchengine.crawler.CrawlExecutors;
+import searchengine.crawler.CrawlMetrics;
+import searchengine.crawler.CrawlScheduler;
+import searchengine.crawler.PolitenessScheduler;
 import searchengine.utils.DataSaver;
 
 @Getter
@@ -15,4 +20,9 @@ public class SiteParserData {
     private final DataSaver dataSaver;
     private final ConnectionData connectionData;
     private final SitesList sitesList;
+    private final PolitenessScheduler politenessScheduler;
+    private final CrawlExecutors crawlExecutors;
+    private final CrawlScheduler crawlScheduler;
+    private final ContentStore contentStore;
+    private final CrawlMetrics crawlMetrics;
 }
@@ -5,6 +5,7 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
 
 @Getter
@@ -13,4 +14,13 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<Site> sites;
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    private int parseQueueCapacity = 64;
+    private int crawlConcurrency = 256;
+    private boolean storePositions = true;
+    private boolean incremental = false;
+    private boolean shadowReindex = false;
+    private int deleteBatchSize = 500;
+    private String checkpointDirectory = "checkpoints";
+    private Duration checkpointInterval = Duration.ofSeconds(10);
 }
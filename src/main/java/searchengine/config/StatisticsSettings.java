@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "statistics")
+public class StatisticsSettings {
+
+    private Duration flushInterval = Duration.ofSeconds(10);
+    private Duration pushInterval = Duration.ofSeconds(2);
+    private Duration streamTimeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,82 @@
+package searchengine.content;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.ContentStoreSettings;
+import searchengine.crawler.CrawlActivity;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически уплотняет закрытые сегменты хранилища: если страницы ссылаются
+ * на меньшую долю сегмента, чем {@code compaction-threshold}, живые записи
+ * копируются в текущий сегмент, указатели страниц обновляются, а сегмент удаляется.
+ * Пока идёт обход ({@link CrawlActivity}), уплотнение не выполняется, так как ещё не сохранённые
+ * страницы могут ссылаться на закрытые сегменты.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContentCompactor {
+
+    private final ContentStore contentStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentStoreSettings settings;
+    private final CrawlActivity crawlActivity;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "content-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Logger logger = LogManager.getLogger(ContentCompactor.class);
+
+    @PostConstruct
+    public void start() {
+        long interval = settings.getCompactionInterval().toMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                logger.warn("Content compaction failed - " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public void compact() {
+        for (int segment : contentStore.sealedSegments()) {
+            if (crawlActivity.isCrawling()) return;
+            long used = contentStore.usedBytes(segment);
+            List<long[]> live = new ArrayList<>();
+            jdbcTemplate.query("select id, content_pointer from page where content_pointer >= ? and content_pointer < ?",
+                    rs -> {
+                        live.add(new long[]{rs.getInt("id"), rs.getLong("content_pointer")});
+                    }, ContentPointer.segmentStart(segment), ContentPointer.segmentStart(segment + 1));
+            long liveBytes = 0;
+            for (long[] page : live) {
+                liveBytes += contentStore.recordSize(page[1]);
+            }
+            if (used > 0 && liveBytes >= settings.getCompactionThreshold() * used) continue;
+            List<Object[]> updates = new ArrayList<>(live.size());
+            for (long[] page : live) {
+                updates.add(new Object[]{contentStore.copy(page[1]), (int) page[0], page[1]});
+            }
+            jdbcTemplate.batchUpdate("update page set content_pointer = ? where id = ? and content_pointer = ?", updates);
+            contentStore.dropSegment(segment);
+            logger.info("Content segment " + segment + " compacted: " + live.size() + " live pages, "
+                    + (used - liveBytes) + " bytes freed");
+        }
+    }
+}
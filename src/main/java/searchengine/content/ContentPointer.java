@@ -0,0 +1,25 @@
+package searchengine.content;
+
+/**
+ * Указатель на запись хранилища: номер сегмента в старших 32 битах, смещение - в младших.
+ */
+public class ContentPointer {
+
+    private ContentPointer() {}
+
+    public static long of(int segment, int offset) {
+        return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    public static int segment(long pointer) {
+        return (int) (pointer >>> 32);
+    }
+
+    public static int offset(long pointer) {
+        return (int) pointer;
+    }
+
+    public static long segmentStart(int segment) {
+        return of(segment, 0);
+    }
+}
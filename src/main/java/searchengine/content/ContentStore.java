@@ -0,0 +1,39 @@
+package searchengine.content;
+
+import java.util.Collection;
+
+/**
+ * Хранилище содержимого страниц вне базы данных. Запись адресуется указателем,
+ * который сохраняется в строке страницы; запись, на которую не ссылается ни одна страница,
+ * считается удалённой и освобождается при уплотнении.
+ */
+public interface ContentStore {
+
+    /**
+     * @param wordOffsets границы слов текста в записи {@link searchengine.utils.WordOffsets#encode(int[])}
+     */
+    long write(String text, byte[] wordOffsets, String html);
+
+    /**
+     * Возвращает текст страницы с границами слов или {@code null}, если записи уже нет.
+     */
+    StoredText readText(long pointer);
+
+    String readHtml(long pointer);
+
+    /**
+     * Сегменты, в которые запись уже не идёт.
+     */
+    Collection<Integer> sealedSegments();
+
+    long usedBytes(int segment);
+
+    int recordSize(long pointer);
+
+    /**
+     * Копирует запись без перепаковки в текущий сегмент и возвращает новый указатель.
+     */
+    long copy(long pointer);
+
+    void dropSegment(int segment);
+}
@@ -0,0 +1,110 @@
+package searchengine.content;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Файл сегмента, отображённый в память целиком. Файл создаётся сразу нужного размера,
+ * записи добавляются в конец; незаписанная часть заполнена нулями, по ним при открытии
+ * находится конец данных. Запись: длина сжатых данных, длины текста, границ слов и HTML в байтах,
+ * сжатые данные.
+ */
+class Segment {
+
+    static final int HEADER = 16;
+    private final int id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int end;
+
+    private Segment(int id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static Segment create(int id, Path path, int capacity) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(capacity);
+            return new Segment(id, path, file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+    }
+
+    static Segment open(int id, Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            Segment segment = new Segment(id, path, file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length()));
+            int position = 0;
+            while (position + HEADER <= segment.buffer.capacity() && segment.buffer.getInt(position) > 0) {
+                position += HEADER + segment.buffer.getInt(position);
+            }
+            segment.end = position;
+            return segment;
+        }
+    }
+
+    int getId() {
+        return id;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    int remaining() {
+        return buffer.capacity() - end;
+    }
+
+    /**
+     * Дописывает запись и возвращает её смещение. Заголовок пишется последним,
+     * чтобы недописанная запись не считалась существующей.
+     */
+    int append(byte[] record) {
+        int offset = end;
+        buffer.put(offset + 4, record, 4, record.length - 4);
+        buffer.putInt(offset, record.length - HEADER);
+        end += record.length;
+        return offset;
+    }
+
+    int recordSize(int offset) {
+        return HEADER + buffer.getInt(offset);
+    }
+
+    int textLength(int offset) {
+        return buffer.getInt(offset + 4);
+    }
+
+    int wordOffsetsLength(int offset) {
+        return buffer.getInt(offset + 8);
+    }
+
+    int htmlLength(int offset) {
+        return buffer.getInt(offset + 12);
+    }
+
+    /**
+     * Сжатые данные записи как срез отображённой области, без копирования.
+     */
+    ByteBuffer payload(int offset) {
+        return buffer.slice(offset + HEADER, buffer.getInt(offset));
+    }
+
+    byte[] record(int offset) {
+        byte[] result = new byte[recordSize(offset)];
+        buffer.get(offset, result);
+        return result;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,197 @@
+package searchengine.content;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import searchengine.config.ContentStoreSettings;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Хранилище содержимого в файлах сегментов, отображённых в память. Текст, границы слов и HTML
+ * страницы сжимаются одним потоком deflate в этом порядке, поэтому для сниппета распаковываются
+ * только текст и границы. Сжатые данные читаются прямо из отображённой области.
+ */
+@Component
+public class SegmentContentStore implements ContentStore {
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".dat";
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private Segment active;
+    private static final Logger logger = LogManager.getLogger(SegmentContentStore.class);
+
+    public SegmentContentStore(ContentStoreSettings settings) {
+        directory = Paths.get(settings.getDirectory());
+        segmentSize = (int) Math.min(Integer.MAX_VALUE, settings.getSegmentSize().toBytes());
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                segments.put(id, Segment.open(id, file));
+            }
+        }
+        OptionalInt last = segments.keySet().stream().mapToInt(Integer::intValue).max();
+        active = last.isPresent() ? segments.get(last.getAsInt()) : newSegment(1, segmentSize);
+        logger.info("Content store opened: " + segments.size() + " segments in " + directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void close() {
+        segments.values().forEach(Segment::force);
+    }
+
+    @Override
+    public long write(String text, byte[] wordOffsets, String html) {
+        byte[] record = encode(text, wordOffsets, html);
+        synchronized (this) {
+            if (active.remaining() < record.length) {
+                active = newSegment(active.getId() + 1, Math.max(segmentSize, record.length));
+            }
+            return ContentPointer.of(active.getId(), active.append(record));
+        }
+    }
+
+    @Override
+    public StoredText readText(long pointer) {
+        Segment segment = segments.get(ContentPointer.segment(pointer));
+        if (Objects.isNull(segment)) return null;
+        int offset = ContentPointer.offset(pointer);
+        int textLength = segment.textLength(offset);
+        byte[] bytes = inflate(segment.payload(offset), textLength + segment.wordOffsetsLength(offset));
+        int end = Math.min(textLength, bytes.length);
+        return new StoredText(new String(bytes, 0, end, StandardCharsets.UTF_8), Arrays.copyOfRange(bytes, end, bytes.length));
+    }
+
+    @Override
+    public String readHtml(long pointer) {
+        Segment segment = segments.get(ContentPointer.segment(pointer));
+        if (Objects.isNull(segment)) return null;
+        int offset = ContentPointer.offset(pointer);
+        int skipped = segment.textLength(offset) + segment.wordOffsetsLength(offset);
+        byte[] bytes = inflate(segment.payload(offset), skipped + segment.htmlLength(offset));
+        return new String(bytes, skipped, bytes.length - skipped, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized Collection<Integer> sealedSegments() {
+        List<Integer> result = new ArrayList<>(segments.keySet());
+        result.remove(Integer.valueOf(active.getId()));
+        Collections.sort(result);
+        return result;
+    }
+
+    @Override
+    public long usedBytes(int segment) {
+        Segment found = segments.get(segment);
+        return Objects.isNull(found) ? 0 : found.getEnd();
+    }
+
+    @Override
+    public int recordSize(long pointer) {
+        Segment segment = segments.get(ContentPointer.segment(pointer));
+        return Objects.isNull(segment) ? 0 : segment.recordSize(ContentPointer.offset(pointer));
+    }
+
+    @Override
+    public long copy(long pointer) {
+        byte[] record = segments.get(ContentPointer.segment(pointer)).record(ContentPointer.offset(pointer));
+        synchronized (this) {
+            if (active.remaining() < record.length) {
+                active = newSegment(active.getId() + 1, Math.max(segmentSize, record.length));
+            }
+            return ContentPointer.of(active.getId(), active.append(record));
+        }
+    }
+
+    @Override
+    public synchronized void dropSegment(int segment) {
+        if (segment == active.getId()) return;
+        Segment removed = segments.remove(segment);
+        if (Objects.isNull(removed)) return;
+        try {
+            removed.delete();
+        } catch (IOException e) {
+            logger.warn("Failed to delete content segment " + segment + " - " + e.getMessage());
+        }
+    }
+
+    private Segment newSegment(int id, int capacity) {
+        try {
+            Segment segment = Segment.create(id, directory.resolve(String.format("%s%06d%s", PREFIX, id, SUFFIX)), capacity);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(String text, byte[] wordOffsets, String html) {
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[] htmlBytes = html.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Segment.HEADER
+                + (textBytes.length + wordOffsets.length + htmlBytes.length) / 3);
+        out.writeBytes(new byte[Segment.HEADER]);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] chunk = new byte[8192];
+        try {
+            deflater.setInput(textBytes);
+            while (!deflater.needsInput()) out.write(chunk, 0, deflater.deflate(chunk));
+            deflater.setInput(wordOffsets);
+            while (!deflater.needsInput()) out.write(chunk, 0, deflater.deflate(chunk));
+            deflater.setInput(htmlBytes);
+            deflater.finish();
+            while (!deflater.finished()) out.write(chunk, 0, deflater.deflate(chunk));
+        } finally {
+            deflater.end();
+        }
+        byte[] record = out.toByteArray();
+        ByteBuffer header = ByteBuffer.wrap(record);
+        header.putInt(0, record.length - Segment.HEADER);
+        header.putInt(4, textBytes.length);
+        header.putInt(8, wordOffsets.length);
+        header.putInt(12, htmlBytes.length);
+        return record;
+    }
+
+    private static byte[] inflate(ByteBuffer payload, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+            byte[] result = new byte[length];
+            int done = 0;
+            while (done < length) {
+                int count = inflater.inflate(result, done, length - done);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) break;
+                done += count;
+            }
+            return done == length ? result : Arrays.copyOf(result, done);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted content record", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.content;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Текст страницы из хранилища содержимого вместе с границами слов, сохранёнными при индексации,
+ * чтобы сниппет строился без повторного разбора текста.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StoredText {
+
+    private final String text;
+    private final byte[] wordOffsets;
+}
@@ -1,14 +1,22 @@
 package searchengine.controllers;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.search.IndexMergeStatistics;
+import searchengine.dto.search.SearchCacheStatistics;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.search.IndexMerger;
+import searchengine.search.SearchCache;
 import searchengine.services.IndexingService;
+import searchengine.services.StatisticsPublisher;
 import searchengine.services.StatisticsService;
 
 @RestController
@@ -17,10 +25,17 @@ public class ApiController {
 
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
+    private final SearchCache searchCache;
+    private final IndexMerger indexMerger;
+    private final StatisticsPublisher statisticsPublisher;
 
-    public ApiController(StatisticsService statisticsService, IndexingService indexingService) {
+    public ApiController(StatisticsService statisticsService, IndexingService indexingService, SearchCache searchCache,
+                         IndexMerger indexMerger, StatisticsPublisher statisticsPublisher) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
+        this.searchCache = searchCache;
+        this.indexMerger = indexMerger;
+        this.statisticsPublisher = statisticsPublisher;
     }
 
     @GetMapping("/statistics")
@@ -28,9 +43,14 @@ public class ApiController {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping(path = "/statistics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter statisticsStream() {
+        return statisticsPublisher.subscribe();
+    }
+
     @GetMapping("/startIndexing")
-    public ResponseEntity<IndexingResponse> startIndexing() {
-        return ResponseEntity.ok(indexingService.startIndexing());
+    public ResponseEntity<IndexingResponse> startIndexing(@RequestParam(defaultValue = "false") boolean resume) {
+        return ResponseEntity.ok(indexingService.startIndexing(resume));
     }
 
     @GetMapping("/stopIndexing")
@@ -44,7 +64,19 @@ public class ApiController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<SearchResponse> search(String query, String site) {
-        return ResponseEntity.ok(indexingService.search(site, query));
+    public ResponseEntity<SearchResponse> search(String query, String site,
+                                                 @RequestParam(defaultValue = "0") int offset,
+                                                 @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(indexingService.search(site, query, offset, limit));
+    }
+
+    @GetMapping("/searchCache")
+    public ResponseEntity<SearchCacheStatistics> searchCache() {
+        return ResponseEntity.ok(searchCache.getStatistics());
+    }
+
+    @GetMapping("/indexMerges")
+    public ResponseEntity<IndexMergeStatistics> indexMerges() {
+        return ResponseEntity.ok(indexMerger.getStatistics());
     }
 }
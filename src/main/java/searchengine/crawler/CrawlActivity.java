@@ -0,0 +1,14 @@
+package searchengine.crawler;
+
+/**
+ * Признак того, что идёт обход или индексация отдельной страницы: пока он есть, в хранилище
+ * содержимого могут быть записи, на которые страницы в базе ещё не ссылаются.
+ */
+public interface CrawlActivity {
+
+    /**
+     * {@code true}, пока не сохранены все страницы запущенных обходов, в том числе
+     * остановленных, и страниц, индексируемых по одной.
+     */
+    boolean isCrawling();
+}
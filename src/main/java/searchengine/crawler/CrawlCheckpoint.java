@@ -0,0 +1,131 @@
+package searchengine.crawler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Журнал границы обхода одного сайта. Принятый в очередь путь записывается строкой {@code O путь},
+ * обработанный - строкой {@code D путь}. Записи копятся в памяти и дописываются в конец файла
+ * при очередной контрольной точке. Когда в журнале накапливается вдвое больше записей, чем
+ * встреченных путей, он заменяется компактным снимком границы.
+ */
+class CrawlCheckpoint {
+
+    private static final int MIN_COMPACT_RECORDS = 10_000;
+    private static final byte OFFERED = 'O';
+    private static final byte DONE = 'D';
+    private final Path file;
+    private final CrawlFrontier frontier;
+    private final Runnable beforeWrite;
+    private final Queue<String> records = new ConcurrentLinkedQueue<>();
+    private long written;
+    private boolean closed;
+
+    /**
+     * @param beforeWrite сохраняет данные страниц, переданные на запись до вызова, чтобы журнал
+     *                    не отмечал обработанными страницы, которых ещё нет в базе
+     */
+    CrawlCheckpoint(Path file, CrawlFrontier frontier, Runnable beforeWrite) {
+        this.file = file;
+        this.frontier = frontier;
+        this.beforeWrite = beforeWrite;
+    }
+
+    void offered(String path) {
+        records.add((char) OFFERED + " " + path);
+    }
+
+    void done(String path) {
+        records.add((char) DONE + " " + path);
+    }
+
+    /**
+     * Дописывает накопленные записи в журнал или заменяет его снимком границы.
+     */
+    synchronized void write() throws IOException {
+        if (closed) return;
+        List<String> drained = new ArrayList<>();
+        for (String record; (record = records.poll()) != null; ) {
+            drained.add(record);
+        }
+        if (written + drained.size() > Math.max(MIN_COMPACT_RECORDS, 2L * frontier.visitedCount())) {
+            compact();
+            return;
+        }
+        if (drained.isEmpty()) return;
+        beforeWrite.run();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            writeLines(channel, drained);
+            channel.force(false);
+        }
+        written += drained.size();
+    }
+
+    /**
+     * Записывает снимок границы во временный файл и атомарно заменяет им журнал.
+     * Записи, накопленные до снимка, в нём уже учтены.
+     */
+    synchronized void compact() throws IOException {
+        if (closed) return;
+        records.clear();
+        List<String> lines = new ArrayList<>();
+        frontier.snapshot(path -> lines.add((char) DONE + " " + path), path -> lines.add((char) OFFERED + " " + path));
+        beforeWrite.run();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeLines(channel, lines);
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        written = lines.size();
+    }
+
+    /**
+     * Удаляет журнал; последующие контрольные точки не записываются.
+     */
+    synchronized void delete() throws IOException {
+        closed = true;
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Восстанавливает границу из журнала. Недописанная последняя строка пропускается.
+     */
+    static void restore(Path file, CrawlFrontier frontier) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+        Set<String> done = new HashSet<>();
+        Set<String> outstanding = new LinkedHashSet<>();
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            if (line.length() < 3 || line.charAt(1) != ' ') continue;
+            String path = line.substring(2);
+            if (line.charAt(0) == DONE) {
+                done.add(path);
+                outstanding.remove(path);
+            } else if (line.charAt(0) == OFFERED && !done.contains(path)) {
+                outstanding.add(path);
+            }
+        }
+        frontier.restore(done, outstanding);
+    }
+
+    private static void writeLines(FileChannel channel, List<String> lines) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
@@ -0,0 +1,131 @@
+package searchengine.crawler;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контрольные точки границ обхода в каталоге {@code checkpoint-directory}, по файлу на сайт.
+ * Журналы идущих обходов дописываются раз в {@code checkpoint-interval}, поэтому прерванный
+ * остановкой или сбоем обход можно продолжить, не загружая обработанные страницы заново.
+ */
+@Component
+@RequiredArgsConstructor
+public class CrawlCheckpoints {
+
+    private final SitesList sitesList;
+    private final Map<Integer, CrawlCheckpoint> active = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Path directory;
+    private static final Logger logger = LogManager.getLogger(CrawlCheckpoints.class);
+
+    @PostConstruct
+    public void start() {
+        directory = Path.of(sitesList.getCheckpointDirectory());
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long interval = sitesList.getCheckpointInterval().toMillis();
+        timer.scheduleWithFixedDelay(this::writeAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        writeAll();
+    }
+
+    /**
+     * Начинает вести журнал границы обхода сайта, заменяя прежний её текущим снимком.
+     *
+     * @param beforeWrite сохраняет переданные на запись данные страниц сайта; вызывается
+     *                    раз в {@code checkpoint-interval}, поэтому здесь же обновляется время статуса сайта
+     */
+    public void track(Site site, CrawlFrontier frontier, Runnable beforeWrite) {
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(file(site.getId()), frontier, beforeWrite);
+        frontier.attach(checkpoint);
+        try {
+            checkpoint.compact();
+        } catch (IOException e) {
+            logger.warn("Failed to write crawl checkpoint of " + site.getUrl() + " - " + e.getMessage());
+        }
+        active.put(site.getId(), checkpoint);
+    }
+
+    public boolean exists(int siteId) {
+        return Files.exists(file(siteId));
+    }
+
+    /**
+     * Восстанавливает границу обхода сайта из последней контрольной точки.
+     */
+    public CrawlFrontier restore(Site site) throws IOException {
+        CrawlFrontier frontier = new CrawlFrontier(site);
+        CrawlCheckpoint.restore(file(site.getId()), frontier);
+        return frontier;
+    }
+
+    /**
+     * Завершает журнал обхода сайта: прерванный обход сохраняется для продолжения,
+     * а журнал завершённого удаляется.
+     */
+    public void finish(int siteId, boolean interrupted) {
+        CrawlCheckpoint checkpoint = active.remove(siteId);
+        if (Objects.isNull(checkpoint)) return;
+        try {
+            if (interrupted) {
+                checkpoint.compact();
+            } else {
+                checkpoint.delete();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to finish crawl checkpoint of site " + siteId + " - " + e.getMessage());
+        }
+    }
+
+    public void delete(int siteId) {
+        CrawlCheckpoint checkpoint = active.remove(siteId);
+        try {
+            if (Objects.nonNull(checkpoint)) checkpoint.delete();
+            Files.deleteIfExists(file(siteId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete crawl checkpoint of site " + siteId + " - " + e.getMessage());
+        }
+    }
+
+    private void writeAll() {
+        active.forEach((siteId, checkpoint) -> {
+            try {
+                checkpoint.write();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to write crawl checkpoint of site " + siteId + " - " + e.getMessage());
+            }
+        });
+    }
+
+    private Path file(int siteId) {
+        return directory.resolve("site-" + siteId + ".frontier");
+    }
+}
@@ -0,0 +1,60 @@
+package searchengine.crawler;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пулы обхода сайтов: загрузка страниц выполняется в виртуальных потоках,
+ * разбор и лемматизация - в пуле размером с число процессоров.
+ * Число загруженных, но ещё не разобранных страниц ограничено.
+ */
+@Component
+public class CrawlExecutors {
+
+    private final ExecutorService fetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService parseExecutor;
+    private final Semaphore parseSlots;
+
+    public CrawlExecutors(SitesList sitesList) {
+        AtomicInteger counter = new AtomicInteger();
+        parseExecutor = Executors.newFixedThreadPool(Math.max(1, sitesList.getParseThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        parseSlots = new Semaphore(Math.max(1, sitesList.getParseQueueCapacity()));
+    }
+
+    public Executor getFetchExecutor() {
+        return fetchExecutor;
+    }
+
+    /**
+     * Передаёт задачу разбора в пул, ожидая свободного места, если очередь разбора заполнена.
+     */
+    public void parse(Runnable task) throws InterruptedException {
+        parseSlots.acquire();
+        try {
+            parseExecutor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    parseSlots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            parseSlots.release();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+        parseExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,131 @@
+package searchengine.crawler;
+
+import searchengine.model.Site;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Граница обхода сайта: множество уже встреченных путей, очередь путей, ожидающих загрузки,
+ * и пути, выданные на загрузку, но ещё не обработанные.
+ * Пути приводятся к нормальной форме, поэтому каждая страница попадает в очередь один раз.
+ * Если граница связана с {@link CrawlCheckpoint}, изменения записываются в его журнал.
+ */
+public class CrawlFrontier {
+
+    private static final int MAX_PATH_LENGTH = 255;
+    private final String host;
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile CrawlCheckpoint checkpoint;
+
+    public CrawlFrontier(Site site) {
+        String url = site.getUrl();
+        int schemeEnd = url.indexOf("//");
+        String host = schemeEnd >= 0 ? url.substring(schemeEnd + 2) : url;
+        if (host.startsWith("www.")) host = host.substring(4);
+        if (host.endsWith("/")) host = host.substring(0, host.length() - 1);
+        this.host = host;
+    }
+
+    /**
+     * Восстанавливает границу из контрольной точки: обработанные пути считаются встреченными,
+     * а оставшиеся снова ставятся в очередь.
+     */
+    void restore(Collection<String> done, Collection<String> outstanding) {
+        visited.addAll(done);
+        for (String path : outstanding) {
+            if (visited.add(path)) pending.add(path);
+        }
+    }
+
+    /**
+     * Добавляет ссылку в очередь, если она ведёт на страницу этого сайта и ещё не встречалась.
+     */
+    public boolean offer(String href) {
+        String path = normalize(href);
+        if (Objects.isNull(path) || visited.contains(path)) return false;
+        synchronized (this) {
+            if (!visited.add(path)) return false;
+            pending.add(path);
+        }
+        CrawlCheckpoint journal = checkpoint;
+        if (Objects.nonNull(journal)) journal.offered(path);
+        return true;
+    }
+
+    public synchronized String poll() {
+        String path = pending.poll();
+        if (Objects.nonNull(path)) inFlight.add(path);
+        return path;
+    }
+
+    /**
+     * Отмечает выданный путь обработанным. Пути, загрузка которых была отменена, остаются
+     * необработанными и при продолжении обхода загружаются снова.
+     */
+    public void complete(String path) {
+        if (!inFlight.remove(path)) return;
+        CrawlCheckpoint journal = checkpoint;
+        if (Objects.nonNull(journal)) journal.done(path);
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    public boolean isVisited(String path) {
+        return visited.contains(path);
+    }
+
+    public int visitedCount() {
+        return visited.size();
+    }
+
+    void attach(CrawlCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Передаёт снимок границы: {@code done} получает обработанные пути, {@code outstanding} -
+     * пути в очереди и в работе.
+     */
+    synchronized void snapshot(Consumer<String> done, Consumer<String> outstanding) {
+        Set<String> left = new HashSet<>(pending);
+        left.addAll(inFlight);
+        for (String path : visited) {
+            if (left.contains(path)) {
+                outstanding.accept(path);
+            } else {
+                done.accept(path);
+            }
+        }
+    }
+
+    public String normalize(String href) {
+        if (Objects.isNull(href)) return null;
+        String path = href.trim();
+        int fragment = path.indexOf('#');
+        if (fragment >= 0) path = path.substring(0, fragment);
+        if (path.startsWith("//")) path = "https:" + path;
+        if (path.startsWith("http://") || path.startsWith("https://")) {
+            String rest = path.substring(path.indexOf("//") + 2);
+            if (rest.startsWith("www.")) rest = rest.substring(4);
+            if (!rest.startsWith(host)) return null;
+            path = rest.substring(host.length());
+            if (!path.isEmpty() && path.charAt(0) != '/' && path.charAt(0) != '?') return null;
+        } else if (!path.startsWith("/")) {
+            return null;
+        }
+        if (path.indexOf('\n') >= 0 || path.indexOf('\r') >= 0) return null;
+        if (path.isEmpty() || path.charAt(0) == '?') path = "/" + path;
+        return path.length() > MAX_PATH_LENGTH ? null : path;
+    }
+}
@@ -0,0 +1,78 @@
+package searchengine.crawler;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+import searchengine.utils.LemmaFinder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Метрики обхода и записи: время загрузки и коды ответов по хостам, сохранённые страницы
+ * и леммы по сайтам, очередь и время записи пачек, обращения к кэшу лемматизатора.
+ * Счётчики хостов кешируются, чтобы на каждый запрос не искать их в реестре.
+ */
+@Component
+public class CrawlMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> fetchTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> responses = new ConcurrentHashMap<>();
+
+    public CrawlMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        FunctionCounter.builder("lemmatizer.cache.hits", LemmaFinder.class, type -> LemmaFinder.cacheHits())
+                .description("Словоформы, найденные в кэше лемматизатора")
+                .register(registry);
+        FunctionCounter.builder("lemmatizer.cache.misses", LemmaFinder.class, type -> LemmaFinder.cacheMisses())
+                .description("Словоформы, разобранные морфологическим анализатором")
+                .register(registry);
+        Gauge.builder("lemmatizer.cache.size", LemmaFinder.class, type -> LemmaFinder.cacheSize())
+                .register(registry);
+    }
+
+    public Timer fetchTimer(String host) {
+        return fetchTimers.computeIfAbsent(host, key -> Timer.builder("crawler.fetch")
+                .description("Время загрузки страницы")
+                .tag("host", key)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void response(String host, String status) {
+        responses.computeIfAbsent(host + " " + status, key -> Counter.builder("crawler.responses")
+                .tag("host", host)
+                .tag("status", status)
+                .register(registry)).increment();
+    }
+
+    public Counter pages(Site site) {
+        return Counter.builder("indexing.pages")
+                .description("Страницы, записанные в базу")
+                .tag("site", site.getUrl())
+                .register(registry);
+    }
+
+    public Counter lemmas(Site site) {
+        return Counter.builder("indexing.lemmas")
+                .description("Леммы записанных страниц")
+                .tag("site", site.getUrl())
+                .register(registry);
+    }
+
+    public Timer batchTimer(Site site) {
+        return Timer.builder("indexing.write.batch")
+                .description("Время записи пачки страниц")
+                .tag("site", site.getUrl())
+                .register(registry);
+    }
+
+    public void queueGauge(Site site, Supplier<Number> depth) {
+        Gauge.builder("indexing.write.queue", depth)
+                .description("Страницы в очереди записи")
+                .tag("site", site.getUrl())
+                .register(registry);
+    }
+}
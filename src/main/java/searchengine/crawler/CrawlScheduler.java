@@ -0,0 +1,83 @@
+package searchengine.crawler;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Общий для всех сайтов диспетчер обхода. Ограничивает число страниц в работе - всего
+ * и для каждого сайта - и выбирает следующий сайт по приоритету, а среди сайтов
+ * с одинаковым приоритетом - пропорционально их весу (stride scheduling).
+ */
+@Component
+public class CrawlScheduler {
+
+    private final int maxActive;
+    private final List<SiteCrawler> crawlers = new ArrayList<>();
+    private int active;
+    private double virtualTime;
+
+    public CrawlScheduler(SitesList sitesList) {
+        maxActive = Math.max(1, sitesList.getCrawlConcurrency());
+    }
+
+    public void start(SiteCrawler crawler) {
+        synchronized (this) {
+            crawler.startPass(virtualTime);
+            crawlers.add(crawler);
+        }
+        dispatch();
+    }
+
+    void release(SiteCrawler crawler, int pages) {
+        synchronized (this) {
+            active -= pages;
+            crawler.releasePages(pages);
+        }
+        dispatch();
+    }
+
+    public synchronized int getActive() {
+        return active;
+    }
+
+    private void dispatch() {
+        List<Runnable> launches = new ArrayList<>();
+        List<SiteCrawler> finished = new ArrayList<>();
+        synchronized (this) {
+            while (active < maxActive) {
+                SiteCrawler crawler = pick();
+                if (Objects.isNull(crawler)) break;
+                String path = crawler.getFrontier().poll();
+                virtualTime = crawler.takePage(virtualTime);
+                active++;
+                launches.add(() -> crawler.launch(path));
+            }
+            for (SiteCrawler crawler : crawlers) {
+                if (crawler.inFlight() == 0 && (!crawler.isActive() || !crawler.getFrontier().hasPending())) {
+                    finished.add(crawler);
+                }
+            }
+            crawlers.removeAll(finished);
+        }
+        launches.forEach(Runnable::run);
+        finished.forEach(crawler -> crawler.getCompletion().complete(crawler));
+    }
+
+    private SiteCrawler pick() {
+        SiteCrawler result = null;
+        for (SiteCrawler crawler : crawlers) {
+            if (!crawler.isActive() || crawler.inFlight() >= crawler.getMaxInFlight()
+                    || !crawler.getFrontier().hasPending()) continue;
+            if (Objects.isNull(result) || crawler.getPriority() > result.getPriority()
+                    || (crawler.getPriority() == result.getPriority()
+                    && crawler.nextPass(virtualTime) < result.nextPass(virtualTime))) {
+                result = crawler;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+package searchengine.crawler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ограничения одного хоста. Если на хосте несколько сайтов, действуют самые строгие из их ограничений.
+ */
+class HostState {
+
+    private final Map<String, Limits> sites = new HashMap<>();
+    private final Deque<Waiting> waiting = new ArrayDeque<>();
+    private double permitsPerNano;
+    private double burst;
+    private int maxConnections;
+    private double tokens;
+    private long lastRefill;
+    private int active;
+    private boolean wakeUpScheduled;
+
+    /**
+     * Задаёт ограничения сайта {@code siteUrl}; прежние ограничения того же сайта заменяются.
+     * Пока ограничений нет, задачи хоста не запускаются.
+     */
+    void limit(String siteUrl, double requestsPerSecond, int burst, int maxConnections) {
+        boolean first = sites.isEmpty();
+        if (!first) refill();
+        sites.put(siteUrl, new Limits(requestsPerSecond, Math.max(1, burst), Math.max(1, maxConnections)));
+        permitsPerNano = Double.MAX_VALUE;
+        this.burst = Integer.MAX_VALUE;
+        this.maxConnections = Integer.MAX_VALUE;
+        for (Limits limits : sites.values()) {
+            permitsPerNano = Math.min(permitsPerNano, limits.requestsPerSecond / 1_000_000_000d);
+            this.burst = Math.min(this.burst, limits.burst);
+            this.maxConnections = Math.min(this.maxConnections, limits.maxConnections);
+        }
+        tokens = first ? this.burst : Math.min(tokens, this.burst);
+        lastRefill = System.nanoTime();
+    }
+
+    boolean hasLimits(String siteUrl) {
+        return sites.containsKey(siteUrl);
+    }
+
+    void enqueue(String siteUrl, Runnable launch) {
+        waiting.add(new Waiting(siteUrl, launch));
+    }
+
+    Runnable acquire() {
+        refill();
+        if (waiting.isEmpty() || active >= maxConnections || tokens < 1) return null;
+        tokens -= 1;
+        active++;
+        return waiting.poll().launch;
+    }
+
+    void release() {
+        active--;
+    }
+
+    /**
+     * Возвращает задержку до появления следующего разрешения, если задачи ждут именно его
+     * и пробуждение ещё не запланировано, иначе -1.
+     */
+    long scheduleWakeUp() {
+        if (wakeUpScheduled || waiting.isEmpty() || active >= maxConnections) return -1;
+        wakeUpScheduled = true;
+        return (long) Math.ceil((1 - tokens) / permitsPerNano);
+    }
+
+    void wakeUp() {
+        wakeUpScheduled = false;
+    }
+
+    /**
+     * Убирает из очереди задачи сайта {@code siteUrl} и возвращает их число.
+     */
+    int clear(String siteUrl) {
+        int size = waiting.size();
+        waiting.removeIf(entry -> entry.siteUrl.equals(siteUrl));
+        return size - waiting.size();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+
+    private static class Limits {
+
+        private final double requestsPerSecond;
+        private final int burst;
+        private final int maxConnections;
+
+        Limits(double requestsPerSecond, int burst, int maxConnections) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            this.maxConnections = maxConnections;
+        }
+    }
+
+    private static class Waiting {
+
+        private final String siteUrl;
+        private final Runnable launch;
+
+        Waiting(String siteUrl, Runnable launch) {
+            this.siteUrl = siteUrl;
+            this.launch = launch;
+        }
+    }
+}
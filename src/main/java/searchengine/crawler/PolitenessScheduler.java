@@ -0,0 +1,173 @@
+package searchengine.crawler;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.Jsoup;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConnectionData;
+import searchengine.model.Site;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * Ограничивает частоту и число одновременных запросов к каждому хосту.
+ * Сайты на одном хосте делят его ограничения, и действуют самые строгие из них.
+ * Задачи, для которых ещё нет разрешения, ждут в очереди хоста и не занимают потоки пула.
+ */
+@Component
+@RequiredArgsConstructor
+public class PolitenessScheduler {
+
+    private final ConnectionData connectionData;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "politeness-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Logger logger = LogManager.getLogger(PolitenessScheduler.class);
+
+    public void register(Site site, searchengine.config.Site siteConf) {
+        double requestsPerSecond = siteConf.getRequestsPerSecond();
+        int burst = siteConf.getRequestBurst();
+        if (siteConf.isRespectCrawlDelay()) {
+            double crawlDelay = readCrawlDelay(site.getUrl());
+            if (crawlDelay > 0) {
+                requestsPerSecond = Math.min(requestsPerSecond, 1 / crawlDelay);
+                burst = 1;
+            }
+        }
+        HostState state = hosts.computeIfAbsent(host(site), host -> new HostState());
+        synchronized (state) {
+            state.limit(site.getUrl(), requestsPerSecond, burst, siteConf.getMaxConnections());
+        }
+    }
+
+    /**
+     * Запускает задачу в переданном пуле, как только хост сайта разрешит очередной запрос.
+     * Разрешение освобождается по завершении задачи. Пул может отказать уже после возврата
+     * из метода, в потоке таймера или другой задачи, поэтому об отказе сообщает {@code onRejected}.
+     */
+    public void submit(Site site, Runnable task, Executor executor, Runnable onRejected) {
+        HostState state = hosts.computeIfAbsent(host(site), host -> new HostState());
+        synchronized (state) {
+            if (!state.hasLimits(site.getUrl())) {
+                searchengine.config.Site defaults = new searchengine.config.Site();
+                state.limit(site.getUrl(), defaults.getRequestsPerSecond(), defaults.getRequestBurst(),
+                        defaults.getMaxConnections());
+            }
+            state.enqueue(site.getUrl(), () -> {
+                try {
+                    executor.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            release(state);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    release(state);
+                    onRejected.run();
+                }
+            });
+        }
+        dispatch(state);
+    }
+
+    /**
+     * Убирает из очереди хоста все задачи, ещё не получившие разрешения, и возвращает их число.
+     */
+    public int cancel(Site site) {
+        HostState state = hosts.get(host(site));
+        if (Objects.isNull(state)) return 0;
+        synchronized (state) {
+            return state.clear(site.getUrl());
+        }
+    }
+
+    private static String host(Site site) {
+        String host = URI.create(site.getUrl()).getHost();
+        return Objects.isNull(host) ? site.getUrl() : host.toLowerCase(Locale.ROOT);
+    }
+
+    private void release(HostState state) {
+        synchronized (state) {
+            state.release();
+        }
+        dispatch(state);
+    }
+
+    private void dispatch(HostState state) {
+        while (true) {
+            Runnable launch;
+            long delay = -1;
+            synchronized (state) {
+                launch = state.acquire();
+                if (Objects.isNull(launch)) delay = state.scheduleWakeUp();
+            }
+            if (Objects.isNull(launch)) {
+                if (delay >= 0) {
+                    timer.schedule(() -> {
+                        synchronized (state) {
+                            state.wakeUp();
+                        }
+                        dispatch(state);
+                    }, delay, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+            launch.run();
+        }
+    }
+
+    private double readCrawlDelay(String siteUrl) {
+        String robots;
+        try {
+            robots = Jsoup.connect(siteUrl + "/robots.txt")
+                    .userAgent(connectionData.getUserAgent())
+                    .ignoreContentType(true)
+                    .timeout(10_000)
+                    .execute()
+                    .body();
+        } catch (IOException e) {
+            logger.warn("Failed to read robots.txt of " + siteUrl + " - " + e.getMessage());
+            return 0;
+        }
+        boolean applies = false;
+        boolean agentLine = false;
+        for (String line : robots.split("\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (key.equals("user-agent")) {
+                applies = (agentLine && applies) || value.equals("*");
+                agentLine = true;
+                continue;
+            }
+            agentLine = false;
+            if (applies && key.equals("crawl-delay")) {
+                try {
+                    return Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,170 @@
+package searchengine.crawler;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import searchengine.config.SiteParserData;
+import searchengine.dto.indexing.PageState;
+import searchengine.model.Site;
+import searchengine.morphology.Language;
+import searchengine.utils.SiteParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обход одного сайта. Пути для загрузки выдаёт общий {@link CrawlScheduler},
+ * загрузка идёт через планировщик вежливости, разбор - в общем пуле разбора.
+ * По окончании обхода завершается {@link #getCompletion()}.
+ */
+@Getter
+public class SiteCrawler {
+
+    private final Site site;
+    private final CrawlFrontier frontier;
+    private final SiteParserData siteParserData;
+    private final int weight;
+    private final int priority;
+    private final int maxInFlight;
+    private final List<Language> languages;
+    private final Map<String, PageState> knownPages;
+    private final CompletableFuture<SiteCrawler> completion = new CompletableFuture<>();
+    private volatile boolean failed;
+    private volatile boolean stopped;
+    private volatile String error;
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger inFlight = new AtomicInteger();
+    @Getter(AccessLevel.NONE)
+    private double pass;
+
+    public SiteCrawler(Site site, searchengine.config.Site siteConf, CrawlFrontier frontier, SiteParserData siteParserData) {
+        this(site, siteConf, frontier, siteParserData, Map.of());
+    }
+
+    /**
+     * @param knownPages сохранённые ранее страницы сайта по пути, для повторного обхода без удаления данных
+     */
+    public SiteCrawler(Site site, searchengine.config.Site siteConf, CrawlFrontier frontier, SiteParserData siteParserData,
+                       Map<String, PageState> knownPages) {
+        this.site = site;
+        this.knownPages = knownPages;
+        this.frontier = frontier;
+        this.siteParserData = siteParserData;
+        weight = Math.max(1, siteConf.getWeight());
+        priority = siteConf.getPriority();
+        maxInFlight = Math.max(1, siteConf.getMaxInFlight());
+        languages = siteConf.getLanguages();
+    }
+
+    public PageState getKnownPage(String path) {
+        return knownPages.get(path);
+    }
+
+    public boolean isActive() {
+        return !failed && !stopped;
+    }
+
+    public boolean isFinished() {
+        return completion.isDone();
+    }
+
+    /**
+     * Разбирает загруженную страницу в пуле разбора. После остановки обхода уже загруженные
+     * страницы всё равно разбираются и сохраняются, а найденные на них ссылки остаются
+     * в границе обхода для продолжения.
+     */
+    public void parse(SiteParser parser) {
+        try {
+            siteParserData.getCrawlExecutors().parse(() -> {
+                try {
+                    parser.parse();
+                } finally {
+                    if (failed) {
+                        onPageCancelled();
+                    } else {
+                        onPageDone(parser.getPath());
+                    }
+                }
+            });
+        } catch (InterruptedException | RejectedExecutionException e) {
+            onPageCancelled();
+        }
+    }
+
+    public void onPageDone(String path) {
+        frontier.complete(path);
+        siteParserData.getCrawlScheduler().release(this, 1);
+    }
+
+    /**
+     * Освобождает место страницы, которая не была обработана; её путь остаётся в границе обхода.
+     */
+    public void onPageCancelled() {
+        siteParserData.getCrawlScheduler().release(this, 1);
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        failed = true;
+        cancelQueued();
+    }
+
+    public void stop() {
+        stopped = true;
+        cancelQueued();
+    }
+
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            completion.get(timeout, unit);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Число выданных сайту страниц, которые ещё не загружены и не разобраны.
+     */
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    void releasePages(int pages) {
+        inFlight.addAndGet(-pages);
+    }
+
+    /**
+     * Момент виртуального времени, с которого сайт может получить следующую страницу:
+     * сайт, долго не бравший страниц, не копит за это очередь ходов.
+     */
+    synchronized double nextPass(double virtualTime) {
+        return Math.max(pass, virtualTime);
+    }
+
+    synchronized void startPass(double virtualTime) {
+        pass = virtualTime;
+    }
+
+    /**
+     * Выдаёт сайту страницу: его ход сдвигается на величину, обратную весу.
+     * Возвращает момент виртуального времени, в который сайт её получил.
+     */
+    synchronized double takePage(double virtualTime) {
+        double start = nextPass(virtualTime);
+        pass = start + 1.0 / weight;
+        inFlight.incrementAndGet();
+        return start;
+    }
+
+    void launch(String path) {
+        SiteParser parser = new SiteParser(path, site, siteParserData, this);
+        siteParserData.getPolitenessScheduler().submit(site, parser::fetch,
+                siteParserData.getCrawlExecutors().getFetchExecutor(), this::onPageCancelled);
+    }
+
+    private void cancelQueued() {
+        siteParserData.getCrawlScheduler().release(this, siteParserData.getPolitenessScheduler().cancel(site));
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.index;
+
+public interface IndexEntry {
+
+    int getId();
+
+    int getSiteId();
+
+    String getLemma();
+
+    int getPageId();
+
+    float getRank();
+}
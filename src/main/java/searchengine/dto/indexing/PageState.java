@@ -0,0 +1,22 @@
+package searchengine.dto.indexing;
+
+/**
+ * Сохранённое состояние страницы для повторного обхода: заголовки для условного запроса, хэш содержимого
+ * и указатель на сохранённую разметку, из которой берутся ссылки неизменившейся страницы.
+ */
+public interface PageState {
+
+    int getId();
+
+    String getPath();
+
+    int getCode();
+
+    String getEtag();
+
+    String getLastModified();
+
+    String getContentHash();
+
+    Long getContentPointer();
+}
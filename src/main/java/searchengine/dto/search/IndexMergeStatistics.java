@@ -0,0 +1,17 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+
+@Data
+public class IndexMergeStatistics {
+
+    private long merges;
+    private long segmentsMerged;
+    private long pagesPurged;
+    private long bytesRead;
+    private long bytesWritten;
+    private long mergeTimeMillis;
+    private long throttledTimeMillis;
+    private long lastMergeMillis;
+    private int segments;
+}
@@ -0,0 +1,23 @@
+package searchengine.dto.search;
+
+/**
+ * Поля страницы, нужные для выдачи результата поиска, без исходного HTML.
+ */
+public interface PageSummary {
+
+    int getId();
+
+    String getPath();
+
+    String getSiteUrl();
+
+    String getSiteName();
+
+    String getTitle();
+
+    String getText();
+
+    byte[] getWordOffsets();
+
+    Long getContentPointer();
+}
@@ -14,14 +14,15 @@ import java.util.Objects;
 @Setter
 @Entity
 @Table(name = "page", uniqueConstraints = {@UniqueConstraint(columnNames = {"path", "site_id"}, name = "path_site_index")})
-@SQLInsert(sql = "insert ignore into page (code, content, path, site_id) values (?, ?, ?, ?)")
+@SQLInsert(sql = "insert ignore into page (code, content, content_hash, content_pointer, etag, last_modified, path, " +
+        "site_id, text, title, word_offsets) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")
 public class Page implements Serializable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(nullable = false, name = "site_id")
     private Site site;
 
@@ -34,7 +35,32 @@ public class Page implements Serializable {
     @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
     private String content;
 
-    @OneToMany(mappedBy = "page", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Column(columnDefinition = "TEXT")
+    private String title;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String text;
+
+    @Column(name = "word_offsets", columnDefinition = "MEDIUMBLOB")
+    private byte[] wordOffsets;
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
+    /**
+     * Указатель на текст и HTML страницы в {@link searchengine.content.ContentStore}.
+     * У таких страниц content пустой, а text и word_offsets не заполняются.
+     */
+    @Column(name = "content_pointer")
+    private Long contentPointer;
+
+    @OneToMany(mappedBy = "page", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Index> indexes = new ArrayList<>();
 
     @Override
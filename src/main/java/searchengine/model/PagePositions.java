@@ -0,0 +1,25 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Позиции лемм на странице, записанные {@link searchengine.utils.PositionCodec}.
+ * Хранятся отдельно от таблицы index и читаются только для фразовых запросов и ранжирования по близости.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "page_positions")
+public class PagePositions implements Serializable {
+
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Column(columnDefinition = "MEDIUMBLOB", nullable = false)
+    private byte[] positions;
+}
@@ -34,6 +34,12 @@ public class Site implements Serializable {
     @Column(nullable = false)
     private String name;
 
+    /**
+     * Сайт, который строится новым обходом вместо сайта с тем же адресом и до замены не участвует в поиске.
+     */
+    @Column(nullable = false, columnDefinition = "BIT DEFAULT 0")
+    private boolean shadow;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
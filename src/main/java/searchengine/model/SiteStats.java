@@ -0,0 +1,32 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Число страниц и лемм сайта, которое ведётся в памяти при индексации
+ * и периодически сохраняется, чтобы статистика не пересчитывалась запросами COUNT.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "site_stats")
+public class SiteStats implements Serializable {
+
+    @Id
+    @Column(name = "site_id")
+    private int siteId;
+
+    @Column(nullable = false)
+    private int pages;
+
+    @Column(nullable = false)
+    private int lemmas;
+
+    @Column(name = "updated_time", columnDefinition = "DATETIME", nullable = false)
+    private LocalDateTime updatedTime;
+}
@@ -0,0 +1,19 @@
+package searchengine.morphology;
+
+/**
+ * Морфологический анализатор одного языка.
+ */
+public interface Analyzer {
+
+    Language getLanguage();
+
+    /**
+     * Возвращает букву в нижнем регистре, если она из алфавита языка, иначе {@code 0}.
+     */
+    char normalize(char c);
+
+    /**
+     * Возвращает леммы нормализованного слова без служебных частей речи.
+     */
+    String[] lemmas(String word);
+}
@@ -0,0 +1,26 @@
+package searchengine.morphology;
+
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+
+import java.io.IOException;
+
+class EnglishAnalyzer extends MorphologyAnalyzer {
+
+    private static final String[] PARTS_OF_SPEECH = {"CONJ", "PREP", "ARTICLE", "PART", "INT", "PN"};
+
+    EnglishAnalyzer() throws IOException {
+        super(new EnglishLuceneMorphology(), PARTS_OF_SPEECH);
+    }
+
+    @Override
+    public Language getLanguage() {
+        return Language.ENGLISH;
+    }
+
+    @Override
+    public char normalize(char c) {
+        if (c >= 'a' && c <= 'z') return c;
+        if (c >= 'A' && c <= 'Z') return (char) (c + ('a' - 'A'));
+        return 0;
+    }
+}
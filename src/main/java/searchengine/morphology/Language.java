@@ -0,0 +1,32 @@
+package searchengine.morphology;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Язык анализатора. Словарь языка загружается при первом обращении
+ * и затем используется всеми потоками.
+ */
+public enum Language {
+    RUSSIAN,
+    ENGLISH;
+
+    public static final List<Language> DEFAULT = List.of(RUSSIAN);
+    private volatile Analyzer analyzer;
+
+    public Analyzer analyzer() {
+        Analyzer result = analyzer;
+        if (result != null) return result;
+        synchronized (this) {
+            if (analyzer == null) {
+                try {
+                    analyzer = this == RUSSIAN ? new RussianAnalyzer() : new EnglishAnalyzer();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return analyzer;
+        }
+    }
+}
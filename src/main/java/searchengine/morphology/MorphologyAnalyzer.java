@@ -0,0 +1,40 @@
+package searchengine.morphology;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Анализатор на основе словаря Lucene Morphology. Формы слова отбрасываются,
+ * если в их морфологической информации есть одна из служебных частей речи.
+ */
+abstract class MorphologyAnalyzer implements Analyzer {
+
+    private final LuceneMorphology morphology;
+    private final String[] excludedParts;
+
+    MorphologyAnalyzer(LuceneMorphology morphology, String[] excludedParts) {
+        this.morphology = morphology;
+        this.excludedParts = excludedParts;
+    }
+
+    @Override
+    public String[] lemmas(String word) {
+        List<String> morphInfo = morphology.getMorphInfo(word);
+        List<String> result = new ArrayList<>(morphInfo.size());
+        for (String morph : morphInfo) {
+            if (isExcluded(morph)) continue;
+            String lemma = morph.substring(0, morph.indexOf('|'));
+            if (!result.contains(lemma)) result.add(lemma);
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private boolean isExcluded(String morph) {
+        for (String part : excludedParts) {
+            if (morph.contains(part)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package searchengine.morphology;
+
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+
+import java.io.IOException;
+
+class RussianAnalyzer extends MorphologyAnalyzer {
+
+    private static final String[] PARTS_OF_SPEECH = {"СОЮЗ", "ПРЕДЛ", "МС", "КР_ПРИЛ", "МЕЖД", "ДЕЕПРИЧАСТИЕ", "L С"};
+
+    RussianAnalyzer() throws IOException {
+        super(new RussianLuceneMorphology(), PARTS_OF_SPEECH);
+    }
+
+    @Override
+    public Language getLanguage() {
+        return Language.RUSSIAN;
+    }
+
+    @Override
+    public char normalize(char c) {
+        if (c >= 'а' && c <= 'я') return c;
+        if (c >= 'А' && c <= 'Я') return (char) (c + ('а' - 'А'));
+        return 0;
+    }
+}
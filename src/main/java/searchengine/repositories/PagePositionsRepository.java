@@ -0,0 +1,9 @@
+package searchengine.repositories;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import searchengine.model.PagePositions;
+
+@Repository
+public interface PagePositionsRepository extends CrudRepository<PagePositions, Integer> {
+}
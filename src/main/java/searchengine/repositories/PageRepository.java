@@ -1,38 +1,34 @@
 package searchengine.repositories;
 
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.PageState;
+import searchengine.dto.search.PageSummary;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PageRepository extends CrudRepository<Page, Integer> {
 
-    @Query(value = "from Page p join Index i on i.page = p join Lemma l on i.lemma = l where l.lemma = :lemma")
-    Optional<List<Page>> findByLemma(String lemma);
+    @Query(value = "select p.id from Page p where p.path = :path and p.site = :site")
+    Optional<Integer> findIdByPathAndSite(String path, Site site);
 
-    @Query(value = "from Page p join Index i on i.page = p join Lemma l on i.lemma = l " +
-            "where l.lemma = :lemma and l.site = :site")
-    Optional<List<Page>> findByLemmaAndSite(String lemma, Site site);
+    @Query(value = "select p.id as id, p.path as path, s.url as siteUrl, s.name as siteName, p.title as title, " +
+            "p.text as text, p.wordOffsets as wordOffsets, p.contentPointer as contentPointer from Page p join p.site s where p.id in (:ids)")
+    List<PageSummary> findSummariesByIdIn(Collection<Integer> ids);
 
-    Optional<Page> findByPathAndSite(String path, Site site);
+    @Query(value = "select p.content from Page p where p.id = :id")
+    String findContentById(int id);
 
-    boolean existsByPathAndSite(String path, Site site);
-
-    @Modifying
-    @Transactional
-    @Query(value = "delete from Page p where p.site = :site")
-    void removeAllBySite(Site site);
-
-    @Modifying
-    @Transactional
-    void removeByPathAndSite(String path, Site site);
+    @Query(value = "select p.id as id, p.path as path, p.code as code, p.etag as etag, " +
+            "p.lastModified as lastModified, p.contentHash as contentHash, p.contentPointer as contentPointer " +
+            "from Page p where p.site = :site")
+    List<PageState> findStatesBySite(Site site);
 
     int countBySite(Site site);
 }
@@ -8,6 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -18,10 +19,26 @@ public interface SiteRepository extends CrudRepository<Site, Integer> {
     @Query("update Site s set s.status = :status, s.statusTime = :statusTime, s.lastError = :lastError where s.id = :id")
     void update(Site.Status status, LocalDateTime statusTime, String lastError, int id);
 
+    @Modifying
+    @Transactional
+    @Query("update Site s set s.statusTime = :statusTime where s.id = :id and s.status = :status")
+    void updateStatusTime(Site.Status status, LocalDateTime statusTime, int id);
+
+    @Query("select s from Site s where s.url = :url and s.shadow = false")
     Optional<Site> findByUrl(String url);
 
+    @Query("select s from Site s where s.url = :url and s.shadow = true")
+    Optional<Site> findShadowByUrl(String url);
+
+    @Query("select s.id from Site s")
+    List<Integer> findAllIds();
+
+    @Query("select s.id from Site s where s.shadow = true")
+    List<Integer> findShadowIds();
+
     @Modifying
     @Transactional
-    @Query(value = "delete from Site s where s.id = :id")
-    void remove(int id);
+    @Query("update Site s set s.shadow = case when s.id = :shadowId then false else true end " +
+            "where s.id in (:replacedId, :shadowId)")
+    void swap(int replacedId, int shadowId);
 }
@@ -0,0 +1,31 @@
+package searchengine.search;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+@Component
+@ConditionalOnProperty(name = "search.scorer", havingValue = "bm25", matchIfMissing = true)
+public class Bm25Scorer implements Scorer {
+
+    private final float k1;
+    private final float b;
+
+    public Bm25Scorer(SearchSettings settings) {
+        k1 = settings.getK1();
+        b = settings.getB();
+    }
+
+    @Override
+    public float termWeight(int documentFrequency, SiteStatistics statistics) {
+        int pageCount = Math.max(statistics.getPageCount(), documentFrequency);
+        return (float) Math.log(1 + (pageCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    @Override
+    public float score(float frequency, float termWeight, int pageLength, SiteStatistics statistics) {
+        double averageLength = statistics.getAverageLength();
+        double norm = averageLength == 0 ? 1 : 1 - b + b * pageLength / averageLength;
+        return (float) (termWeight * frequency * (k1 + 1) / (frequency + k1 * norm));
+    }
+}
@@ -0,0 +1,143 @@
+package searchengine.search;
+
+import searchengine.utils.IntIntHashMap;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Файлы индекса в каталоге: сегменты {@code site-<id>-<номер>.seg}, манифест сайта
+ * {@code site-<id>.manifest} и метка {@code site-<id>.dirty}. Метка ставится при первом изменении
+ * после публикации манифеста и снимается, когда все изменения записаны в сегменты; сайт с меткой
+ * или без манифеста при запуске перестраивается из базы. Файлы сегментов и манифеста сначала
+ * пишутся во временный файл и затем атомарно переименовываются.
+ */
+class IndexDirectory {
+
+    private static final int MANIFEST_MAGIC = 0x4D414E31;
+    private final Path root;
+
+    IndexDirectory(Path root) {
+        this.root = root;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Начинает запись сегмента; он появится под своим именем после {@link IndexSegmentWriter#finish()}.
+     */
+    IndexSegmentWriter createSegment(int siteId, int number) throws IOException {
+        return new IndexSegmentWriter(root.resolve(String.format("site-%d-%06d.seg", siteId, number)));
+    }
+
+    IndexSegment openSegment(String name) throws IOException {
+        return IndexSegment.open(root.resolve(name));
+    }
+
+    IndexManifest readManifest(int siteId) throws IOException {
+        Path file = manifest(siteId);
+        if (!Files.exists(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MANIFEST_MAGIC) throw new IOException("Not an index manifest: " + file);
+            IndexManifest manifest = new IndexManifest(in.readInt());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int deletedCount = in.readInt();
+                IntIntHashMap deleted = new IntIntHashMap(deletedCount);
+                for (int j = 0; j < deletedCount; j++) {
+                    deleted.put(in.readInt(), in.readInt());
+                }
+                manifest.getSegments().put(name, deleted);
+            }
+            return manifest;
+        }
+    }
+
+    void writeManifest(int siteId, IndexManifest manifest) throws IOException {
+        Path file = manifest(siteId);
+        Path temporary = temporary(file);
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(manifest.getNextSegment());
+            out.writeInt(manifest.getSegments().size());
+            for (Map.Entry<String, IntIntHashMap> entry : manifest.getSegments().entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                IOException[] failure = new IOException[1];
+                entry.getValue().forEach((pageId, length) -> {
+                    try {
+                        out.writeInt(pageId);
+                        out.writeInt(length);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (Objects.nonNull(failure[0])) throw failure[0];
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    boolean isDirty(int siteId) {
+        return Files.exists(root.resolve("site-" + siteId + ".dirty"));
+    }
+
+    void markDirty(int siteId) throws IOException {
+        Path file = root.resolve("site-" + siteId + ".dirty");
+        if (!Files.exists(file)) Files.createFile(file);
+    }
+
+    void markClean(int siteId) throws IOException {
+        Files.deleteIfExists(root.resolve("site-" + siteId + ".dirty"));
+    }
+
+    /**
+     * Номера сайтов, для которых на диске есть какие-либо файлы индекса.
+     */
+    Set<Integer> siteIds() throws IOException {
+        Set<Integer> result = new HashSet<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("site-"))
+                    .forEach(name -> {
+                        int end = 5;
+                        while (end < name.length() && Character.isDigit(name.charAt(end))) end++;
+                        if (end > 5) result.add(Integer.parseInt(name.substring(5, end)));
+                    });
+        }
+        return result;
+    }
+
+    /**
+     * Удаляет файлы сайта, кроме перечисленных в {@code keep}.
+     */
+    void deleteSiteFiles(int siteId, Set<String> keep) throws IOException {
+        String segmentPrefix = "site-" + siteId + "-";
+        String filePrefix = "site-" + siteId + ".";
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if ((name.startsWith(segmentPrefix) || name.startsWith(filePrefix)) && !keep.contains(name)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Path manifest(int siteId) {
+        return root.resolve("site-" + siteId + ".manifest");
+    }
+
+    static Path temporary(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+}
@@ -0,0 +1,33 @@
+package searchengine.search;
+
+import searchengine.utils.IntIntHashMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Опубликованное состояние индекса сайта на диске: сегменты от старых к новым
+ * и для каждого - удалённые из него страницы с их длинами.
+ */
+class IndexManifest {
+
+    private final int nextSegment;
+    private final Map<String, IntIntHashMap> segments;
+
+    IndexManifest(int nextSegment, Map<String, IntIntHashMap> segments) {
+        this.nextSegment = nextSegment;
+        this.segments = segments;
+    }
+
+    IndexManifest(int nextSegment) {
+        this(nextSegment, new LinkedHashMap<>());
+    }
+
+    int getNextSegment() {
+        return nextSegment;
+    }
+
+    Map<String, IntIntHashMap> getSegments() {
+        return segments;
+    }
+}
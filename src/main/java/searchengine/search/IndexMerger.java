@@ -0,0 +1,146 @@
+package searchengine.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexMergeSettings;
+import searchengine.dto.search.IndexMergeStatistics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Периодически сливает сегменты индекса сайтов по {@link TieredMergePolicy} в фоновом
+ * потоке с низким приоритетом. Скорость слияния ограничена {@code max-bytes-per-second}.
+ */
+@Component
+@RequiredArgsConstructor
+public class IndexMerger {
+
+    private final SearchIndex searchIndex;
+    private final IndexMergeSettings settings;
+    private final MeterRegistry registry;
+    private final IndexMergeStatistics statistics = new IndexMergeStatistics();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-merger");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private static final Logger logger = LogManager.getLogger(IndexMerger.class);
+
+    @PostConstruct
+    public void start() {
+        counter("index.merge.count", IndexMergeStatistics::getMerges);
+        counter("index.merge.segments", IndexMergeStatistics::getSegmentsMerged);
+        counter("index.merge.pages.purged", IndexMergeStatistics::getPagesPurged);
+        counter("index.merge.bytes.read", IndexMergeStatistics::getBytesRead);
+        counter("index.merge.bytes.written", IndexMergeStatistics::getBytesWritten);
+        counter("index.merge.millis", IndexMergeStatistics::getMergeTimeMillis);
+        counter("index.merge.throttled.millis", IndexMergeStatistics::getThrottledTimeMillis);
+        Gauge.builder("index.segments", this, merger -> merger.getStatistics().getSegments()).register(registry);
+        long interval = settings.getInterval().toMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                mergeAll();
+            } catch (RuntimeException e) {
+                logger.warn("Index merge failed - " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void counter(String name, ToLongFunction<IndexMergeStatistics> value) {
+        FunctionCounter.builder(name, statistics, merged -> {
+            synchronized (merged) {
+                return value.applyAsLong(merged);
+            }
+        }).register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public void mergeAll() {
+        TieredMergePolicy policy = new TieredMergePolicy(settings);
+        for (SiteIndex siteIndex : searchIndex.siteIndexes()) {
+            List<SiteIndex.SegmentSnapshot> merging;
+            while (!(merging = policy.select(siteIndex.segments())).isEmpty()) {
+                if (Thread.currentThread().isInterrupted()) return;
+                if (!merge(siteIndex, merging)) break;
+            }
+        }
+    }
+
+    /**
+     * Возвращает {@code false}, если слить сегменты не удалось: сайт удалён, его сегменты
+     * изменились или запись не удалась. Такой сайт пропускается до следующего запуска.
+     */
+    private boolean merge(SiteIndex siteIndex, List<SiteIndex.SegmentSnapshot> merging) {
+        long start = System.currentTimeMillis();
+        IoThrottle throttle = new IoThrottle(settings.getMaxBytesPerSecond().toBytes());
+        long written;
+        try {
+            written = siteIndex.merge(merging, throttle);
+        } catch (IOException e) {
+            logger.warn("Failed to merge index segments of site " + siteIndex.getSiteId() + " - " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (written < 0) return false;
+        long duration = System.currentTimeMillis() - start;
+        long read = 0;
+        int purged = 0;
+        for (SiteIndex.SegmentSnapshot snapshot : merging) {
+            read += snapshot.getSegment().size();
+            purged += snapshot.deletedCount();
+        }
+        synchronized (statistics) {
+            statistics.setMerges(statistics.getMerges() + 1);
+            statistics.setSegmentsMerged(statistics.getSegmentsMerged() + merging.size());
+            statistics.setPagesPurged(statistics.getPagesPurged() + purged);
+            statistics.setBytesRead(statistics.getBytesRead() + read);
+            statistics.setBytesWritten(statistics.getBytesWritten() + written);
+            statistics.setMergeTimeMillis(statistics.getMergeTimeMillis() + duration);
+            statistics.setThrottledTimeMillis(statistics.getThrottledTimeMillis() + throttle.getPausedMillis());
+            statistics.setLastMergeMillis(duration);
+        }
+        searchIndex.merged(siteIndex.getSiteId());
+        logger.info("Merged " + merging.size() + " index segments of site " + siteIndex.getSiteId() + ": "
+                + read + " -> " + written + " bytes, " + purged + " deleted pages purged in " + duration + " ms");
+        return true;
+    }
+
+    public IndexMergeStatistics getStatistics() {
+        IndexMergeStatistics result = new IndexMergeStatistics();
+        synchronized (statistics) {
+            result.setMerges(statistics.getMerges());
+            result.setSegmentsMerged(statistics.getSegmentsMerged());
+            result.setPagesPurged(statistics.getPagesPurged());
+            result.setBytesRead(statistics.getBytesRead());
+            result.setBytesWritten(statistics.getBytesWritten());
+            result.setMergeTimeMillis(statistics.getMergeTimeMillis());
+            result.setThrottledTimeMillis(statistics.getThrottledTimeMillis());
+            result.setLastMergeMillis(statistics.getLastMergeMillis());
+        }
+        int segments = 0;
+        for (SiteIndex siteIndex : searchIndex.siteIndexes()) {
+            segments += siteIndex.segments().size();
+        }
+        result.setSegments(segments);
+        return result;
+    }
+}
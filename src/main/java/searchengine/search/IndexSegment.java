@@ -0,0 +1,427 @@
+package searchengine.search;
+
+import searchengine.utils.VarInt;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Неизменяемый сегмент индекса сайта, отображённый в память только для чтения.
+ * Кешированием страниц файла занимается операционная система.
+ * <p>
+ * Файл: заголовок со смещениями разделов; списки страниц; номера страниц по возрастанию и их длины;
+ * таблица пропусков словаря (смещение каждой {@value #TERMS_PER_BLOCK}-й леммы); словарь лемм,
+ * упорядоченных по байтам UTF-8, с числом страниц и смещением списка. Разделы находятся только
+ * по смещениям из заголовка, поэтому читаются и файлы, где списки лежат последними. Список разбит на блоки по
+ * {@value #PAGES_PER_BLOCK} страниц: сначала для каждого блока последняя страница и длина в байтах,
+ * затем сами блоки - приращения номеров страниц и ранги в varint.
+ * <p>
+ * Наибольшее число страниц лемм каждого блока словаря считается при первом раскрытии префикса
+ * и служит оценкой сверху для лемм, которые раскрытие ещё не просмотрело.
+ */
+class IndexSegment implements PostingSource {
+
+    static final int MAGIC = 0x53454731;
+    static final int HEADER = 40;
+    static final int TERMS_PER_BLOCK = 32;
+    static final int PAGES_PER_BLOCK = 128;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int pageCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int pagesOffset;
+    private final int skipOffset;
+    private final int termsOffset;
+    private final int postingsOffset;
+    private volatile int[] blockMaxDocFreq;
+
+    private IndexSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an index segment: " + path);
+        }
+        pageCount = buffer.getInt(4);
+        termCount = buffer.getInt(8);
+        totalLength = buffer.getLong(12);
+        pagesOffset = buffer.getInt(20);
+        skipOffset = buffer.getInt(24);
+        termsOffset = buffer.getInt(28);
+        postingsOffset = buffer.getInt(32);
+        if (buffer.getInt(36) != buffer.capacity()) throw new IOException("Truncated index segment: " + path);
+    }
+
+    static IndexSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new IndexSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    String getName() {
+        return path.getFileName().toString();
+    }
+
+    long size() {
+        return buffer.capacity();
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public int pageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public long totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public int pageLength(int pageId) {
+        int low = 0;
+        int high = pageCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = buffer.getInt(pagesOffset + middle * 4);
+            if (value < pageId) {
+                low = middle + 1;
+            } else if (value > pageId) {
+                high = middle - 1;
+            } else {
+                return buffer.getInt(pagesOffset + (pageCount + middle) * 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Номер страницы по порядковому номеру в сегменте.
+     */
+    int pageAt(int index) {
+        return buffer.getInt(pagesOffset + index * 4);
+    }
+
+    @Override
+    public int docFreq(String lemma) {
+        int entry = findTerm(lemma.getBytes(StandardCharsets.UTF_8));
+        return entry < 0 ? 0 : VarInt.read(buffer, new int[]{entry});
+    }
+
+    @Override
+    public PostingCursor cursor(String lemma) {
+        int entry = findTerm(lemma.getBytes(StandardCharsets.UTF_8));
+        if (entry < 0) return null;
+        int[] position = {entry};
+        VarInt.read(buffer, position);
+        return new SegmentCursor(postingsOffset + VarInt.read(buffer, position));
+    }
+
+    /**
+     * Леммы с префиксом идут в словаре подряд: обход начинается с блока, найденного по таблице
+     * пропусков, и заканчивается на первой лемме после них.
+     */
+    @Override
+    public TermCursor terms(String prefix) {
+        return new PrefixCursor(prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int[] blockMaxDocFreq() {
+        int[] result = blockMaxDocFreq;
+        if (Objects.isNull(result)) {
+            result = new int[(termCount + TERMS_PER_BLOCK - 1) / TERMS_PER_BLOCK];
+            TermIterator terms = terms();
+            for (int i = 0; terms.next(); i++) {
+                result[i / TERMS_PER_BLOCK] = Math.max(result[i / TERMS_PER_BLOCK], terms.docFreq());
+            }
+            blockMaxDocFreq = result;
+        }
+        return result;
+    }
+
+    /**
+     * Длина страницы по порядковому номеру в сегменте.
+     */
+    int lengthAt(int index) {
+        return buffer.getInt(pagesOffset + (pageCount + index) * 4);
+    }
+
+    /**
+     * Обход всех лемм сегмента в порядке словаря.
+     */
+    TermIterator terms() {
+        return new TermIterator(0, termsOffset);
+    }
+
+    /**
+     * Позиция числа страниц в записи словаря для леммы или {@code -1}, если леммы нет.
+     * Блок словаря находится двоичным поиском по таблице пропусков, лемма внутри блока - перебором.
+     */
+    private int findTerm(byte[] term) {
+        if (termCount == 0) return -1;
+        int low = findBlock(term);
+        int[] position = {termsOffset + buffer.getInt(skipOffset + low * 4)};
+        int end = Math.min(termCount, (low + 1) * TERMS_PER_BLOCK);
+        for (int i = low * TERMS_PER_BLOCK; i < end; i++) {
+            int comparison = compare(position[0], term);
+            if (comparison > 0) return -1;
+            int length = VarInt.read(buffer, position);
+            position[0] += length;
+            if (comparison == 0) return position[0];
+            VarInt.read(buffer, position);
+            VarInt.read(buffer, position);
+        }
+        return -1;
+    }
+
+    /**
+     * Последний блок словаря, первая лемма которого не больше {@code term}, или первый блок.
+     */
+    private int findBlock(byte[] term) {
+        int low = 0;
+        int high = (termCount - 1) / TERMS_PER_BLOCK;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (compare(termsOffset + buffer.getInt(skipOffset + middle * 4), term) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int entry, byte[] term) {
+        int[] position = {entry};
+        int length = VarInt.read(buffer, position);
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Integer.compare(buffer.get(position[0] + i) & 0xFF, term[i] & 0xFF);
+            if (comparison != 0) return comparison;
+        }
+        return Integer.compare(length, term.length);
+    }
+
+    class TermIterator {
+
+        private final int[] position;
+        private int index;
+        private byte[] term;
+        private int docFreq;
+        private int postings;
+
+        private TermIterator(int index, int offset) {
+            this.index = index;
+            position = new int[]{offset};
+        }
+
+        boolean next() {
+            if (index == termCount) return false;
+            term = new byte[VarInt.read(buffer, position)];
+            buffer.get(position[0], term);
+            position[0] += term.length;
+            docFreq = VarInt.read(buffer, position);
+            postings = VarInt.read(buffer, position);
+            index++;
+            return true;
+        }
+
+        byte[] term() {
+            return term;
+        }
+
+        int docFreq() {
+            return docFreq;
+        }
+
+        PostingCursor cursor() {
+            return new SegmentCursor(postingsOffset + postings);
+        }
+
+        /**
+         * Размер списка страниц текущей леммы в байтах.
+         */
+        int postingsLength() {
+            int[] position = {postingsOffset + postings};
+            VarInt.read(buffer, position);
+            int blocks = VarInt.read(buffer, position);
+            int length = 0;
+            for (int b = 0; b < blocks; b++) {
+                VarInt.read(buffer, position);
+                length += VarInt.read(buffer, position);
+            }
+            return position[0] - postingsOffset - postings + length;
+        }
+    }
+
+    private class PrefixCursor implements TermCursor {
+
+        private final byte[] prefix;
+        private final TermIterator terms;
+        private final int firstBlock;
+        /**
+         * Для каждого блока от первого до последнего, где могут быть леммы с префиксом, - наибольшее
+         * число страниц леммы в нём и следующих блоках.
+         */
+        private final int[] maxDocFreqs;
+        private boolean done;
+
+        private PrefixCursor(byte[] prefix) {
+            this.prefix = prefix;
+            if (termCount == 0) {
+                firstBlock = 0;
+                maxDocFreqs = new int[0];
+                terms = null;
+                done = true;
+                return;
+            }
+            firstBlock = findBlock(prefix);
+            byte[] upper = Arrays.copyOf(prefix, prefix.length + 1);
+            upper[prefix.length] = (byte) 0xFF;
+            int lastBlock = findBlock(upper);
+            int[] blockMax = blockMaxDocFreq();
+            maxDocFreqs = new int[lastBlock - firstBlock + 1];
+            int max = 0;
+            for (int block = lastBlock; block >= firstBlock; block--) {
+                max = Math.max(max, blockMax[block]);
+                maxDocFreqs[block - firstBlock] = max;
+            }
+            terms = new TermIterator(firstBlock * TERMS_PER_BLOCK, termsOffset + buffer.getInt(skipOffset + firstBlock * 4));
+        }
+
+        @Override
+        public boolean next() {
+            while (!done && terms.next()) {
+                byte[] term = terms.term();
+                if (term.length >= prefix.length && Arrays.equals(term, 0, prefix.length, prefix, 0, prefix.length)) {
+                    return true;
+                }
+                if (Arrays.compareUnsigned(term, prefix) > 0) break;
+            }
+            done = true;
+            return false;
+        }
+
+        @Override
+        public byte[] term() {
+            return terms.term();
+        }
+
+        @Override
+        public int docFreq() {
+            return terms.docFreq();
+        }
+
+        @Override
+        public int maxDocFreq() {
+            if (done) return 0;
+            int block = Math.max(firstBlock, (terms.index - 1) / TERMS_PER_BLOCK) - firstBlock;
+            return block < maxDocFreqs.length ? maxDocFreqs[block] : 0;
+        }
+    }
+
+    private class SegmentCursor implements PostingCursor {
+
+        private final int size;
+        private final int[] blockLast;
+        private final int[] blockStart;
+        private final int[] position = new int[1];
+        private int block = -1;
+        private int remaining;
+        private int page = -1;
+        private float rank;
+
+        SegmentCursor(int offset) {
+            position[0] = offset;
+            size = VarInt.read(buffer, position);
+            int blocks = VarInt.read(buffer, position);
+            blockLast = new int[blocks];
+            blockStart = new int[blocks];
+            int last = 0;
+            int[] lengths = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                last += VarInt.read(buffer, position);
+                blockLast[b] = last;
+                lengths[b] = VarInt.read(buffer, position);
+            }
+            int start = position[0];
+            for (int b = 0; b < blocks; b++) {
+                blockStart[b] = start;
+                start += lengths[b];
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int next() {
+            if (remaining == 0 && !enterBlock(block + 1)) return page;
+            page += VarInt.read(buffer, position);
+            rank = VarInt.read(buffer, position);
+            remaining--;
+            return page;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (page >= target) return page;
+            if (block < 0 || target > blockLast[block]) {
+                int low = block + 1;
+                int high = blockLast.length;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (blockLast[middle] < target) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                if (!enterBlock(low)) return page;
+            }
+            int result;
+            do {
+                result = next();
+            } while (result < target);
+            return result;
+        }
+
+        @Override
+        public float rank() {
+            return rank;
+        }
+
+        private boolean enterBlock(int next) {
+            block = next;
+            if (block >= blockLast.length) {
+                remaining = 0;
+                page = NO_MORE;
+                return false;
+            }
+            position[0] = blockStart[block];
+            remaining = block == blockLast.length - 1 ? size - PAGES_PER_BLOCK * block : PAGES_PER_BLOCK;
+            page = block == 0 ? 0 : blockLast[block - 1];
+            return true;
+        }
+    }
+}
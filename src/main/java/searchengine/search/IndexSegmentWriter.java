@@ -0,0 +1,179 @@
+package searchengine.search;
+
+import searchengine.utils.VarInt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Записывает сегмент индекса в файл формата {@link IndexSegment}. Списки страниц сразу уходят
+ * во временный файл, в памяти остаются только таблица страниц и словарь; при завершении они
+ * дописываются после списков, а файл атомарно переименовывается. Страницы передаются по возрастанию
+ * номеров до первой леммы, леммы - по возрастанию байтов UTF-8.
+ * Ранги хранятся целыми числами: это число вхождений леммы на странице.
+ */
+class IndexSegmentWriter implements Closeable {
+
+    private final Path file;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final OutputStream postings;
+    private final ByteArrayOutputStream pageIds = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream pageLengths = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream skip = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream terms = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream listHeader = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream blockSkip = new ByteArrayOutputStream();
+    private long postingsSize;
+    private int pageCount;
+    private int termCount;
+    private long totalLength;
+    private boolean finished;
+
+    IndexSegmentWriter(Path file) throws IOException {
+        this.file = file;
+        temporary = IndexDirectory.temporary(file);
+        channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(IndexSegment.HEADER);
+        postings = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+    }
+
+    /**
+     * Добавляет все страницы и леммы буфера.
+     */
+    void addAll(MemoryIndex memory) throws IOException {
+        int[] pages = new int[memory.pageCount()];
+        int[] count = {0};
+        memory.getPageLengths().forEach((pageId, length) -> pages[count[0]++] = pageId);
+        Arrays.sort(pages);
+        for (int pageId : pages) {
+            addPage(pageId, memory.pageLength(pageId));
+        }
+        List<Map.Entry<byte[], PostingList>> entries = new ArrayList<>(memory.getPostings().size());
+        memory.getPostings().forEach((lemma, list) ->
+                entries.add(Map.entry(lemma.getBytes(StandardCharsets.UTF_8), list)));
+        entries.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+        for (Map.Entry<byte[], PostingList> entry : entries) {
+            addTerm(entry.getKey(), entry.getValue());
+        }
+    }
+
+    void addPage(int pageId, int length) {
+        writeInt(pageIds, pageId);
+        writeInt(pageLengths, length);
+        pageCount++;
+        totalLength += length;
+    }
+
+    void addTerm(byte[] term, PostingList list) throws IOException {
+        if (list.size() == 0) return;
+        if (termCount % IndexSegment.TERMS_PER_BLOCK == 0) writeInt(skip, terms.size());
+        VarInt.write(terms, term.length);
+        terms.writeBytes(term);
+        VarInt.write(terms, list.size());
+        VarInt.write(terms, (int) postingsSize);
+        termCount++;
+        blocks.reset();
+        blockSkip.reset();
+        int last = 0;
+        for (int from = 0; from < list.size(); from += IndexSegment.PAGES_PER_BLOCK) {
+            int start = blocks.size();
+            int previous = last;
+            int to = Math.min(list.size(), from + IndexSegment.PAGES_PER_BLOCK);
+            for (int i = from; i < to; i++) {
+                VarInt.write(blocks, list.pageAt(i) - previous);
+                VarInt.write(blocks, Math.round(list.rankAt(i)));
+                previous = list.pageAt(i);
+            }
+            VarInt.write(blockSkip, previous - last);
+            VarInt.write(blockSkip, blocks.size() - start);
+            last = previous;
+        }
+        listHeader.reset();
+        VarInt.write(listHeader, list.size());
+        VarInt.write(listHeader, (list.size() + IndexSegment.PAGES_PER_BLOCK - 1) / IndexSegment.PAGES_PER_BLOCK);
+        listHeader.writeTo(postings);
+        blockSkip.writeTo(postings);
+        blocks.writeTo(postings);
+        postingsSize += listHeader.size() + blockSkip.size() + blocks.size();
+        if (postingsSize > Integer.MAX_VALUE) throw new IOException("Index segment is too large: " + size() + " bytes");
+    }
+
+    int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Объём уже собранных данных в байтах.
+     */
+    long size() {
+        return IndexSegment.HEADER + postingsSize + pageIds.size() + pageLengths.size() + skip.size() + terms.size();
+    }
+
+    /**
+     * Дописывает таблицу страниц и словарь после списков, затем заголовок, и публикует файл сегмента.
+     */
+    IndexSegment finish() throws IOException {
+        postings.flush();
+        long postingsOffset = IndexSegment.HEADER;
+        long pagesOffset = postingsOffset + postingsSize;
+        long skipOffset = pagesOffset + pageIds.size() + pageLengths.size();
+        long termsOffset = skipOffset + skip.size();
+        long length = termsOffset + terms.size();
+        if (length > Integer.MAX_VALUE) throw new IOException("Index segment is too large: " + length + " bytes");
+        for (ByteArrayOutputStream section : List.of(pageIds, pageLengths, skip, terms)) {
+            write(channel, ByteBuffer.wrap(section.toByteArray()));
+        }
+        ByteBuffer header = ByteBuffer.allocate(IndexSegment.HEADER)
+                .putInt(IndexSegment.MAGIC)
+                .putInt(pageCount)
+                .putInt(termCount)
+                .putLong(totalLength)
+                .putInt((int) pagesOffset)
+                .putInt((int) skipOffset)
+                .putInt((int) termsOffset)
+                .putInt((int) postingsOffset)
+                .putInt((int) length)
+                .flip();
+        channel.position(0);
+        write(channel, header);
+        channel.force(true);
+        channel.close();
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        return IndexSegment.open(file);
+    }
+
+    /**
+     * Бросает незавершённую запись вместе с временным файлом.
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished) return;
+        channel.close();
+        Files.deleteIfExists(temporary);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
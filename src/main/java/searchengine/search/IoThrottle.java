@@ -0,0 +1,31 @@
+package searchengine.search;
+
+/**
+ * Ограничивает скорость обработки данных: если учтённых байтов больше, чем допускает
+ * заданная скорость за прошедшее время, вызывающий поток засыпает. Слияние сегментов
+ * учитывает и прочитанные, и записанные байты.
+ */
+class IoThrottle {
+
+    private final long bytesPerSecond;
+    private final long start = System.nanoTime();
+    private long bytes;
+    private long pausedNanos;
+
+    IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    void acquire(long amount) throws InterruptedException {
+        if (bytesPerSecond <= 0) return;
+        bytes += amount;
+        long ahead = bytes * 1_000_000_000L / bytesPerSecond - (System.nanoTime() - start);
+        if (ahead < 1_000_000) return;
+        Thread.sleep(ahead / 1_000_000, (int) (ahead % 1_000_000));
+        pausedNanos += ahead;
+    }
+
+    long getPausedMillis() {
+        return pausedNanos / 1_000_000;
+    }
+}
@@ -0,0 +1,175 @@
+package searchengine.search;
+
+import searchengine.utils.IntIntHashMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Изменяемая часть индекса сайта в памяти: сюда попадают страницы, записанные
+ * после последнего сброса сегмента на диск. Списки лемм ищутся по хеш-таблице,
+ * а для раскрытия префиксов рядом хранится упорядоченный набор лемм.
+ */
+class MemoryIndex implements PostingSource {
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final NavigableSet<String> terms = new TreeSet<>();
+    private final IntIntHashMap pageLengths = new IntIntHashMap();
+    private long totalLength;
+    private long postingCount;
+
+    /**
+     * Удаляет страницу из списков лемм {@code removed} и записывает её ранги по остальным леммам.
+     * Возвращает прежнюю длину страницы или {@code -1}, если страницы не было.
+     */
+    int updatePage(int pageId, Collection<String> removed, Map<String, Float> ranks) {
+        int previous = pageLength(pageId);
+        removeFromLists(pageId, removed);
+        int length = 0;
+        for (Map.Entry<String, Float> entry : ranks.entrySet()) {
+            PostingList list = list(entry.getKey());
+            int size = list.size();
+            list.add(pageId, entry.getValue());
+            postingCount += list.size() - size;
+            length += entry.getValue().intValue();
+        }
+        pageLengths.put(pageId, length);
+        totalLength += length - Math.max(previous, 0);
+        return previous;
+    }
+
+    /**
+     * Возвращает длину удалённой страницы или {@code -1}, если страницы не было.
+     */
+    int removePage(int pageId, Collection<String> lemmas) {
+        int previous = pageLength(pageId);
+        if (previous < 0) return previous;
+        removeFromLists(pageId, lemmas);
+        pageLengths.remove(pageId);
+        totalLength -= previous;
+        return previous;
+    }
+
+    private void removeFromLists(int pageId, Collection<String> lemmas) {
+        for (String lemma : lemmas) {
+            PostingList list = postings.get(lemma);
+            if (Objects.isNull(list)) continue;
+            if (list.remove(pageId)) postingCount--;
+            if (list.size() == 0) {
+                postings.remove(lemma);
+                terms.remove(lemma);
+            }
+        }
+    }
+
+    void append(String lemma, int pageId, float rank) {
+        list(lemma).append(pageId, rank);
+        pageLengths.add(pageId, (int) rank);
+        totalLength += (int) rank;
+        postingCount++;
+    }
+
+    private PostingList list(String lemma) {
+        PostingList list = postings.get(lemma);
+        if (Objects.isNull(list)) {
+            list = new PostingList();
+            postings.put(lemma, list);
+            terms.add(lemma);
+        }
+        return list;
+    }
+
+    void sort() {
+        postings.values().forEach(PostingList::sort);
+    }
+
+    boolean isEmpty() {
+        return pageLengths.size() == 0;
+    }
+
+    long postingCount() {
+        return postingCount;
+    }
+
+    Map<String, PostingList> getPostings() {
+        return postings;
+    }
+
+    IntIntHashMap getPageLengths() {
+        return pageLengths;
+    }
+
+    @Override
+    public PostingCursor cursor(String lemma) {
+        PostingList list = postings.get(lemma);
+        return Objects.isNull(list) ? null : list.cursor();
+    }
+
+    @Override
+    public int docFreq(String lemma) {
+        PostingList list = postings.get(lemma);
+        return Objects.isNull(list) ? 0 : list.size();
+    }
+
+    /**
+     * Буфер невелик, поэтому леммы с префиксом собираются сразу, и оценка сверху для оставшихся
+     * лемм точная. Леммы состоят из букв без суррогатных пар, так что порядок строк в наборе
+     * совпадает с порядком байтов UTF-8 в сегментах.
+     */
+    @Override
+    public TermCursor terms(String prefix) {
+        List<String> matching = new ArrayList<>();
+        for (String term : terms.tailSet(prefix, true)) {
+            if (!term.startsWith(prefix)) break;
+            matching.add(term);
+        }
+        int[] docFreqs = new int[matching.size()];
+        int[] maxDocFreqs = new int[matching.size() + 1];
+        for (int i = matching.size() - 1; i >= 0; i--) {
+            docFreqs[i] = postings.get(matching.get(i)).size();
+            maxDocFreqs[i] = Math.max(docFreqs[i], maxDocFreqs[i + 1]);
+        }
+        return new TermCursor() {
+            private int index = -1;
+            private byte[] term;
+
+            @Override
+            public boolean next() {
+                if (index == matching.size()) return false;
+                index++;
+                term = index < matching.size() ? matching.get(index).getBytes(StandardCharsets.UTF_8) : null;
+                return index < matching.size();
+            }
+
+            @Override
+            public byte[] term() {
+                return term;
+            }
+
+            @Override
+            public int docFreq() {
+                return docFreqs[index];
+            }
+
+            @Override
+            public int maxDocFreq() {
+                return maxDocFreqs[Math.max(index, 0)];
+            }
+        };
+    }
+
+    @Override
+    public int pageLength(int pageId) {
+        return pageLengths.get(pageId, -1);
+    }
+
+    @Override
+    public int pageCount() {
+        return pageLengths.size();
+    }
+
+    @Override
+    public long totalLength() {
+        return totalLength;
+    }
+}
@@ -0,0 +1,25 @@
+package searchengine.search;
+
+/**
+ * Последовательный проход по списку страниц леммы в порядке возрастания номеров.
+ * До первого вызова {@link #next()} или {@link #advance(int)} курсор стоит перед началом списка.
+ */
+public interface PostingCursor {
+
+    int NO_MORE = Integer.MAX_VALUE;
+
+    int size();
+
+    /**
+     * Переходит к следующей странице и возвращает её номер либо {@link #NO_MORE}.
+     */
+    int next();
+
+    /**
+     * Переходит к первой странице с номером не меньше {@code target} и возвращает её номер
+     * либо {@link #NO_MORE}. Если текущая страница уже не меньше {@code target}, курсор не сдвигается.
+     */
+    int advance(int target);
+
+    float rank();
+}
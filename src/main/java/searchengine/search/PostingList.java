@@ -0,0 +1,142 @@
+package searchengine.search;
+
+import java.util.Arrays;
+
+public class PostingList {
+
+    private int[] pages;
+    private float[] ranks;
+    private int size;
+
+    public PostingList() {
+        this(4);
+    }
+
+    public PostingList(int capacity) {
+        pages = new int[capacity];
+        ranks = new float[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int pageAt(int position) {
+        return pages[position];
+    }
+
+    public float rankAt(int position) {
+        return ranks[position];
+    }
+
+    public void add(int pageId, float rank) {
+        if (size == 0 || pages[size - 1] < pageId) {
+            append(pageId, rank);
+            return;
+        }
+        int position = Arrays.binarySearch(pages, 0, size, pageId);
+        if (position >= 0) {
+            ranks[position] = rank;
+            return;
+        }
+        position = -position - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(pages, position, pages, position + 1, size - position);
+        System.arraycopy(ranks, position, ranks, position + 1, size - position);
+        pages[position] = pageId;
+        ranks[position] = rank;
+        size++;
+    }
+
+    /**
+     * Добавляет запись в конец списка без проверки порядка.
+     * После серии таких вызовов список нужно упорядочить методом {@link #sort()}.
+     */
+    public void append(int pageId, float rank) {
+        ensureCapacity(size + 1);
+        pages[size] = pageId;
+        ranks[size] = rank;
+        size++;
+    }
+
+    public void sort() {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) pages[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] sortedPages = new int[size];
+        float[] sortedRanks = new float[size];
+        for (int i = 0; i < size; i++) {
+            int source = (int) keys[i];
+            sortedPages[i] = pages[source];
+            sortedRanks[i] = ranks[source];
+        }
+        pages = sortedPages;
+        ranks = sortedRanks;
+    }
+
+    public boolean remove(int pageId) {
+        int position = Arrays.binarySearch(pages, 0, size, pageId);
+        if (position < 0) return false;
+        System.arraycopy(pages, position + 1, pages, position, size - position - 1);
+        System.arraycopy(ranks, position + 1, ranks, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Галопирующий поиск: возвращает первую позицию не меньше {@code from},
+     * на которой номер страницы не меньше {@code target}, либо {@link #size()}.
+     */
+    public int advance(int from, int target) {
+        if (from >= size || pages[from] >= target) return from;
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && pages[high] < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        int position = Arrays.binarySearch(pages, low + 1, Math.min(high + 1, size), target);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    public PostingCursor cursor() {
+        return new PostingCursor() {
+            private int position = -1;
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public int next() {
+                return ++position < size ? pages[position] : NO_MORE;
+            }
+
+            @Override
+            public int advance(int target) {
+                if (position >= 0 && (position >= size || pages[position] >= target)) {
+                    return position < size ? pages[position] : NO_MORE;
+                }
+                position = PostingList.this.advance(position + 1, target);
+                return position < size ? pages[position] : NO_MORE;
+            }
+
+            @Override
+            public float rank() {
+                return ranks[position];
+            }
+        };
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= pages.length) return;
+        int newCapacity = Math.max(capacity, pages.length + (pages.length >> 1) + 1);
+        pages = Arrays.copyOf(pages, newCapacity);
+        ranks = Arrays.copyOf(ranks, newCapacity);
+    }
+}
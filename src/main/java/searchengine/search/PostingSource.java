@@ -0,0 +1,29 @@
+package searchengine.search;
+
+/**
+ * Часть индекса сайта, по которой можно искать: буфер последних изменений в памяти
+ * или неизменяемый сегмент на диске.
+ */
+interface PostingSource {
+
+    /**
+     * Курсор по страницам леммы или {@code null}, если леммы нет.
+     */
+    PostingCursor cursor(String lemma);
+
+    int docFreq(String lemma);
+
+    /**
+     * Курсор по леммам, начинающимся с {@code prefix}, с числом их страниц.
+     */
+    TermCursor terms(String prefix);
+
+    /**
+     * Длина страницы в леммах или {@code -1}, если страницы нет.
+     */
+    int pageLength(int pageId);
+
+    int pageCount();
+
+    long totalLength();
+}
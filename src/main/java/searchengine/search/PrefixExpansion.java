@@ -0,0 +1,70 @@
+package searchengine.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Выбор лемм с префиксом, у которых больше всего страниц во всех частях индекса. Курсоры частей
+ * сливаются в порядке словаря, числа страниц одной леммы складываются, а лучшие леммы хранятся
+ * в куче ограниченного размера, поэтому в строки превращаются только они. Перебор заканчивается,
+ * как только оценка сверху для оставшихся лемм не больше худшей леммы в заполненной куче:
+ * при равном числе страниц предпочтение отдаётся лемме, которая раньше в словаре.
+ */
+class PrefixExpansion {
+
+    private static final Comparator<Candidate> WORST_FIRST = Comparator.<Candidate>comparingInt(c -> c.docFreq)
+            .thenComparing((a, b) -> Arrays.compareUnsigned(b.term, a.term));
+
+    private PrefixExpansion() {}
+
+    static Set<String> top(List<TermCursor> cursors, int limit) {
+        Set<String> result = new HashSet<>();
+        if (limit <= 0) return result;
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        List<TermCursor> active = new ArrayList<>(cursors.size());
+        for (TermCursor cursor : cursors) {
+            if (cursor.next()) active.add(cursor);
+        }
+        while (!active.isEmpty()) {
+            byte[] term = active.get(0).term();
+            for (int i = 1; i < active.size(); i++) {
+                if (Arrays.compareUnsigned(active.get(i).term(), term) < 0) term = active.get(i).term();
+            }
+            int docFreq = 0;
+            for (Iterator<TermCursor> iterator = active.iterator(); iterator.hasNext(); ) {
+                TermCursor cursor = iterator.next();
+                if (!Arrays.equals(cursor.term(), term)) continue;
+                docFreq += cursor.docFreq();
+                if (!cursor.next()) iterator.remove();
+            }
+            if (best.size() < limit) {
+                best.add(new Candidate(term, docFreq));
+            } else if (best.peek().docFreq < docFreq) {
+                best.poll();
+                best.add(new Candidate(term, docFreq));
+            }
+            if (best.size() == limit && bound(active) <= best.peek().docFreq) break;
+        }
+        best.forEach(candidate -> result.add(new String(candidate.term, StandardCharsets.UTF_8)));
+        return result;
+    }
+
+    private static long bound(List<TermCursor> active) {
+        long result = 0;
+        for (TermCursor cursor : active) {
+            result += cursor.maxDocFreq();
+        }
+        return result;
+    }
+
+    private static class Candidate {
+
+        private final byte[] term;
+        private final int docFreq;
+
+        Candidate(byte[] term, int docFreq) {
+            this.term = term;
+            this.docFreq = docFreq;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package searchengine.search;
+
+/**
+ * Проход по страницам части индекса, подходящим под узел запроса, в порядке возрастания номеров.
+ * Курсоры строит {@link QueryPlanner}; контракт {@link #next()} и {@link #advance(int)}
+ * тот же, что у {@link PostingCursor}.
+ */
+abstract class QueryCursor {
+
+    protected int page = -1;
+
+    int page() {
+        return page;
+    }
+
+    abstract int next();
+
+    abstract int advance(int target);
+
+    /**
+     * Оценка числа страниц курсора сверху.
+     */
+    abstract long cost();
+
+    /**
+     * Релевантность текущей страницы: сумма вкладов лемм, которые на ней есть.
+     */
+    abstract float score(int pageLength);
+
+    /**
+     * Список страниц одной леммы.
+     */
+    static class Term extends QueryCursor {
+
+        private final PostingCursor postings;
+        private final float weight;
+        private final Scorer scorer;
+        private final SiteStatistics statistics;
+
+        Term(PostingCursor postings, float weight, Scorer scorer, SiteStatistics statistics) {
+            this.postings = postings;
+            this.weight = weight;
+            this.scorer = scorer;
+            this.statistics = statistics;
+        }
+
+        @Override
+        int next() {
+            return page = postings.next();
+        }
+
+        @Override
+        int advance(int target) {
+            return page = postings.advance(target);
+        }
+
+        @Override
+        long cost() {
+            return postings.size();
+        }
+
+        @Override
+        float score(int pageLength) {
+            return scorer.score(postings.rank(), weight, pageLength, statistics);
+        }
+    }
+
+    /**
+     * Пересечение: ведущий курсор с самым коротким списком предлагает страницы, остальные
+     * догоняют его. Курсор, список которого намного длиннее ведущего, перепрыгивает к странице
+     * по таблице пропусков; список сравнимой длины дешевле пройти подряд.
+     * Найденная страница отбрасывается, если есть в одном из исключённых курсоров.
+     */
+    static class Conjunction extends QueryCursor {
+
+        private final QueryCursor[] required;
+        private final boolean[] sequential;
+        private final QueryCursor[] excluded;
+
+        /**
+         * @param required   курсоры по возрастанию стоимости
+         * @param sequential для каждого курсора - догонять ли его последовательным проходом
+         */
+        Conjunction(QueryCursor[] required, boolean[] sequential, QueryCursor[] excluded) {
+            this.required = required;
+            this.sequential = sequential;
+            this.excluded = excluded;
+        }
+
+        @Override
+        int next() {
+            return page = align(required[0].next());
+        }
+
+        @Override
+        int advance(int target) {
+            if (page >= target) return page;
+            return page = align(required[0].advance(target));
+        }
+
+        private int align(int candidate) {
+            QueryCursor lead = required[0];
+            candidates:
+            while (candidate != PostingCursor.NO_MORE) {
+                for (int j = 1; j < required.length; j++) {
+                    int other = move(j, candidate);
+                    if (other == PostingCursor.NO_MORE) return PostingCursor.NO_MORE;
+                    if (other != candidate) {
+                        candidate = lead.advance(other);
+                        continue candidates;
+                    }
+                }
+                if (!isExcluded(candidate)) return candidate;
+                candidate = lead.next();
+            }
+            return PostingCursor.NO_MORE;
+        }
+
+        private int move(int j, int target) {
+            QueryCursor cursor = required[j];
+            if (!sequential[j]) return cursor.advance(target);
+            int result = cursor.page();
+            while (result < target) result = cursor.next();
+            return result;
+        }
+
+        private boolean isExcluded(int candidate) {
+            for (QueryCursor cursor : excluded) {
+                if (cursor.advance(candidate) == candidate) return true;
+            }
+            return false;
+        }
+
+        @Override
+        long cost() {
+            return required[0].cost();
+        }
+
+        @Override
+        float score(int pageLength) {
+            float result = 0;
+            for (QueryCursor cursor : required) {
+                result += cursor.score(pageLength);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Объединение без материализации: текущая страница - наименьшая среди операндов.
+     * Каждый шаг перебирает все операнды, поэтому подходит для небольшого их числа
+     * или когда объединение только догоняет короткий ведущий список.
+     */
+    static class Disjunction extends QueryCursor {
+
+        private final QueryCursor[] operands;
+
+        Disjunction(QueryCursor[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        int next() {
+            int current = page;
+            int min = PostingCursor.NO_MORE;
+            for (QueryCursor operand : operands) {
+                int value = operand.page() <= current ? operand.next() : operand.page();
+                min = Math.min(min, value);
+            }
+            return page = min;
+        }
+
+        @Override
+        int advance(int target) {
+            if (page >= target) return page;
+            int min = PostingCursor.NO_MORE;
+            for (QueryCursor operand : operands) {
+                min = Math.min(min, operand.advance(target));
+            }
+            return page = min;
+        }
+
+        @Override
+        long cost() {
+            long result = 0;
+            for (QueryCursor operand : operands) {
+                result += operand.cost();
+            }
+            return result;
+        }
+
+        @Override
+        float score(int pageLength) {
+            float result = 0;
+            for (QueryCursor operand : operands) {
+                if (operand.page() == page) result += operand.score(pageLength);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Объединение, заранее собранное в один список страниц с готовой релевантностью.
+     * Обходит каждый операнд один раз, поэтому выгодно, когда операндов много,
+     * а страницы объединения всё равно придётся перебрать почти все.
+     */
+    static class Materialized extends QueryCursor {
+
+        private final PostingCursor merged;
+
+        Materialized(QueryCursor[] operands, PostingSource source) {
+            PostingList list = new PostingList();
+            for (QueryCursor operand : operands) {
+                for (int pageId = operand.next(); pageId != PostingCursor.NO_MORE; pageId = operand.next()) {
+                    list.append(pageId, operand.score(source.pageLength(pageId)));
+                }
+            }
+            list.sort();
+            PostingList combined = new PostingList(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                int pageId = list.pageAt(i);
+                float score = list.rankAt(i);
+                while (i + 1 < list.size() && list.pageAt(i + 1) == pageId) score += list.rankAt(++i);
+                combined.append(pageId, score);
+            }
+            merged = combined.cursor();
+        }
+
+        @Override
+        int next() {
+            return page = merged.next();
+        }
+
+        @Override
+        int advance(int target) {
+            return page = merged.advance(target);
+        }
+
+        @Override
+        long cost() {
+            return merged.size();
+        }
+
+        @Override
+        float score(int pageLength) {
+            return merged.rank();
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package searchengine.search;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Узел дерева поискового запроса. Листья - лемма, префикс слова и фраза в кавычках,
+ * внутренние узлы - И, ИЛИ и НЕ. Исключение НЕ имеет смысл только среди операндов И.
+ */
+public abstract class QueryNode {
+
+    private QueryNode() {}
+
+    /**
+     * Канонический вид узла для ключа кэша: не зависит от порядка операндов И и ИЛИ.
+     */
+    abstract String key();
+
+    /**
+     * Раскрывает префиксы в леммы словаря и отбрасывает леммы, которых нет в индексе.
+     * Возвращает {@code null}, если от узла ничего не осталось.
+     */
+    abstract QueryNode resolve(Predicate<String> known, Function<String, Set<String>> expand);
+
+    /**
+     * Проверяет страницу по позициям её лемм. Нужна только для фраз: остальные условия
+     * уже выполнены, раз страница найдена по спискам лемм.
+     */
+    abstract boolean matches(Map<String, int[]> positions);
+
+    /**
+     * Добавляет леммы, которые должны или могут быть на найденной странице.
+     */
+    abstract void collectLemmas(Set<String> result);
+
+    /**
+     * Добавляет леммы, позиции которых нужны для {@link #matches(Map)}.
+     */
+    void collectPositional(Set<String> result) {
+        collectLemmas(result);
+    }
+
+    /**
+     * Добавляет леммы, которые есть на каждой найденной странице.
+     */
+    void collectRequired(Set<String> result) {}
+
+    /**
+     * Заменяет фразы их словами, когда позиции лемм не хранятся и проверить фразу нечем.
+     */
+    abstract QueryNode withoutPhrases();
+
+    boolean hasPhrases() {
+        return false;
+    }
+
+    /**
+     * Узел только исключает страницы и сам не даёт ни одной: исключение или И и ИЛИ из исключений.
+     */
+    boolean excludesOnly() {
+        return false;
+    }
+
+    static QueryNode and(List<QueryNode> operands) {
+        List<QueryNode> flat = new ArrayList<>();
+        for (QueryNode operand : operands) {
+            if (operand instanceof And and) {
+                flat.addAll(and.operands);
+            } else if (Objects.nonNull(operand)) {
+                flat.add(operand);
+            }
+        }
+        if (flat.isEmpty()) return null;
+        return flat.size() == 1 ? flat.get(0) : new And(flat);
+    }
+
+    static QueryNode or(List<QueryNode> operands) {
+        List<QueryNode> flat = new ArrayList<>();
+        for (QueryNode operand : operands) {
+            if (operand instanceof Or or) {
+                flat.addAll(or.operands);
+            } else if (Objects.nonNull(operand)) {
+                flat.add(operand);
+            }
+        }
+        if (flat.isEmpty()) return null;
+        return flat.size() == 1 ? flat.get(0) : new Or(flat);
+    }
+
+    static class Term extends QueryNode {
+
+        private final String lemma;
+
+        Term(String lemma) {
+            this.lemma = lemma;
+        }
+
+        String getLemma() {
+            return lemma;
+        }
+
+        @Override
+        String key() {
+            return lemma;
+        }
+
+        @Override
+        QueryNode resolve(Predicate<String> known, Function<String, Set<String>> expand) {
+            return known.test(lemma) ? this : null;
+        }
+
+        @Override
+        boolean matches(Map<String, int[]> positions) {
+            int[] values = positions.get(lemma);
+            return Objects.nonNull(values) && values.length > 0;
+        }
+
+        @Override
+        void collectLemmas(Set<String> result) {
+            result.add(lemma);
+        }
+
+        @Override
+        void collectRequired(Set<String> result) {
+            result.add(lemma);
+        }
+
+        @Override
+        QueryNode withoutPhrases() {
+            return this;
+        }
+    }
+
+    /**
+     * Начало слова со звёздочкой: любая лемма словаря, которая так начинается.
+     */
+    static class Prefix extends QueryNode {
+
+        private final String prefix;
+
+        Prefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        String key() {
+            return prefix + "*";
+        }
+
+        @Override
+        QueryNode resolve(Predicate<String> known, Function<String, Set<String>> expand) {
+            List<QueryNode> terms = new ArrayList<>();
+            expand.apply(prefix).forEach(lemma -> terms.add(new Term(lemma)));
+            return or(terms);
+        }
+
+        @Override
+        boolean matches(Map<String, int[]> positions) {
+            throw new IllegalStateException("Prefix is not resolved: " + prefix);
+        }
+
+        @Override
+        void collectLemmas(Set<String> result) {}
+
+        @Override
+        QueryNode withoutPhrases() {
+            return this;
+        }
+    }
+
+    /**
+     * Фраза в кавычках: по спискам лемм ищется как И её слов, затем проверяется по позициям.
+     */
+    static class Phrase extends QueryNode {
+
+        private final SearchQuery.Phrase phrase;
+        private final QueryNode words;
+
+        Phrase(SearchQuery.Phrase phrase, QueryNode words) {
+            this.phrase = phrase;
+            this.words = words;
+        }
+
+        QueryNode getWords() {
+            return words;
+        }
+
+        @Override
+        String key() {
+            StringBuilder key = new StringBuilder("\"");
+            for (SearchQuery.Term term : phrase.getTerms()) {
+                key.append(term.getOffset()).append(new TreeSet<>(term.getLemmas()));
+            }
+            return key.append('"').toString();
+        }
+
+        @Override
+        QueryNode resolve(Predicate<String> known, Function<String, Set<String>> expand) {
+            QueryNode resolved = words.resolve(known, expand);
+            return Objects.isNull(resolved) ? null : new Phrase(phrase, resolved);
+        }
+
+        @Override
+        boolean matches(Map<String, int[]> positions) {
+            return phrase.matches(positions);
+        }
+
+        @Override
+        void collectLemmas(Set<String> result) {
+            words.collectLemmas(result);
+            phrase.getTerms().forEach(term -> result.addAll(term.getLemmas()));
+        }
+
+        @Override
+        void collectRequired(Set<String> result) {
+            words.collectRequired(result);
+        }
+
+        @Override
+        boolean hasPhrases() {
+            return true;
+        }
+
+        @Override
+        QueryNode withoutPhrases() {
+            return words;
+        }
+    }
+
+    /**
+     * Исключение. Исключённая фраза проверяется только по позициям: страницу, где её слова
+     * стоят порознь, по спискам лемм отбросить нельзя.
+     */
+    static class Not extends QueryNode {
+
+        private final QueryNode operand;
+
+        Not(QueryNode operand) {
+            this.operand = operand;
+        }
+
+        QueryNode getOperand() {
+            return operand;
+        }
+
+        @Override
+        String key() {
+            return "-" + operand.key();
+        }
+
+        @Override
+        QueryNode resolve(Predicate<String> known, Function<String, Set<String>> expand) {
+            QueryNode resolved = operand.resolve(known, expand);
+            return Objects.isNull(resolved) ? null : new Not(resolved);
+        }
+
+        @Override
+        boolean matches(Map<String, int[]> positions) {
+            return !operand.matches(positions);
+        }
+
+        @Override
+        void collectLemmas(Set<String> result) {}
+
+        @Override
+        void collectPositional(Set<String> result) {
+            operand.collectPositional(result);
+        }
+
+        @Override
+        boolean hasPhrases() {
+            return operand.hasPhrases();
+        }
+
+        @Override
+        boolean excludesOnly() {
+            return true;
+        }
+
+        @Override
+        QueryNode withoutPhrases() {
+            return new Not(operand.withoutPhrases());
+        }
+    }
+
+    /**
+     * Все операнды, кроме исключённых, есть на странице, а исключённых нет.
+     * Леммы, которых нет в индексе, отбрасываются, а не делают результат пустым.
+     */
+    static class And extends QueryNode {
+
+        private final List<QueryNode> operands;
+
+        And(List<QueryNode> operands) {
+            this.operands = operands;
+        }
+
+        List<QueryNode> getOperands() {
+            return operands;
+        }
+
+        @Override
+        String key() {
+            return operandsKey("&", operands);
+        }
+
+        @Override
+        QueryNode resolve(Predicate<String> known, Function<String, Set<String>> expand) {
+            List<QueryNode> resolved = new ArrayList<>();
+            boolean required = false;
+            for (QueryNode operand : operands) {
+                QueryNode node = operand.resolve(known, expand);
+                if (Objects.isNull(node)) continue;
+                resolved.add(node);
+                required |= !(node instanceof Not);
+            }
+            return required ? and(resolved) : null;
+        }
+
+        @Override
+        boolean matches(Map<String, int[]> positions) {
+            for (QueryNode operand : operands) {
+                if (!operand.matches(positions)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        void collectLemmas(Set<String> result) {
+            operands.forEach(operand -> operand.collectLemmas(result));
+        }
+
+        @Override
+        void collectPositional(Set<String> result) {
+            operands.forEach(operand -> operand.collectPositional(result));
+        }
+
+        @Override
+        void collectRequired(Set<String> result) {
+            operands.forEach(operand -> operand.collectRequired(result));
+        }
+
+        @Override
+        boolean hasPhrases() {
+            return operands.stream().anyMatch(QueryNode::hasPhrases);
+        }
+
+        @Override
+        boolean excludesOnly() {
+            return operands.stream().allMatch(QueryNode::excludesOnly);
+        }
+
+        @Override
+        QueryNode withoutPhrases() {
+            List<QueryNode> result = new ArrayList<>(operands.size());
+            operands.forEach(operand -> result.add(operand.withoutPhrases()));
+            return and(result);
+        }
+    }
+
+    /**
+     * Хотя бы один операнд есть на странице. Исключения среди операндов ИЛИ не поддерживаются
+     * и отбрасываются: страницы без леммы нельзя перечислить по её списку.
+     */
+    static class Or extends QueryNode {
+
+        private final List<QueryNode> operands;
+
+        Or(List<QueryNode> operands) {
+            this.operands = operands;
+        }
+
+        List<QueryNode> getOperands() {
+            return operands;
+        }
+
+        @Override
+        String key() {
+            return operandsKey("|", operands);
+        }
+
+        @Override
+        QueryNode resolve(Predicate<String> known, Function<String, Set<String>> expand) {
+            List<QueryNode> resolved = new ArrayList<>();
+            for (QueryNode operand : operands) {
+                QueryNode node = operand.resolve(known, expand);
+                if (Objects.nonNull(node) && !(node instanceof Not)) resolved.add(node);
+            }
+            return or(resolved);
+        }
+
+        @Override
+        boolean matches(Map<String, int[]> positions) {
+            for (QueryNode operand : operands) {
+                if (operand.matches(positions)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        void collectLemmas(Set<String> result) {
+            operands.forEach(operand -> operand.collectLemmas(result));
+        }
+
+        @Override
+        void collectPositional(Set<String> result) {
+            operands.forEach(operand -> operand.collectPositional(result));
+        }
+
+        @Override
+        boolean hasPhrases() {
+            return operands.stream().anyMatch(QueryNode::hasPhrases);
+        }
+
+        @Override
+        boolean excludesOnly() {
+            return operands.stream().allMatch(QueryNode::excludesOnly);
+        }
+
+        @Override
+        QueryNode withoutPhrases() {
+            List<QueryNode> result = new ArrayList<>(operands.size());
+            operands.forEach(operand -> result.add(operand.withoutPhrases()));
+            return or(result);
+        }
+    }
+
+    private static String operandsKey(String operator, List<QueryNode> operands) {
+        List<String> keys = new ArrayList<>(operands.size());
+        operands.forEach(operand -> keys.add(operand.key()));
+        Collections.sort(keys);
+        return "(" + operator + String.join(" ", keys) + ")";
+    }
+}
@@ -0,0 +1,142 @@
+package searchengine.search;
+
+import java.util.*;
+
+/**
+ * Строит по дереву запроса курсоры для одной части индекса сайта. Стоимость узла оценивается
+ * по числу страниц лемм в этой части: лемма - длина её списка, И - самый короткий из операндов,
+ * ИЛИ - сумма операндов. Операнды И упорядочиваются по возрастанию стоимости, чтобы страницы
+ * предлагал самый короткий список; для остальных выбирается способ догонять ведущий, а для
+ * ИЛИ - объединять операнды на лету или собрать заранее.
+ */
+class QueryPlanner {
+
+    /**
+     * Во сколько раз список должен быть длиннее ведущего, чтобы догонять его прыжками, а не подряд.
+     */
+    static final int SKIP_RATIO = 4;
+    private final PostingSource source;
+    private final Map<String, Float> weights;
+    private final Scorer scorer;
+    private final SiteStatistics statistics;
+    private final Map<QueryNode, Long> costs = new IdentityHashMap<>();
+
+    /**
+     * @param weights веса лемм сайта; лемм без веса на сайте нет
+     */
+    QueryPlanner(PostingSource source, Map<String, Float> weights, Scorer scorer, SiteStatistics statistics) {
+        this.source = source;
+        this.weights = weights;
+        this.scorer = scorer;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Курсор по страницам части индекса, подходящим под запрос, или {@code null}, если таких точно нет.
+     */
+    QueryCursor plan(QueryNode node) {
+        return plan(node, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param probes сколько раз курсор придётся догонять до страницы ведущего списка;
+     *               {@link Long#MAX_VALUE}, если курсор перебирается целиком
+     */
+    private QueryCursor plan(QueryNode node, long probes) {
+        if (cost(node) == 0) return null;
+        if (node instanceof QueryNode.Term term) {
+            PostingCursor postings = source.cursor(term.getLemma());
+            return new QueryCursor.Term(postings, weights.get(term.getLemma()), scorer, statistics);
+        }
+        if (node instanceof QueryNode.Phrase phrase) return plan(phrase.getWords(), probes);
+        if (node instanceof QueryNode.And and) return planAnd(and, probes);
+        if (node instanceof QueryNode.Or or) return planOr(or, probes);
+        throw new IllegalArgumentException("Unexpected query node: " + node.getClass().getSimpleName());
+    }
+
+    private QueryCursor planAnd(QueryNode.And and, long probes) {
+        List<QueryNode> required = new ArrayList<>();
+        List<QueryNode> excluded = new ArrayList<>();
+        for (QueryNode operand : and.getOperands()) {
+            if (operand instanceof QueryNode.Not not) {
+                if (!(not.getOperand() instanceof QueryNode.Phrase) && cost(not.getOperand()) > 0) {
+                    excluded.add(not.getOperand());
+                }
+            } else {
+                required.add(operand);
+            }
+        }
+        required.sort(Comparator.comparingLong(this::cost));
+        long leadCost = cost(required.get(0));
+        long leadProbes = Math.min(probes, leadCost);
+        QueryCursor[] cursors = new QueryCursor[required.size()];
+        boolean[] sequential = new boolean[cursors.length];
+        cursors[0] = plan(required.get(0), probes);
+        for (int j = 1; j < cursors.length; j++) {
+            cursors[j] = plan(required.get(j), leadProbes);
+            sequential[j] = cost(required.get(j)) < leadCost * SKIP_RATIO;
+        }
+        if (cursors.length == 1 && excluded.isEmpty()) return cursors[0];
+        excluded.sort(Comparator.comparingLong(this::cost).reversed());
+        QueryCursor[] exclusions = new QueryCursor[excluded.size()];
+        for (int j = 0; j < exclusions.length; j++) {
+            exclusions[j] = plan(excluded.get(j), leadProbes);
+        }
+        return new QueryCursor.Conjunction(cursors, sequential, exclusions);
+    }
+
+    /**
+     * Объединение на лету на каждом шаге трогает все операнды, а сборка заранее один раз
+     * проходит их списки целиком и сортирует результат. Когда объединение только догоняет
+     * короткий ведущий список, шагов мало и собирать его невыгодно.
+     */
+    private QueryCursor planOr(QueryNode.Or or, long probes) {
+        List<QueryNode> operands = new ArrayList<>();
+        for (QueryNode operand : or.getOperands()) {
+            if (cost(operand) > 0) operands.add(operand);
+        }
+        long cost = cost(or);
+        long steps = Math.min(probes, cost);
+        boolean materialize = operands.size() > 1
+                && (double) steps * operands.size() > cost * (1 + log2(cost));
+        QueryCursor[] cursors = new QueryCursor[operands.size()];
+        for (int j = 0; j < cursors.length; j++) {
+            cursors[j] = plan(operands.get(j), materialize ? Long.MAX_VALUE : steps);
+        }
+        if (cursors.length == 1) return cursors[0];
+        return materialize ? new QueryCursor.Materialized(cursors, source) : new QueryCursor.Disjunction(cursors);
+    }
+
+    private long cost(QueryNode node) {
+        Long cached = costs.get(node);
+        if (Objects.nonNull(cached)) return cached;
+        long cost;
+        if (node instanceof QueryNode.Term term) {
+            cost = weights.containsKey(term.getLemma()) ? source.docFreq(term.getLemma()) : 0;
+        } else if (node instanceof QueryNode.Phrase phrase) {
+            cost = cost(phrase.getWords());
+        } else if (node instanceof QueryNode.And and) {
+            cost = Long.MAX_VALUE;
+            boolean required = false;
+            for (QueryNode operand : and.getOperands()) {
+                if (operand instanceof QueryNode.Not) continue;
+                cost = Math.min(cost, cost(operand));
+                required = true;
+            }
+            if (!required) cost = 0;
+        } else if (node instanceof QueryNode.Or or) {
+            cost = 0;
+            for (QueryNode operand : or.getOperands()) {
+                cost += cost(operand);
+            }
+        } else {
+            cost = 0;
+        }
+        costs.put(node, cost);
+        return cost;
+    }
+
+    private static double log2(long value) {
+        return Math.log(Math.max(value, 2)) / Math.log(2);
+    }
+}
@@ -0,0 +1,22 @@
+package searchengine.search;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Прежнее ранжирование: сумма числа вхождений лемм запроса на странице.
+ */
+@Component
+@ConditionalOnProperty(name = "search.scorer", havingValue = "rank-sum")
+public class RankSumScorer implements Scorer {
+
+    @Override
+    public float termWeight(int documentFrequency, SiteStatistics statistics) {
+        return 1;
+    }
+
+    @Override
+    public float score(float frequency, float termWeight, int pageLength, SiteStatistics statistics) {
+        return frequency;
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.search;
+
+/**
+ * Функция релевантности страницы. Релевантность - сумма вкладов лемм запроса;
+ * вес леммы вычисляется один раз на запрос для каждого сайта.
+ */
+public interface Scorer {
+
+    float termWeight(int documentFrequency, SiteStatistics statistics);
+
+    float score(float frequency, float termWeight, int pageLength, SiteStatistics statistics);
+}
@@ -0,0 +1,122 @@
+package searchengine.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchCacheSettings;
+import searchengine.dto.search.SearchCacheStatistics;
+import searchengine.model.Site;
+
+import java.util.*;
+
+/**
+ * Кэш результатов поиска по каноническому виду дерева запроса и сайту.
+ * Запись действительна, пока не изменился номер поколения индекса сайта
+ * и не истёк срок жизни; при переполнении вытесняется давно не использованная запись.
+ */
+@Component
+public class SearchCache {
+
+    private final SearchIndex searchIndex;
+    private final long ttlMillis;
+    private final Map<Key, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public SearchCache(SearchIndex searchIndex, SearchCacheSettings settings, MeterRegistry registry) {
+        this.searchIndex = searchIndex;
+        ttlMillis = settings.getTtl().toMillis();
+        int maxSize = settings.getMaxSize();
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= maxSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+        FunctionCounter.builder("search.cache.hits", this, cache -> cache.getStatistics().getHits()).register(registry);
+        FunctionCounter.builder("search.cache.misses", this, cache -> cache.getStatistics().getMisses()).register(registry);
+        FunctionCounter.builder("search.cache.evictions", this, cache -> cache.getStatistics().getEvictions()).register(registry);
+        FunctionCounter.builder("search.cache.invalidations", this, cache -> cache.getStatistics().getInvalidations())
+                .register(registry);
+        Gauge.builder("search.cache.size", this, cache -> cache.getStatistics().getSize()).register(registry);
+    }
+
+    public SearchResult search(SearchQuery query, Site site, int offset, int limit) {
+        long required = (long) offset + limit;
+        Key key = new Key(query.key(), Objects.isNull(site) ? 0 : site.getId());
+        long generation = searchIndex.generation(site);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (Objects.nonNull(entry) && (entry.generation != generation
+                    || System.currentTimeMillis() - entry.created > ttlMillis)) {
+                entries.remove(key);
+                invalidations++;
+                entry = null;
+            }
+            if (Objects.nonNull(entry) && (entry.result.getHits().size() >= required
+                    || entry.result.getHits().size() == entry.result.getTotal())) {
+                hits++;
+                return slice(entry.result, offset, limit);
+            }
+            misses++;
+        }
+        SearchResult result = searchIndex.search(query, site, 0, (int) Math.min(Integer.MAX_VALUE, required));
+        synchronized (this) {
+            entries.put(key, new Entry(result, generation, System.currentTimeMillis()));
+        }
+        return slice(result, offset, limit);
+    }
+
+    public synchronized SearchCacheStatistics getStatistics() {
+        SearchCacheStatistics statistics = new SearchCacheStatistics();
+        statistics.setHits(hits);
+        statistics.setMisses(misses);
+        statistics.setEvictions(evictions);
+        statistics.setInvalidations(invalidations);
+        statistics.setSize(entries.size());
+        return statistics;
+    }
+
+    private static SearchResult slice(SearchResult result, int offset, int limit) {
+        List<SearchHit> hits = result.getHits();
+        int from = Math.min(offset, hits.size());
+        int to = (int) Math.min(hits.size(), (long) offset + limit);
+        return new SearchResult(result.getTotal(), new ArrayList<>(hits.subList(from, to)), result.getLemmas());
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final SearchResult result;
+        private final long generation;
+        private final long created;
+    }
+
+    private static class Key {
+        private final String lemmas;
+        private final int siteId;
+
+        Key(String lemmas, int siteId) {
+            this.lemmas = lemmas;
+            this.siteId = siteId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return siteId == key.siteId && Objects.equals(lemmas, key.lemmas);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lemmas, siteId);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class SearchHit {
+
+    private final int pageId;
+    private final float relevance;
+}
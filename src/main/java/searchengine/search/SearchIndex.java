@@ -0,0 +1,369 @@
+package searchengine.search;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.config.SitesList;
+import searchengine.dto.index.IndexEntry;
+import searchengine.model.PagePositions;
+import searchengine.model.Site;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.PagePositionsRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.utils.PositionCodec;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@RequiredArgsConstructor
+public class SearchIndex {
+
+    private static final int LOAD_CHUNK_SIZE = 10_000;
+    private static final int RERANK_DEPTH = 100;
+    private static final int POSITIONS_CHUNK_SIZE = 500;
+    private final IndexRepository indexRepository;
+    private final SiteRepository siteRepository;
+    private final PagePositionsRepository pagePositionsRepository;
+    private final SitesList sitesList;
+    private final Scorer scorer;
+    private final SearchSettings searchSettings;
+    private final SearchMetrics metrics;
+    private final Map<Integer, SiteIndex> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Set<Integer> hidden = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+    private final Set<Integer> flushQueued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private IndexDirectory directory;
+    private static final Logger logger = LogManager.getLogger(SearchIndex.class);
+
+    /**
+     * Открывает сегменты индекса на диске. Сайты без сегментов или с незаписанными
+     * изменениями перестраиваются из базы, и для них сразу пишутся новые сегменты.
+     */
+    @PostConstruct
+    public void load() {
+        long start = System.currentTimeMillis();
+        directory = new IndexDirectory(Path.of(searchSettings.getIndexDirectory()));
+        hidden.addAll(siteRepository.findShadowIds());
+        Set<Integer> siteIds = new HashSet<>(siteRepository.findAllIds());
+        Set<Integer> rebuild = new HashSet<>();
+        for (Integer siteId : siteIds) {
+            SiteIndex siteIndex = null;
+            try {
+                siteIndex = SiteIndex.open(siteId, directory, metrics);
+            } catch (IOException e) {
+                logger.warn("Failed to open index segments of site " + siteId + " - " + e.getMessage());
+            }
+            if (Objects.isNull(siteIndex)) {
+                rebuild.add(siteId);
+            } else {
+                sites.put(siteId, siteIndex);
+            }
+        }
+        try {
+            for (Integer siteId : directory.siteIds()) {
+                if (!siteIds.contains(siteId)) directory.deleteSiteFiles(siteId, Set.of());
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to clean up index directory - " + e.getMessage());
+        }
+        if (!rebuild.isEmpty()) rebuild(rebuild);
+        logger.info("Search index opened: " + sites.size() + " sites, " + rebuild.size() + " rebuilt from database in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void rebuild(Set<Integer> siteIds) {
+        Map<Integer, MemoryIndex> loaded = new HashMap<>();
+        siteIds.forEach(siteId -> loaded.put(siteId, new MemoryIndex()));
+        int lastId = 0;
+        int count = 0;
+        List<IndexEntry> chunk;
+        do {
+            chunk = indexRepository.findEntriesAfter(lastId, PageRequest.of(0, LOAD_CHUNK_SIZE));
+            for (IndexEntry entry : chunk) {
+                MemoryIndex memory = loaded.get(entry.getSiteId());
+                if (Objects.nonNull(memory)) {
+                    memory.append(entry.getLemma(), entry.getPageId(), entry.getRank());
+                    count++;
+                }
+                lastId = entry.getId();
+            }
+        } while (chunk.size() == LOAD_CHUNK_SIZE);
+        loaded.forEach((siteId, memory) -> {
+            memory.sort();
+            sites.put(siteId, SiteIndex.rebuild(siteId, directory, metrics, memory));
+        });
+        logger.info("Search index rebuilt from database: " + count + " entries");
+    }
+
+    public void addPage(int siteId, int pageId, Map<String, Float> ranks) {
+        updatePage(siteId, pageId, List.of(), ranks);
+    }
+
+    public void updatePage(int siteId, int pageId, Collection<String> removed, Map<String, Float> ranks) {
+        if (ranks.isEmpty() && removed.isEmpty()) return;
+        SiteIndex siteIndex = sites.computeIfAbsent(siteId, k -> new SiteIndex(k, directory, metrics));
+        siteIndex.updatePage(pageId, removed, ranks);
+        nextGeneration(siteId);
+        if (siteIndex.memoryPostingCount() >= searchSettings.getFlushPostings() && flushQueued.add(siteId)) {
+            flusher.execute(() -> {
+                flushQueued.remove(siteId);
+                flush(siteId);
+            });
+        }
+    }
+
+    /**
+     * Записывает изменения индекса сайта, накопленные в памяти, в новый сегмент на диске.
+     */
+    public void flush(int siteId) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (Objects.isNull(siteIndex)) return;
+        try {
+            siteIndex.flush();
+        } catch (IOException e) {
+            logger.warn("Failed to flush index of site " + siteId + " - " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sites.keySet().forEach(this::flush);
+    }
+
+    public void removePage(int siteId, int pageId, Collection<String> lemmas) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (Objects.nonNull(siteIndex)) siteIndex.removePage(pageId, lemmas);
+        nextGeneration(siteId);
+    }
+
+    public void removeSite(int siteId) {
+        SiteIndex siteIndex = sites.remove(siteId);
+        if (Objects.nonNull(siteIndex)) siteIndex.close();
+        try {
+            directory.deleteSiteFiles(siteId, Set.of());
+        } catch (IOException e) {
+            logger.warn("Failed to delete index segments of site " + siteId + " - " + e.getMessage());
+        }
+        hidden.remove(siteId);
+        nextGeneration(siteId);
+    }
+
+    Collection<SiteIndex> siteIndexes() {
+        return sites.values();
+    }
+
+    /**
+     * После слияния сегментов меняются веса лемм, поэтому закешированные результаты сайта устаревают.
+     */
+    void merged(int siteId) {
+        nextGeneration(siteId);
+    }
+
+    /**
+     * Исключает сайт из поиска по всем сайтам, пока он строится как теневой.
+     */
+    public void hide(int siteId) {
+        hidden.add(siteId);
+        nextGeneration(siteId);
+    }
+
+    public void swap(int replacedId, int shadowId) {
+        hidden.add(replacedId);
+        hidden.remove(shadowId);
+        nextGeneration(replacedId);
+        nextGeneration(shadowId);
+    }
+
+    /**
+     * Номер поколения индекса сайта, увеличивается при каждом изменении.
+     * Для поиска по всем сайтам используется общий номер.
+     */
+    public long generation(Site site) {
+        if (Objects.isNull(site)) return generation.get();
+        AtomicLong siteGeneration = generations.get(site.getId());
+        return Objects.isNull(siteGeneration) ? 0 : siteGeneration.get();
+    }
+
+    private void nextGeneration(int siteId) {
+        generations.computeIfAbsent(siteId, k -> new AtomicLong()).incrementAndGet();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Ищет страницы по дереву запроса на сайте {@code site} или, если он не задан, на всех сайтах.
+     * Возвращает общее число найденных страниц и не более {@code limit} лучших, начиная с {@code offset}.
+     * <p>
+     * Префиксы раскрываются в самые частые леммы сайтов поиска, а леммы, которых нет ни на одном
+     * из них, отбрасываются. Близость слов учитывается у {@value #RERANK_DEPTH} лучших кандидатов
+     * или у {@code offset + limit}, если их больше.
+     * <p>
+     * Фразы проверяются по позициям не больше чем у {@code search.max-phrase-candidates} лучших
+     * кандидатов, и проверка останавливается, когда результат уже не изменится. Поэтому число
+     * страниц с фразами - оценка: непроверенные кандидаты считаются подходящими.
+     */
+    public SearchResult search(SearchQuery query, Site site, int offset, int limit) {
+        Collection<SiteIndex> scope = Objects.isNull(site) ? visibleSites()
+                : Optional.ofNullable(sites.get(site.getId())).map(List::of).orElse(List.of());
+        QueryNode root = Objects.isNull(query.getRoot()) ? null
+                : query.getRoot().resolve(lemma -> contains(scope, lemma), prefix -> expand(scope, prefix));
+        if (Objects.isNull(root) || root instanceof QueryNode.Not) return new SearchResult(0, new ArrayList<>(), Set.of());
+        boolean positional = sitesList.isStorePositions();
+        if (!positional) root = root.withoutPhrases();
+        Set<String> lemmas = new HashSet<>();
+        root.collectLemmas(lemmas);
+        Set<String> requiredLemmas = new HashSet<>();
+        root.collectRequired(requiredLemmas);
+        int required = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        boolean phrases = positional && root.hasPhrases();
+        boolean proximity = positional && requiredLemmas.size() > 1;
+        int window = phrases ? Math.max(required, searchSettings.getMaxPhraseCandidates())
+                : proximity ? Math.max(required, RERANK_DEPTH) : required;
+        TopHits topHits = new TopHits(window);
+        SearchMetrics.Stages stages = new SearchMetrics.Stages();
+        for (SiteIndex siteIndex : scope) {
+            siteIndex.search(root, scorer, topHits, stages);
+        }
+        metrics.record(stages);
+        if (!phrases && !proximity) return new SearchResult(topHits.getTotal(), topHits.toList(offset), lemmas);
+        long rankStart = System.nanoTime();
+        List<SearchHit> candidates = topHits.toList(0);
+        TopHits ranked = new TopHits(required);
+        int dropped = 0;
+        Set<String> positionLemmas = requiredLemmas;
+        if (phrases) {
+            positionLemmas = new HashSet<>(requiredLemmas);
+            root.collectPositional(positionLemmas);
+        }
+        float maxBoost = proximity ? 2 : 1;
+        int chunkSize = Math.min(POSITIONS_CHUNK_SIZE, Math.max(required, 16));
+        verify:
+        for (int from = 0; from < candidates.size(); from += chunkSize, chunkSize = Math.min(POSITIONS_CHUNK_SIZE, chunkSize * 2)) {
+            List<SearchHit> chunk = candidates.subList(from, Math.min(candidates.size(), from + chunkSize));
+            if (!ranked.accepts(chunk.get(0).getRelevance() * maxBoost)) break;
+            Map<Integer, Map<String, int[]>> positions = loadPositions(chunk, positionLemmas);
+            for (SearchHit hit : chunk) {
+                if (!ranked.accepts(hit.getRelevance() * maxBoost)) break verify;
+                Map<String, int[]> pagePositions = positions.get(hit.getPageId());
+                if (Objects.isNull(pagePositions)) {
+                    ranked.offer(hit.getPageId(), hit.getRelevance());
+                } else if (phrases && !root.matches(pagePositions)) {
+                    dropped++;
+                } else {
+                    ranked.offer(hit.getPageId(), hit.getRelevance() * proximity(pagePositions, requiredLemmas));
+                }
+            }
+        }
+        metrics.recordRank(rankStart);
+        return new SearchResult(topHits.getTotal() - dropped, ranked.toList(offset), lemmas);
+    }
+
+    private static boolean contains(Collection<SiteIndex> scope, String lemma) {
+        for (SiteIndex siteIndex : scope) {
+            if (siteIndex.contains(lemma)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Леммы с префиксом по словарям сайтов поиска: не больше {@code search.max-prefix-expansions}
+     * лемм с наибольшим числом страниц (см. {@link PrefixExpansion}). Числа страниц складываются
+     * по всем сайтам, поэтому блокировки чтения сайтов берутся все сразу, по возрастанию номера сайта.
+     */
+    private Set<String> expand(Collection<SiteIndex> scope, String prefix) {
+        List<SiteIndex> ordered = new ArrayList<>(scope);
+        ordered.sort(Comparator.comparingInt(SiteIndex::getSiteId));
+        return expand(ordered, 0, prefix, new ArrayList<>());
+    }
+
+    private Set<String> expand(List<SiteIndex> scope, int index, String prefix, List<TermCursor> cursors) {
+        if (index == scope.size()) return PrefixExpansion.top(cursors, searchSettings.getMaxPrefixExpansions());
+        return scope.get(index).withTerms(prefix, siteCursors -> {
+            cursors.addAll(siteCursors);
+            return expand(scope, index + 1, prefix, cursors);
+        });
+    }
+
+    private Collection<SiteIndex> visibleSites() {
+        if (hidden.isEmpty()) return sites.values();
+        List<SiteIndex> result = new ArrayList<>();
+        sites.forEach((siteId, siteIndex) -> {
+            if (!hidden.contains(siteId)) result.add(siteIndex);
+        });
+        return result;
+    }
+
+    private Map<Integer, Map<String, int[]>> loadPositions(List<SearchHit> hits, Set<String> lemmas) {
+        List<Integer> ids = new ArrayList<>(hits.size());
+        hits.forEach(hit -> ids.add(hit.getPageId()));
+        return findPositions(ids, lemmas);
+    }
+
+    /**
+     * Позиции заданных лемм на страницах; страниц без сохранённых позиций в результате нет.
+     */
+    public Map<Integer, Map<String, int[]>> findPositions(List<Integer> pageIds, Set<String> lemmas) {
+        Map<Integer, Map<String, int[]>> result = new HashMap<>();
+        if (!sitesList.isStorePositions()) return result;
+        for (PagePositions pagePositions : pagePositionsRepository.findAllById(pageIds)) {
+            result.put(pagePositions.getPageId(), PositionCodec.decode(pagePositions.getPositions(), lemmas));
+        }
+        return result;
+    }
+
+    /**
+     * Множитель релевантности от 1 до 2: чем короче наименьший отрывок текста,
+     * содержащий все леммы запроса, тем он больше.
+     */
+    private static float proximity(Map<String, int[]> positions, Set<String> lemmas) {
+        if (lemmas.size() < 2) return 1;
+        int[][] lists = new int[lemmas.size()][];
+        int n = 0;
+        for (String lemma : lemmas) {
+            int[] values = positions.get(lemma);
+            if (Objects.isNull(values) || values.length == 0) return 1;
+            lists[n++] = values;
+        }
+        int[] next = new int[n];
+        int span = Integer.MAX_VALUE;
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int minList = 0;
+            for (int j = 0; j < n; j++) {
+                int value = lists[j][next[j]];
+                if (value < min) {
+                    min = value;
+                    minList = j;
+                }
+                max = Math.max(max, value);
+            }
+            span = Math.min(span, max - min + 1);
+            if (++next[minList] == lists[minList].length) break;
+        }
+        return 1 + Math.min(1f, (float) n / span);
+    }
+}
@@ -0,0 +1,78 @@
+package searchengine.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики поиска: время запроса целиком и по этапам (лемматизация запроса, открытие списков
+ * страниц, пересечение списков вместе с подсчётом релевантности, переранжирование по позициям,
+ * сниппеты) и ожидание блокировок индекса сайта.
+ */
+@Component
+public class SearchMetrics {
+
+    private final Timer latency;
+    private final Timer lemmatize;
+    private final Timer postings;
+    private final Timer intersect;
+    private final Timer rank;
+    private final Timer snippet;
+    private final Timer readLockWait;
+    private final Timer writeLockWait;
+
+    public SearchMetrics(MeterRegistry registry) {
+        latency = Timer.builder("search.latency").publishPercentileHistogram().register(registry);
+        lemmatize = stage(registry, "lemmatize");
+        postings = stage(registry, "postings");
+        intersect = stage(registry, "intersect");
+        rank = stage(registry, "rank");
+        snippet = stage(registry, "snippet");
+        readLockWait = Timer.builder("search.index.lock.wait").tag("mode", "read").register(registry);
+        writeLockWait = Timer.builder("search.index.lock.wait").tag("mode", "write").register(registry);
+    }
+
+    private static Timer stage(MeterRegistry registry, String name) {
+        return Timer.builder("search.stage").tag("stage", name).register(registry);
+    }
+
+    public void recordLatency(long startNanos) {
+        latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLemmatize(long startNanos) {
+        lemmatize.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSnippet(long startNanos) {
+        snippet.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordRank(long startNanos) {
+        rank.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void record(Stages stages) {
+        postings.record(stages.postings, TimeUnit.NANOSECONDS);
+        intersect.record(stages.intersect, TimeUnit.NANOSECONDS);
+    }
+
+    void recordReadLockWait(long nanos) {
+        readLockWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordWriteLockWait(long nanos) {
+        writeLockWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Время этапов одного запроса, суммированное по всем сайтам и частям их индексов.
+     */
+    static class Stages {
+
+        long postings;
+        long intersect;
+    }
+}
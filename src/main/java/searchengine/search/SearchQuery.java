@@ -0,0 +1,249 @@
+package searchengine.search;
+
+import lombok.Getter;
+import searchengine.morphology.Language;
+import searchengine.utils.LemmaFinder;
+import searchengine.utils.WordOffsets;
+
+import java.util.*;
+
+/**
+ * Разобранный поисковый запрос: дерево операторов над леммами, префиксами и фразами.
+ * <p>
+ * Слова через пробел или {@code AND} должны быть на странице все, {@code OR} или {@code |}
+ * между операндами требует хотя бы один из них, {@code NOT} или {@code -} перед операндом
+ * исключает страницы с ним. {@code AND} связывает сильнее {@code OR}, порядок меняют скобки.
+ * Слова в кавычках должны идти подряд, слово со звёздочкой на конце заменяется
+ * леммами, которые с него начинаются.
+ */
+@Getter
+public class SearchQuery {
+
+    private final QueryNode root;
+
+    public SearchQuery(QueryNode root) {
+        this.root = root;
+    }
+
+    public static SearchQuery parse(String query, List<Language> languages) {
+        return new SearchQuery(new Parser(query, languages).parse());
+    }
+
+    /**
+     * Запрос только исключает страницы, например {@code -слово}: перечислить страницы без лемм
+     * по их спискам нельзя, поэтому такой запрос не выполняется.
+     */
+    public boolean isExclusionOnly() {
+        return Objects.nonNull(root) && root.excludesOnly();
+    }
+
+    /**
+     * Ключ запроса для кэша: не зависит от порядка операндов и формы слов.
+     */
+    public String key() {
+        return Objects.isNull(root) ? "" : root.key();
+    }
+
+    /**
+     * Разбор рекурсивным спуском. Ошибки запроса не прерывают разбор: лишняя закрывающая скобка
+     * и оператор без операнда пропускаются, незакрытые скобка и кавычка закрываются в конце запроса.
+     * Двойное исключение {@code -(-слово)} заменяется самим операндом.
+     */
+    private static class Parser {
+
+        private static final int MIN_PREFIX_LENGTH = 2;
+        private final String query;
+        private final List<Language> languages;
+        private int position;
+
+        Parser(String query, List<Language> languages) {
+            this.query = query;
+            this.languages = languages;
+        }
+
+        QueryNode parse() {
+            List<QueryNode> operands = new ArrayList<>();
+            while (hasMore()) {
+                if (peek() == ')') {
+                    position++;
+                    continue;
+                }
+                operands.add(parseOr());
+            }
+            return QueryNode.and(operands);
+        }
+
+        private QueryNode parseOr() {
+            List<QueryNode> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (hasMore() && isOr()) {
+                skipOperator();
+                operands.add(parseAnd());
+            }
+            return QueryNode.or(operands);
+        }
+
+        private QueryNode parseAnd() {
+            List<QueryNode> operands = new ArrayList<>();
+            while (hasMore() && peek() != ')' && !isOr()) {
+                if (isWord("AND")) {
+                    position += 3;
+                    continue;
+                }
+                operands.add(parseUnary());
+            }
+            return QueryNode.and(operands);
+        }
+
+        private QueryNode parseUnary() {
+            if (isWord("NOT") || (peek() == '-' && position + 1 < query.length()
+                    && !Character.isWhitespace(query.charAt(position + 1)))) {
+                position += peek() == '-' ? 1 : 3;
+                skipWhitespace();
+                if (!hasMore() || peek() == ')' || isOr()) return null;
+                QueryNode operand = parseUnary();
+                if (operand instanceof QueryNode.Not not) return not.getOperand();
+                return Objects.isNull(operand) ? null : new QueryNode.Not(operand);
+            }
+            char c = peek();
+            if (c == '(') {
+                position++;
+                QueryNode group = parseOr();
+                if (hasMore() && peek() == ')') position++;
+                return group;
+            }
+            if (c == '"') return parsePhrase();
+            return parseWord();
+        }
+
+        private QueryNode parsePhrase() {
+            int start = ++position;
+            int end = query.indexOf('"', start);
+            if (end < 0) end = query.length();
+            position = Math.min(query.length(), end + 1);
+            String text = query.substring(start, end);
+            int[] offsets = WordOffsets.find(text);
+            List<Term> terms = new ArrayList<>();
+            List<QueryNode> words = new ArrayList<>();
+            for (int i = 0; i < offsets.length / 2; i++) {
+                List<String> wordLemmas = LemmaFinder.findWordLemmas(text.substring(offsets[2 * i], offsets[2 * i + 1]),
+                        languages);
+                if (wordLemmas.isEmpty()) continue;
+                terms.add(new Term(new HashSet<>(wordLemmas), i));
+                words.add(word(wordLemmas));
+            }
+            QueryNode node = QueryNode.and(words);
+            return terms.size() > 1 ? new QueryNode.Phrase(new Phrase(terms), node) : node;
+        }
+
+        private QueryNode parseWord() {
+            int start = position;
+            while (position < query.length() && !isDelimiter(peek())) position++;
+            if (position == start) {
+                position++;
+                return null;
+            }
+            String token = query.substring(start, position);
+            if (token.endsWith("*")) {
+                String prefix = LemmaFinder.normalizeWord(token.substring(0, token.length() - 1), languages);
+                return prefix.length() < MIN_PREFIX_LENGTH ? null : new QueryNode.Prefix(prefix);
+            }
+            int[] offsets = WordOffsets.find(token);
+            List<QueryNode> words = new ArrayList<>();
+            for (int i = 0; i < offsets.length / 2; i++) {
+                words.add(word(LemmaFinder.findWordLemmas(token.substring(offsets[2 * i], offsets[2 * i + 1]), languages)));
+            }
+            return QueryNode.and(words);
+        }
+
+        /**
+         * Слово с несколькими леммами индексируется под каждой из них, поэтому на странице есть все.
+         */
+        private static QueryNode word(List<String> wordLemmas) {
+            List<QueryNode> terms = new ArrayList<>();
+            new LinkedHashSet<>(wordLemmas).forEach(lemma -> terms.add(new QueryNode.Term(lemma)));
+            return QueryNode.and(terms);
+        }
+
+        private boolean isOr() {
+            return peek() == '|' || isWord("OR");
+        }
+
+        private void skipOperator() {
+            position += peek() == '|' ? 1 : 2;
+        }
+
+        private boolean isWord(String operator) {
+            int end = position + operator.length();
+            return query.startsWith(operator, position) && (end == query.length() || isDelimiter(query.charAt(end)));
+        }
+
+        private static boolean isDelimiter(char c) {
+            return Character.isWhitespace(c) || c == '"' || c == '(' || c == ')' || c == '|';
+        }
+
+        private boolean hasMore() {
+            skipWhitespace();
+            return position < query.length();
+        }
+
+        private char peek() {
+            return query.charAt(position);
+        }
+
+        private void skipWhitespace() {
+            while (position < query.length() && Character.isWhitespace(query.charAt(position))) position++;
+        }
+    }
+
+    @Getter
+    public static class Phrase {
+        private final List<Term> terms;
+
+        public Phrase(List<Term> terms) {
+            this.terms = terms;
+        }
+
+        /**
+         * Проверяет, что на странице есть место, где слова фразы стоят на своих местах
+         * относительно первого слова. Слова без лемм (предлоги, союзы) пропускаются.
+         */
+        public boolean matches(Map<String, int[]> positions) {
+            Term first = terms.get(0);
+            for (String lemma : first.getLemmas()) {
+                int[] starts = positions.get(lemma);
+                if (Objects.isNull(starts)) continue;
+                for (int start : starts) {
+                    if (matchesAt(positions, start - first.getOffset())) return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesAt(Map<String, int[]> positions, int base) {
+            for (int i = 1; i < terms.size(); i++) {
+                if (!terms.get(i).occursAt(positions, base + terms.get(i).getOffset())) return false;
+            }
+            return true;
+        }
+    }
+
+    @Getter
+    public static class Term {
+        private final Set<String> lemmas;
+        private final int offset;
+
+        public Term(Set<String> lemmas, int offset) {
+            this.lemmas = lemmas;
+            this.offset = offset;
+        }
+
+        boolean occursAt(Map<String, int[]> positions, int position) {
+            for (String lemma : lemmas) {
+                int[] values = positions.get(lemma);
+                if (Objects.nonNull(values) && Arrays.binarySearch(values, position) >= 0) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package searchengine.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.Set;
+
+@Getter
+@RequiredArgsConstructor
+public class SearchResult {
+
+    private final int total;
+    private final List<SearchHit> hits;
+    /**
+     * Леммы запроса, найденные в индексе, вместе с леммами раскрытых префиксов.
+     */
+    private final Set<String> lemmas;
+}
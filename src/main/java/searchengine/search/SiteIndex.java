@@ -0,0 +1,527 @@
+package searchengine.search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import searchengine.utils.IntIntHashMap;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Индекс одного сайта: неизменяемые сегменты на диске и буфер последних изменений в памяти.
+ * Новая версия страницы всегда попадает в буфер, а в сегментах прежняя версия отмечается удалённой,
+ * поэтому каждая страница живёт ровно в одной части индекса. Буфер сбрасывается в новый сегмент,
+ * после чего публикуется манифест сайта.
+ */
+public class SiteIndex {
+
+    private final int siteId;
+    private final IndexDirectory directory;
+    private final SearchMetrics metrics;
+    private final List<Part> parts = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object flushMonitor = new Object();
+    private MemoryIndex memory = new MemoryIndex();
+    private int nextSegment;
+    private int pageCount;
+    private long totalLength;
+    private boolean dirty;
+    private boolean closed;
+    private SiteStatistics statistics = new SiteStatistics(0, 0);
+    private static final Logger logger = LogManager.getLogger(SiteIndex.class);
+
+    SiteIndex(int siteId, IndexDirectory directory, SearchMetrics metrics) {
+        this.siteId = siteId;
+        this.directory = directory;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Открывает опубликованные сегменты сайта. Возвращает {@code null}, если манифеста нет
+     * или после него остались незаписанные изменения: такой сайт нужно перестроить из базы.
+     */
+    static SiteIndex open(int siteId, IndexDirectory directory, SearchMetrics metrics) throws IOException {
+        IndexManifest manifest = directory.readManifest(siteId);
+        if (Objects.isNull(manifest) || directory.isDirty(siteId)) return null;
+        SiteIndex siteIndex = new SiteIndex(siteId, directory, metrics);
+        siteIndex.nextSegment = manifest.getNextSegment();
+        Set<String> keep = new HashSet<>();
+        keep.add("site-" + siteId + ".manifest");
+        for (Map.Entry<String, IntIntHashMap> entry : manifest.getSegments().entrySet()) {
+            siteIndex.addPart(directory.openSegment(entry.getKey()), entry.getValue());
+            keep.add(entry.getKey());
+        }
+        siteIndex.updateStatistics();
+        directory.deleteSiteFiles(siteId, keep);
+        return siteIndex;
+    }
+
+    /**
+     * Заменяет файлы сайта одним сегментом из страниц, загруженных из базы. Если сегмент
+     * записать не удалось, страницы остаются в буфере и сайт будет перестроен при следующем запуске.
+     */
+    static SiteIndex rebuild(int siteId, IndexDirectory directory, SearchMetrics metrics, MemoryIndex memory) {
+        SiteIndex siteIndex = new SiteIndex(siteId, directory, metrics);
+        siteIndex.memory = memory;
+        siteIndex.pageCount = memory.pageCount();
+        siteIndex.totalLength = memory.totalLength();
+        siteIndex.updateStatistics();
+        try {
+            directory.deleteSiteFiles(siteId, Set.of());
+            siteIndex.markDirty();
+            siteIndex.flush();
+        } catch (IOException e) {
+            logger.warn("Failed to write index segment of site " + siteId + " - " + e.getMessage());
+        }
+        return siteIndex;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    private void addPart(PostingSource source, IntIntHashMap deleted) {
+        parts.add(new Part(source, deleted));
+        pageCount += source.pageCount() - deleted.size();
+        totalLength += source.totalLength();
+        deleted.forEach((pageId, length) -> totalLength -= length);
+    }
+
+    public void addPage(int pageId, Map<String, Float> ranks) {
+        updatePage(pageId, List.of(), ranks);
+    }
+
+    /**
+     * Удаляет страницу из списков лемм {@code removed} и записывает её ранги по остальным леммам.
+     */
+    public void updatePage(int pageId, Collection<String> removed, Map<String, Float> ranks) {
+        lockWrite();
+        try {
+            markDirty();
+            deleteFromParts(pageId);
+            int previous = memory.updatePage(pageId, removed, ranks);
+            if (previous < 0) pageCount++;
+            totalLength += memory.pageLength(pageId) - Math.max(previous, 0);
+            updateStatistics();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removePage(int pageId, Collection<String> lemmas) {
+        lockWrite();
+        try {
+            markDirty();
+            deleteFromParts(pageId);
+            int previous = memory.removePage(pageId, lemmas);
+            if (previous >= 0) {
+                pageCount--;
+                totalLength -= previous;
+            }
+            updateStatistics();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void lockRead() {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        metrics.recordReadLockWait(System.nanoTime() - start);
+    }
+
+    private void lockWrite() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        metrics.recordWriteLockWait(System.nanoTime() - start);
+    }
+
+    private void deleteFromParts(int pageId) {
+        for (Part part : parts) {
+            int length = part.source.pageLength(pageId);
+            if (length < 0 || part.deleted.containsKey(pageId)) continue;
+            part.deleted.put(pageId, length);
+            pageCount--;
+            totalLength -= length;
+        }
+    }
+
+    private void markDirty() {
+        if (dirty) return;
+        dirty = true;
+        try {
+            directory.markDirty(siteId);
+        } catch (IOException e) {
+            logger.warn("Failed to mark index of site " + siteId + " as dirty - " + e.getMessage());
+        }
+    }
+
+    long memoryPostingCount() {
+        lockRead();
+        try {
+            return memory.postingCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает буфер изменений в новый сегмент и публикует манифест. Пока сегмент пишется,
+     * поиск читает прежний буфер, а новые изменения копятся в следующем.
+     */
+    public void flush() throws IOException {
+        synchronized (flushMonitor) {
+            MemoryIndex flushing;
+            Part part;
+            int number;
+            lockWrite();
+            try {
+                if (closed) return;
+                if (memory.isEmpty()) {
+                    if (dirty) publish();
+                    return;
+                }
+                flushing = memory;
+                memory = new MemoryIndex();
+                part = new Part(flushing, new IntIntHashMap());
+                parts.add(part);
+                number = nextSegment++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            IndexSegment segment;
+            try (IndexSegmentWriter writer = directory.createSegment(siteId, number)) {
+                writer.addAll(flushing);
+                segment = writer.finish();
+            }
+            lockWrite();
+            try {
+                if (closed) {
+                    segment.delete();
+                    return;
+                }
+                parts.set(parts.indexOf(part), new Part(segment, part.deleted));
+                publish();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Записывает манифест из сегментов, уже лежащих на диске. Вызывается под блокировкой записи.
+     */
+    private void publish() throws IOException {
+        Map<String, IntIntHashMap> segments = new LinkedHashMap<>();
+        boolean complete = memory.isEmpty();
+        for (Part part : parts) {
+            if (part.source instanceof IndexSegment segment) {
+                segments.put(segment.getName(), part.deleted);
+            } else {
+                complete = false;
+            }
+        }
+        directory.writeManifest(siteId, new IndexManifest(nextSegment, segments));
+        if (complete) {
+            directory.markClean(siteId);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Опубликованные сегменты с копиями их удалённых страниц на момент вызова.
+     * У закрытого индекса сегментов нет: их файлы удаляются вместе с сайтом.
+     */
+    List<SegmentSnapshot> segments() {
+        lockRead();
+        try {
+            if (closed) return List.of();
+            List<SegmentSnapshot> result = new ArrayList<>();
+            for (Part part : parts) {
+                if (!(part.source instanceof IndexSegment segment)) continue;
+                IntIntHashMap deleted = new IntIntHashMap(part.deleted.size());
+                part.deleted.forEach(deleted::put);
+                result.add(new SegmentSnapshot(segment, deleted));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сливает сегменты в один без удалённых страниц и подменяет их результатом одной публикацией.
+     * Всё это время поиск читает прежние сегменты; страницы, удалённые во время слияния,
+     * отмечаются удалёнными в новом сегменте. Возвращает размер нового сегмента в байтах
+     * или {@code -1}, если индекс закрыт или сегменты за это время были удалены из индекса.
+     */
+    long merge(List<SegmentSnapshot> merging, IoThrottle throttle) throws IOException, InterruptedException {
+        int number;
+        lockWrite();
+        try {
+            if (closed) return -1;
+            number = nextSegment++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        IndexSegment merged;
+        try (IndexSegmentWriter writer = directory.createSegment(siteId, number)) {
+            write(merging, writer, throttle);
+            merged = writer.pageCount() == 0 ? null : writer.finish();
+        }
+        lockWrite();
+        try {
+            List<Part> replaced = new ArrayList<>();
+            for (SegmentSnapshot snapshot : merging) {
+                parts.stream().filter(part -> part.source == snapshot.segment).findFirst().ifPresent(replaced::add);
+            }
+            if (closed || replaced.size() != merging.size()) {
+                if (Objects.nonNull(merged)) merged.delete();
+                return -1;
+            }
+            IntIntHashMap deleted = new IntIntHashMap();
+            for (int i = 0; i < merging.size(); i++) {
+                IntIntHashMap before = merging.get(i).deleted;
+                replaced.get(i).deleted.forEach((pageId, length) -> {
+                    if (!before.containsKey(pageId)) deleted.put(pageId, length);
+                });
+            }
+            int position = parts.indexOf(replaced.get(0));
+            parts.removeAll(replaced);
+            if (Objects.nonNull(merged)) parts.add(Math.min(position, parts.size()), new Part(merged, deleted));
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (SegmentSnapshot snapshot : merging) {
+            try {
+                snapshot.segment.delete();
+            } catch (IOException e) {
+                logger.warn("Failed to delete merged index segment " + snapshot.segment.getName() + " - " + e.getMessage());
+            }
+        }
+        return Objects.isNull(merged) ? 0 : merged.size();
+    }
+
+    /**
+     * Сливает живые страницы и списки лемм сегментов в {@code writer}. Скорость ограничивается
+     * по сумме прочитанных из сегментов и записанных байтов.
+     */
+    private static void write(List<SegmentSnapshot> merging, IndexSegmentWriter writer, IoThrottle throttle)
+            throws IOException, InterruptedException {
+        int total = 0;
+        for (SegmentSnapshot snapshot : merging) {
+            total += snapshot.segment.pageCount();
+        }
+        throttle.acquire(total * 8L);
+        long[] pages = new long[total];
+        int count = 0;
+        for (SegmentSnapshot snapshot : merging) {
+            for (int i = 0; i < snapshot.segment.pageCount(); i++) {
+                int pageId = snapshot.segment.pageAt(i);
+                if (!snapshot.deleted.containsKey(pageId)) {
+                    pages[count++] = ((long) pageId << 32) | snapshot.segment.lengthAt(i);
+                }
+            }
+        }
+        Arrays.sort(pages, 0, count);
+        for (int i = 0; i < count; i++) {
+            writer.addPage((int) (pages[i] >>> 32), (int) pages[i]);
+        }
+        PriorityQueue<MergeInput> queue = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.terms.term(), b.terms.term()));
+        for (SegmentSnapshot snapshot : merging) {
+            IndexSegment.TermIterator terms = snapshot.segment.terms();
+            if (terms.next()) queue.add(new MergeInput(terms, snapshot.deleted));
+        }
+        List<MergeInput> current = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            byte[] term = queue.peek().terms.term();
+            current.clear();
+            while (!queue.isEmpty() && Arrays.equals(queue.peek().terms.term(), term)) {
+                current.add(queue.poll());
+            }
+            PostingList list = new PostingList();
+            long read = 0;
+            for (MergeInput input : current) {
+                read += input.terms.postingsLength();
+                PostingCursor cursor = input.terms.cursor();
+                for (int pageId = cursor.next(); pageId != PostingCursor.NO_MORE; pageId = cursor.next()) {
+                    if (!input.deleted.containsKey(pageId)) list.append(pageId, cursor.rank());
+                }
+                if (input.terms.next()) queue.add(input);
+            }
+            if (current.size() > 1) list.sort();
+            long size = writer.size();
+            writer.addTerm(term, list);
+            throttle.acquire(read + writer.size() - size);
+        }
+    }
+
+    /**
+     * Отключает индекс от файлов перед их удалением: незавершённый сброс буфера ничего не опубликует.
+     */
+    void close() {
+        lockWrite();
+        try {
+            closed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public SiteStatistics getStatistics() {
+        return statistics;
+    }
+
+    private void updateStatistics() {
+        statistics = new SiteStatistics(pageCount, totalLength);
+    }
+
+    public boolean contains(String lemma) {
+        lockRead();
+        try {
+            if (memory.docFreq(lemma) > 0) return true;
+            for (Part part : parts) {
+                if (part.source.docFreq(lemma) > 0) return true;
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет {@code action} с курсорами лемм с префиксом {@code prefix} по всем частям индекса.
+     * Курсоры читают сегменты, поэтому действуют только внутри {@code action}, пока удерживается
+     * блокировка чтения.
+     */
+    <T> T withTerms(String prefix, Function<List<TermCursor>, T> action) {
+        lockRead();
+        try {
+            List<TermCursor> cursors = new ArrayList<>(parts.size() + 1);
+            cursors.add(memory.terms(prefix));
+            for (Part part : parts) {
+                cursors.add(part.source.terms(prefix));
+            }
+            return action.apply(cursors);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет страницы, подходящие под запрос, в каждой части индекса отдельно. Число страниц леммы
+     * для веса берётся по всем частям, включая ещё не вычищенные удалённые страницы сегментов.
+     */
+    public void search(QueryNode query, Scorer scorer, TopHits result, SearchMetrics.Stages stages) {
+        lockRead();
+        try {
+            long start = System.nanoTime();
+            Set<String> lemmas = new HashSet<>();
+            collectTerms(query, lemmas);
+            Map<String, Float> weights = new HashMap<>();
+            for (String lemma : lemmas) {
+                int docFreq = memory.docFreq(lemma);
+                for (Part part : parts) {
+                    docFreq += part.source.docFreq(lemma);
+                }
+                if (docFreq > 0) weights.put(lemma, scorer.termWeight(docFreq, statistics));
+            }
+            stages.postings += System.nanoTime() - start;
+            if (weights.isEmpty()) return;
+            for (Part part : parts) {
+                search(part.source, part.deleted, query, weights, scorer, result, stages);
+            }
+            search(memory, null, query, weights, scorer, result, stages);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void collectTerms(QueryNode node, Set<String> result) {
+        if (node instanceof QueryNode.Term term) {
+            result.add(term.getLemma());
+        } else if (node instanceof QueryNode.Phrase phrase) {
+            collectTerms(phrase.getWords(), result);
+        } else if (node instanceof QueryNode.Not not) {
+            collectTerms(not.getOperand(), result);
+        } else if (node instanceof QueryNode.And and) {
+            and.getOperands().forEach(operand -> collectTerms(operand, result));
+        } else if (node instanceof QueryNode.Or or) {
+            or.getOperands().forEach(operand -> collectTerms(operand, result));
+        }
+    }
+
+    private void search(PostingSource source, IntIntHashMap deleted, QueryNode query, Map<String, Float> weights,
+                        Scorer scorer, TopHits result, SearchMetrics.Stages stages) {
+        long start = System.nanoTime();
+        QueryCursor cursor = new QueryPlanner(source, weights, scorer, statistics).plan(query);
+        long planned = System.nanoTime();
+        stages.postings += planned - start;
+        if (Objects.isNull(cursor)) return;
+        try {
+            for (int pageId = cursor.next(); pageId != PostingCursor.NO_MORE; pageId = cursor.next()) {
+                if (Objects.nonNull(deleted) && deleted.containsKey(pageId)) continue;
+                int length = source.pageLength(pageId);
+                result.offer(pageId, cursor.score(length));
+            }
+        } finally {
+            stages.intersect += System.nanoTime() - planned;
+        }
+    }
+
+    static class SegmentSnapshot {
+
+        private final IndexSegment segment;
+        private final IntIntHashMap deleted;
+
+        SegmentSnapshot(IndexSegment segment, IntIntHashMap deleted) {
+            this.segment = segment;
+            this.deleted = deleted;
+        }
+
+        IndexSegment getSegment() {
+            return segment;
+        }
+
+        int deletedCount() {
+            return deleted.size();
+        }
+
+        double deletedRatio() {
+            return segment.pageCount() == 0 ? 0 : (double) deleted.size() / segment.pageCount();
+        }
+
+        /**
+         * Размер файла сегмента за вычетом доли удалённых страниц.
+         */
+        long liveSize() {
+            return (long) (segment.size() * (1 - deletedRatio()));
+        }
+    }
+
+    private static class MergeInput {
+
+        private final IndexSegment.TermIterator terms;
+        private final IntIntHashMap deleted;
+
+        MergeInput(IndexSegment.TermIterator terms, IntIntHashMap deleted) {
+            this.terms = terms;
+            this.deleted = deleted;
+        }
+    }
+
+    private static class Part {
+
+        private final PostingSource source;
+        private final IntIntHashMap deleted;
+
+        Part(PostingSource source, IntIntHashMap deleted) {
+            this.source = source;
+            this.deleted = deleted;
+        }
+    }
+}
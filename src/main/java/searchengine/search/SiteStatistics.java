@@ -0,0 +1,24 @@
+package searchengine.search;
+
+/**
+ * Статистика корпуса сайта для ранжирования: число проиндексированных страниц
+ * и их средняя длина в словах, учтённых как леммы.
+ */
+public class SiteStatistics {
+
+    private final int pageCount;
+    private final double averageLength;
+
+    public SiteStatistics(int pageCount, long totalLength) {
+        this.pageCount = pageCount;
+        averageLength = pageCount == 0 ? 0 : (double) totalLength / pageCount;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public double getAverageLength() {
+        return averageLength;
+    }
+}
@@ -0,0 +1,163 @@
+package searchengine.search;
+
+import searchengine.morphology.Language;
+import searchengine.utils.LemmaFinder;
+
+import java.util.*;
+
+/**
+ * Строит сниппет по заранее разбитому на слова тексту страницы: выбирает окно
+ * из нескольких слов, покрывающее наибольшее число лемм запроса, и выделяет найденные слова.
+ */
+public class SnippetBuilder {
+
+    private static final int WINDOW = 24;
+    private static final int MAX_FRAGMENTS = 2;
+    private final String text;
+    private final int[] offsets;
+    private final int[] matches;
+    private final int words;
+
+    /**
+     * @param offsets    пары (начало, конец) слов в тексте
+     * @param matches    для каждого слова - номер найденной в нём леммы запроса или -1
+     */
+    public SnippetBuilder(String text, int[] offsets, int[] matches) {
+        this.text = text;
+        this.offsets = offsets;
+        this.matches = matches;
+        words = offsets.length / 2;
+    }
+
+    /**
+     * Сопоставляет слова текста леммам запроса с помощью морфологии.
+     */
+    public static SnippetBuilder matchLemmas(String text, int[] offsets, List<String> queryLemmas,
+                                             List<Language> languages) {
+        int[] matches = new int[offsets.length / 2];
+        Map<String, Integer> known = new HashMap<>();
+        for (int i = 0; i < matches.length; i++) {
+            String word = text.substring(offsets[2 * i], offsets[2 * i + 1]);
+            matches[i] = known.computeIfAbsent(word, w -> {
+                for (String lemma : LemmaFinder.findWordLemmas(w, languages)) {
+                    int index = queryLemmas.indexOf(lemma);
+                    if (index >= 0) return index;
+                }
+                return -1;
+            });
+        }
+        return new SnippetBuilder(text, offsets, matches);
+    }
+
+    /**
+     * Отмечает слова текста по сохранённым при индексации позициям лемм.
+     */
+    public static SnippetBuilder fromPositions(String text, int[] offsets, Map<String, int[]> positions,
+                                               List<String> queryLemmas) {
+        int[] matches = new int[offsets.length / 2];
+        Arrays.fill(matches, -1);
+        for (int index = queryLemmas.size() - 1; index >= 0; index--) {
+            int[] wordPositions = positions.get(queryLemmas.get(index));
+            if (Objects.isNull(wordPositions)) continue;
+            for (int position : wordPositions) {
+                if (position < matches.length) matches[position] = index;
+            }
+        }
+        return new SnippetBuilder(text, offsets, matches);
+    }
+
+    public String build() {
+        if (words == 0) return "";
+        Set<Integer> covered = new HashSet<>();
+        List<int[]> fragments = new ArrayList<>();
+        for (int f = 0; f < MAX_FRAGMENTS; f++) {
+            int[] window = bestWindow(covered, fragments);
+            if (Objects.isNull(window)) break;
+            fragments.add(window);
+            for (int i = window[0]; i < window[1]; i++) {
+                if (matches[i] >= 0) covered.add(matches[i]);
+            }
+        }
+        if (fragments.isEmpty()) fragments.add(new int[]{0, Math.min(words, WINDOW)});
+        fragments.sort(Comparator.comparingInt(window -> window[0]));
+        StringBuilder result = new StringBuilder();
+        for (int[] window : fragments) {
+            appendFragment(result, window[0], window[1]);
+        }
+        return result.toString().trim();
+    }
+
+    private int[] bestWindow(Set<Integer> covered, List<int[]> taken) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        int bestStart = -1;
+        int bestDistinct = 0;
+        int bestTotal = 0;
+        int total = 0;
+        for (int end = 0; end < words; end++) {
+            if (isNew(end, covered)) {
+                counts.merge(matches[end], 1, Integer::sum);
+                total++;
+            }
+            int start = end - WINDOW + 1;
+            if (start > 0 && isNew(start - 1, covered)) {
+                counts.computeIfPresent(matches[start - 1], (k, v) -> v == 1 ? null : v - 1);
+                total--;
+            }
+            int windowStart = Math.max(0, start);
+            if (overlaps(windowStart, end + 1, taken)) continue;
+            if (counts.size() > bestDistinct || (counts.size() == bestDistinct && total > bestTotal)) {
+                bestDistinct = counts.size();
+                bestTotal = total;
+                bestStart = windowStart;
+            }
+        }
+        if (bestStart < 0) return null;
+        int first = bestStart;
+        while (first < words && !isNew(first, covered)) first++;
+        int start = Math.max(bestStart, first - 3);
+        return new int[]{start, Math.min(words, start + WINDOW)};
+    }
+
+    private boolean isNew(int word, Set<Integer> covered) {
+        return matches[word] >= 0 && !covered.contains(matches[word]);
+    }
+
+    private static boolean overlaps(int start, int end, List<int[]> taken) {
+        for (int[] window : taken) {
+            if (start < window[1] && window[0] < end) return true;
+        }
+        return false;
+    }
+
+    private void appendFragment(StringBuilder result, int startWord, int endWord) {
+        if (startWord > 0) result.append("...");
+        int position = offsets[2 * startWord];
+        for (int i = startWord; i < endWord; i++) {
+            int start = offsets[2 * i];
+            int end = offsets[2 * i + 1];
+            escape(result, position, start);
+            if (matches[i] >= 0) {
+                result.append("<b>");
+                escape(result, start, end);
+                result.append("</b>");
+            } else {
+                escape(result, start, end);
+            }
+            position = end;
+        }
+        if (endWord < words) result.append("...");
+        result.append(' ');
+    }
+
+    private void escape(StringBuilder result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> result.append("&lt;");
+                case '>' -> result.append("&gt;");
+                case '&' -> result.append("&amp;");
+                default -> result.append(c);
+            }
+        }
+    }
+}
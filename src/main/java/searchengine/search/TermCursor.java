@@ -0,0 +1,25 @@
+package searchengine.search;
+
+/**
+ * Проход по леммам части индекса, начинающимся с префикса, в порядке байтов UTF-8.
+ * До первого вызова {@link #next()} курсор стоит перед первой леммой.
+ */
+interface TermCursor {
+
+    /**
+     * Переходит к следующей лемме и возвращает {@code false}, если лемм с префиксом больше нет.
+     */
+    boolean next();
+
+    /**
+     * Текущая лемма в UTF-8. Массив не меняется при переходе к следующей лемме.
+     */
+    byte[] term();
+
+    int docFreq();
+
+    /**
+     * Оценка сверху числа страниц у текущей и всех следующих лемм курсора.
+     */
+    int maxDocFreq();
+}
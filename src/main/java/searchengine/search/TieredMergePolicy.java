@@ -0,0 +1,51 @@
+package searchengine.search;
+
+import searchengine.config.IndexMergeSettings;
+
+import java.util.*;
+
+/**
+ * Выбирает сегменты сайта для слияния. Сегменты делятся на ярусы по размеру без учёта
+ * удалённых страниц: размер каждого следующего яруса в {@code segments-per-tier} раз больше,
+ * сегменты меньше {@code floor-segment-size} считаются сегментами этого размера. Когда в ярусе
+ * набирается {@code segments-per-tier} сегментов, самые маленькие из них сливаются в один.
+ * Если таких ярусов нет, переписывается сегмент с наибольшей долей удалённых страниц,
+ * если она не меньше {@code deletes-threshold}.
+ */
+class TieredMergePolicy {
+
+    private final IndexMergeSettings settings;
+
+    TieredMergePolicy(IndexMergeSettings settings) {
+        this.settings = settings;
+    }
+
+    List<SiteIndex.SegmentSnapshot> select(List<SiteIndex.SegmentSnapshot> segments) {
+        long floor = Math.max(1, settings.getFloorSegmentSize().toBytes());
+        long maxSize = settings.getMaxSegmentSize().toBytes();
+        int perTier = Math.max(2, settings.getSegmentsPerTier());
+        TreeMap<Integer, List<SiteIndex.SegmentSnapshot>> tiers = new TreeMap<>();
+        for (SiteIndex.SegmentSnapshot segment : segments) {
+            if (segment.liveSize() > maxSize / 2) continue;
+            int tier = (int) (Math.log((double) Math.max(floor, segment.liveSize()) / floor) / Math.log(perTier));
+            tiers.computeIfAbsent(tier, k -> new ArrayList<>()).add(segment);
+        }
+        for (List<SiteIndex.SegmentSnapshot> tier : tiers.values()) {
+            if (tier.size() < perTier) continue;
+            tier.sort(Comparator.comparingLong(SiteIndex.SegmentSnapshot::liveSize));
+            List<SiteIndex.SegmentSnapshot> merge = new ArrayList<>();
+            long size = 0;
+            for (SiteIndex.SegmentSnapshot segment : tier) {
+                if (merge.size() == settings.getMaxMergeAtOnce() || size + segment.liveSize() > maxSize) break;
+                merge.add(segment);
+                size += segment.liveSize();
+            }
+            if (merge.size() > 1) return merge;
+        }
+        return segments.stream()
+                .filter(segment -> segment.deletedRatio() >= settings.getDeletesThreshold() && segment.deletedRatio() > 0)
+                .max(Comparator.comparingDouble(SiteIndex.SegmentSnapshot::deletedRatio))
+                .map(List::of)
+                .orElse(List.of());
+    }
+}
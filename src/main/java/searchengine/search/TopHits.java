@@ -0,0 +1,104 @@
+package searchengine.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ограниченная min-куча, хранящая k страниц с наибольшей релевантностью,
+ * и счётчик всех предложенных страниц.
+ */
+public class TopHits {
+
+    private final int capacity;
+    private int[] pages;
+    private float[] relevances;
+    private int size;
+    private int total;
+
+    public TopHits(int capacity) {
+        this.capacity = capacity;
+        pages = new int[Math.min(capacity, 16)];
+        relevances = new float[pages.length];
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Может ли страница с такой релевантностью ещё попасть в кучу.
+     */
+    public boolean accepts(float relevance) {
+        return size < capacity || (capacity > 0 && relevance >= relevances[0]);
+    }
+
+    public void offer(int pageId, float relevance) {
+        total++;
+        if (capacity == 0) return;
+        if (size < capacity) {
+            if (size == pages.length) {
+                int newLength = (int) Math.min(capacity, 2L * pages.length);
+                pages = Arrays.copyOf(pages, newLength);
+                relevances = Arrays.copyOf(relevances, newLength);
+            }
+            pages[size] = pageId;
+            relevances[size] = relevance;
+            siftUp(size++);
+            return;
+        }
+        if (!less(pages[0], relevances[0], pageId, relevance)) return;
+        pages[0] = pageId;
+        relevances[0] = relevance;
+        siftDown(0);
+    }
+
+    /**
+     * Возвращает накопленные страницы по убыванию релевантности, пропустив первые {@code offset}.
+     */
+    public List<SearchHit> toList(int offset) {
+        List<SearchHit> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(new SearchHit(pages[i], relevances[i]));
+        }
+        sorted.sort((h1, h2) -> less(h1.getPageId(), h1.getRelevance(), h2.getPageId(), h2.getRelevance()) ? 1
+                : less(h2.getPageId(), h2.getRelevance(), h1.getPageId(), h1.getRelevance()) ? -1 : 0);
+        return offset >= sorted.size() ? new ArrayList<>() : new ArrayList<>(sorted.subList(offset, sorted.size()));
+    }
+
+    private static boolean less(int page1, float relevance1, int page2, float relevance2) {
+        int compare = Float.compare(relevance1, relevance2);
+        return compare != 0 ? compare < 0 : page1 > page2;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(pages[i], relevances[i], pages[parent], relevances[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && less(pages[right], relevances[right], pages[left], relevances[left])) smallest = right;
+            if (!less(pages[smallest], relevances[smallest], pages[i], relevances[i])) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int page = pages[i];
+        pages[i] = pages[j];
+        pages[j] = page;
+        float relevance = relevances[i];
+        relevances[i] = relevances[j];
+        relevances[j] = relevance;
+    }
+}
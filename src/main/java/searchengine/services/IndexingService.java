@@ -5,10 +5,13 @@ import searchengine.dto.search.SearchResponse;
 
 public interface IndexingService {
 
-    IndexingResponse startIndexing();
+    /**
+     * @param resume продолжать прерванные обходы с последней контрольной точки
+     */
+    IndexingResponse startIndexing(boolean resume);
     IndexingResponse stopIndexing();
 
     IndexingResponse indexPage(String url);
 
-    SearchResponse search(String site, String query);
+    SearchResponse search(String site, String query, int offset, int limit);
 }
@@ -5,58 +5,87 @@ import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
 import searchengine.config.SiteParserData;
 import searchengine.config.SitesList;
+import searchengine.content.ContentStore;
+import searchengine.content.StoredText;
+import searchengine.crawler.CrawlActivity;
+import searchengine.crawler.CrawlCheckpoints;
+import searchengine.crawler.CrawlFrontier;
+import searchengine.crawler.CrawlScheduler;
+import searchengine.crawler.PolitenessScheduler;
+import searchengine.crawler.SiteCrawler;
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.indexing.PageState;
+import searchengine.dto.search.PageSummary;
 import searchengine.dto.search.SearchData;
 import searchengine.dto.search.SearchResponse;
-import searchengine.model.*;
+import searchengine.model.Site;
+import searchengine.morphology.Language;
+import searchengine.search.SearchCache;
+import searchengine.search.SearchHit;
+import searchengine.search.SearchIndex;
+import searchengine.search.SearchMetrics;
+import searchengine.search.SearchQuery;
+import searchengine.search.SearchResult;
+import searchengine.search.SnippetBuilder;
 import searchengine.utils.DataSaver;
-import searchengine.utils.LemmaFinder;
 import searchengine.utils.SiteParser;
+import searchengine.utils.WordOffsets;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
-public class IndexingServiceImpl implements IndexingService {
+public class IndexingServiceImpl implements IndexingService, CrawlActivity {
 
     @Getter
     private static volatile boolean indexingStarted = false;
     private final SitesList sites;
     private final DataSaver dataSaver;
     private final SiteParserData siteParserData;
-    private final Map<ForkJoinPool, SiteParser> poolParserMap = new HashMap<>();
-    private ScheduledExecutorService service;
+    private final SearchCache searchCache;
+    private final SearchIndex searchIndex;
+    private final ContentStore contentStore;
+    private final PolitenessScheduler politenessScheduler;
+    private final CrawlScheduler crawlScheduler;
+    private final SearchMetrics searchMetrics;
+    private final CrawlCheckpoints crawlCheckpoints;
+    private final Map<Integer, SiteCrawler> crawlers = new ConcurrentHashMap<>();
+    private final Map<Integer, Site> replacedSites = new ConcurrentHashMap<>();
+    private final AtomicInteger singlePages = new AtomicInteger();
+    private boolean launching;
     private static final Logger logger = LogManager.getLogger(IndexingServiceImpl.class);
 
 
     @Override
-    public IndexingResponse startIndexing() {
+    public IndexingResponse startIndexing(boolean resume) {
         IndexingResponse response = new IndexingResponse();
-        if (indexingStarted) {
-            response.setResult(false);
-            response.setError("Индексация уже запущена.");
-            return response;
+        synchronized (crawlers) {
+            if (indexingStarted || !crawlers.isEmpty()) {
+                response.setResult(false);
+                response.setError("Индексация уже запущена.");
+                return response;
+            }
+            indexingStarted = true;
+            launching = true;
         }
-        indexingStarted = true;
         new Thread(() -> {
             for (searchengine.config.Site siteConf : sites.getSites()) {
-                deleteAllSiteData(siteUrlToBaseForm(siteConf.getUrl()));
-                ForkJoinPool pool = new ForkJoinPool();
-                SiteParser parser = new SiteParser("/", saveSite(siteConf), siteParserData);
-                poolParserMap.put(pool, parser);
-                pool.execute(parser);
+                if (!indexingStarted) break;
+                if (!resume || !resumeSite(siteConf)) startSite(siteConf);
+            }
+            synchronized (crawlers) {
+                launching = false;
+                if (crawlers.isEmpty()) indexingStarted = false;
             }
-            startCheckForEndingIndexing();
         }).start();
         response.setResult(true);
         return response;
@@ -71,26 +100,157 @@ public class IndexingServiceImpl implements IndexingService {
             return response;
         }
         indexingStarted = false;
-        service.shutdownNow();
-        new Thread(() -> {
-            for (ForkJoinPool pool : new HashSet<>(poolParserMap.keySet())) {
-                pool.shutdown();
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException e) {
-                    logger.warn("Interrupted Exception in StopIndexingMethod");
-                }
-                Site site = poolParserMap.get(pool).getSite();
-                dataSaver.updateSite(site, Site.Status.FAILED, "Индексация остановлена пользователем");
-                poolParserMap.remove(pool);
-            }
-        }).start();
+        crawlers.values().forEach(SiteCrawler::stop);
         response.setResult(true);
         return response;
     }
 
+    /**
+     * Запускает обход сайта. В режиме повторного обхода данные сохранённого ранее сайта
+     * не удаляются: все известные страницы загружаются заново условными запросами,
+     * а переиндексируются только изменившиеся. В режиме теневой переиндексации новый обход
+     * строится в отдельном сайте, а прежние данные остаются доступны для поиска до его окончания.
+     */
+    private void startSite(searchengine.config.Site siteConf) {
+        String url = siteUrlToBaseForm(siteConf.getUrl());
+        Optional<Site> existing = sites.isIncremental() || sites.isShadowReindex()
+                ? dataSaver.findSiteByUrl(url) : Optional.empty();
+        Map<String, PageState> knownPages = new HashMap<>();
+        Site site;
+        CrawlFrontier frontier;
+        if (existing.isPresent() && sites.isIncremental()) {
+            dataSaver.findShadowSiteByUrl(url).ifPresent(dataSaver::removeAllBySite);
+            site = existing.get();
+            site.setStatus(Site.Status.INDEXING);
+            site.setLastError(null);
+            dataSaver.updateSite(site, Site.Status.INDEXING, null);
+            dataSaver.findPageStatesBySite(site).forEach(state -> knownPages.put(state.getPath(), state));
+            frontier = new CrawlFrontier(site);
+            frontier.offer("/");
+            knownPages.keySet().forEach(frontier::offer);
+        } else if (existing.isPresent()) {
+            dataSaver.findShadowSiteByUrl(url).ifPresent(dataSaver::removeAllBySite);
+            Site replaced = existing.get();
+            dataSaver.updateSite(replaced, Site.Status.INDEXING, replaced.getLastError());
+            site = saveSite(siteConf, true);
+            replacedSites.put(site.getId(), replaced);
+            frontier = new CrawlFrontier(site);
+            frontier.offer("/");
+        } else {
+            deleteAllSiteData(url);
+            site = saveSite(siteConf);
+            frontier = new CrawlFrontier(site);
+            frontier.offer("/");
+        }
+        launch(site, siteConf, frontier, knownPages);
+    }
+
+    /**
+     * Продолжает прерванный обход сайта с последней контрольной точки его границы обхода.
+     * Теневой сайт продолжается раньше основного. Возвращает {@code false}, если продолжать нечего.
+     */
+    private boolean resumeSite(searchengine.config.Site siteConf) {
+        String url = siteUrlToBaseForm(siteConf.getUrl());
+        Optional<Site> main = dataSaver.findSiteByUrl(url);
+        Site site = dataSaver.findShadowSiteByUrl(url)
+                .filter(shadow -> crawlCheckpoints.exists(shadow.getId()))
+                .or(() -> main.filter(existing -> crawlCheckpoints.exists(existing.getId())))
+                .orElse(null);
+        if (Objects.isNull(site)) return false;
+        CrawlFrontier frontier;
+        try {
+            frontier = crawlCheckpoints.restore(site);
+        } catch (IOException e) {
+            logger.warn("Failed to restore crawl checkpoint of " + url + " - " + e.getMessage());
+            return false;
+        }
+        if (site.isShadow()) {
+            main.ifPresent(replaced -> {
+                dataSaver.updateSite(replaced, Site.Status.INDEXING, replaced.getLastError());
+                replacedSites.put(site.getId(), replaced);
+            });
+        }
+        Map<String, PageState> knownPages = new HashMap<>();
+        if (sites.isIncremental()) {
+            dataSaver.findPageStatesBySite(site).forEach(state -> knownPages.put(state.getPath(), state));
+        }
+        site.setStatus(Site.Status.INDEXING);
+        site.setLastError(null);
+        dataSaver.updateSite(site, Site.Status.INDEXING, null);
+        logger.info("Resuming indexing of " + url + ", pages visited: " + frontier.visitedCount());
+        launch(site, siteConf, frontier, knownPages);
+        return true;
+    }
+
+    private void launch(Site site, searchengine.config.Site siteConf, CrawlFrontier frontier,
+                        Map<String, PageState> knownPages) {
+        politenessScheduler.register(site, siteConf);
+        crawlCheckpoints.track(site, frontier, () -> {
+            dataSaver.flush(site);
+            dataSaver.touchSite(site);
+        });
+        SiteCrawler crawler = new SiteCrawler(site, siteConf, frontier, siteParserData, knownPages);
+        crawlers.put(site.getId(), crawler);
+        crawler.getCompletion().thenAccept(c -> Thread.startVirtualThread(() -> finishSite(c)));
+        crawlScheduler.start(crawler);
+    }
+
+    /**
+     * Сохраняет итог обхода. Неудачная теневая переиндексация не затрагивает действующий сайт:
+     * ему возвращается прежний статус, а ошибка остаётся на теневом сайте до следующего запуска.
+     */
+    private void finishSite(SiteCrawler crawler) {
+        Site site = crawler.getSite();
+        dataSaver.flush(site);
+        searchIndex.flush(site.getId());
+        dataSaver.recountSite(site);
+        crawlCheckpoints.finish(site.getId(), crawler.isStopped() || crawler.isFailed());
+        Site replaced = replacedSites.remove(site.getId());
+        if (crawler.isStopped()) {
+            dataSaver.updateSite(site, Site.Status.FAILED, "Индексация остановлена пользователем");
+        } else if (crawler.isFailed()) {
+            dataSaver.updateSite(site, Site.Status.FAILED, crawler.getError());
+        } else {
+            dataSaver.updateSite(site, Site.Status.INDEXED, site.getLastError());
+        }
+        if (Objects.nonNull(replaced)) {
+            if (crawler.isStopped() || crawler.isFailed()) {
+                Site.Status status = replaced.getStatus() == Site.Status.INDEXING
+                        ? Site.Status.INDEXED : replaced.getStatus();
+                dataSaver.updateSite(replaced, status, replaced.getLastError());
+            } else {
+                dataSaver.swapSites(replaced, site);
+                dataSaver.removeAllBySite(replaced);
+            }
+        }
+        synchronized (crawlers) {
+            crawlers.remove(site.getId());
+            if (crawlers.isEmpty() && !launching) indexingStarted = false;
+        }
+        logger.info("Indexing of " + site.getUrl() + " finished, pages visited: " + crawler.getFrontier().visitedCount());
+    }
+
+    /**
+     * Обход сайта считается идущим, пока {@link #finishSite(SiteCrawler)} не сохранил его последние страницы.
+     */
+    @Override
+    public boolean isCrawling() {
+        synchronized (crawlers) {
+            return launching || !crawlers.isEmpty() || singlePages.get() > 0;
+        }
+    }
+
     @Override
     public IndexingResponse indexPage(String uri) {
+        singlePages.incrementAndGet();
+        try {
+            return indexSinglePage(uri);
+        } finally {
+            singlePages.decrementAndGet();
+        }
+    }
+
+    private IndexingResponse indexSinglePage(String uri) {
         IndexingResponse response = new IndexingResponse();
         uri = siteUrlToBaseForm(uri);
         searchengine.config.Site siteConf = configContainsUrl(uri);
@@ -99,10 +259,13 @@ public class IndexingServiceImpl implements IndexingService {
             String path = uri.substring(url.length());
             Optional<Site> siteOptional = dataSaver.findSiteByUrl(url);
             Site site = siteOptional.orElseGet(() -> saveSite(siteConf));
-            Optional<Page> pageOptional = dataSaver.findPageByPathAndSite(path, site);
-            pageOptional.ifPresent(dataSaver::removeAllByPage);
-            SiteParser parser = new SiteParser(path, site, siteParserData);
-            if (parser.indexPage()) {
+            dataSaver.flush(site);
+            dataSaver.removePageByPathAndSite(path, site);
+            SiteParser parser = new SiteParser(path, site, siteParserData, siteConf.getLanguages());
+            boolean indexed = parser.indexPage();
+            dataSaver.flush(site);
+            if (indexed) {
+                if (!indexingStarted) dataSaver.updateSite(site, Site.Status.INDEXED, site.getLastError());
                 response.setResult(true);
                 return response;
             }
@@ -115,113 +278,103 @@ public class IndexingServiceImpl implements IndexingService {
         return response;
     }
 
-    private List<Page> selectPageWithLemma(List<Lemma> lemmaList, List<Page> pageList) {
-        if (lemmaList.isEmpty()) return pageList;
-        List<Page> result = new ArrayList<>();
-        for (Page page : pageList) {
-            for (Index index : page.getIndexes())
-                if (index.getLemma().getLemma().equals(lemmaList.get(0).getLemma())) result.add(index.getPage());
-        }
-        lemmaList.remove(0);
-        return selectPageWithLemma(lemmaList, result);
-    }
-
     @Override
-    public SearchResponse search(String site, String query) {
+    public SearchResponse search(String site, String query, int offset, int limit) {
         SearchResponse response = new SearchResponse();
         if (query.isBlank()) {
             response.setResult(false);
             response.setError("Задан пустой поисковый запрос");
             return response;
         }
-        Set<String> queryLemmas = LemmaFinder.findLemma(query).keySet();
-        Site siteObj = dataSaver.findSiteByUrl(site).orElse(null);
-        List<Lemma> lemmaList = dataSaver.findLemmaByLemmaListAndSite(queryLemmas, siteObj);
-        if (lemmaList.isEmpty()) {
-            response.setResult(true);
+        if (offset < 0 || limit <= 0) {
+            response.setResult(false);
+            response.setError("Некорректные параметры offset или limit");
+            return response;
+        }
+        long start = System.nanoTime();
+        List<Language> languages = queryLanguages(site);
+        SearchQuery searchQuery = SearchQuery.parse(query, languages);
+        searchMetrics.recordLemmatize(start);
+        if (searchQuery.isExclusionOnly()) {
+            response.setResult(false);
+            response.setError("Запрос состоит только из исключений: укажите хотя бы одно слово, которое должно быть на странице");
             return response;
         }
-        String lemma = lemmaList.remove(0).getLemma();
-        Optional<List<Page>> pageList = dataSaver.findPagesByLemmaAndSite(lemma, siteObj);
-        List<Page> result = selectPageWithLemma(lemmaList, pageList.orElse(new ArrayList<>()));
+        Site siteObj = dataSaver.findSiteByUrl(site).orElse(null);
+        SearchResult result = searchCache.search(searchQuery, siteObj, offset, limit);
+        Set<String> queryLemmas = result.getLemmas();
+        List<SearchHit> hits = result.getHits();
         response.setResult(true);
-        response.setCount(result.size());
+        response.setCount(result.getTotal());
         response.setData(new ArrayList<>());
-        for (Page page : result) {
+        if (hits.isEmpty()) {
+            searchMetrics.recordLatency(start);
+            return response;
+        }
+        long snippetStart = System.nanoTime();
+        Map<Integer, PageSummary> pages = new HashMap<>();
+        List<Integer> idList = hits.stream().map(SearchHit::getPageId).collect(Collectors.toList());
+        dataSaver.findPageSummaries(idList).forEach(page -> pages.put(page.getId(), page));
+        Map<Integer, Map<String, int[]>> positions = searchIndex.findPositions(idList, queryLemmas);
+        for (SearchHit hit : hits) {
+            PageSummary page = pages.get(hit.getPageId());
+            if (Objects.isNull(page)) continue;
             SearchData data = new SearchData();
             data.setUri(page.getPath());
-            data.setSite(page.getSite().getUrl());
-            data.setSiteName(page.getSite().getName());
-            data.setTitle(selectTitle(page.getContent()));
-            data.setSnippet(selectSnippet(page.getContent(), query.split("\\s")));
-            data.setRelevance(calculateRelevance(page, lemmaList));
+            data.setSite(page.getSiteUrl());
+            data.setSiteName(page.getSiteName());
+            Document legacy = Objects.isNull(page.getContentPointer()) && Objects.isNull(page.getText())
+                    ? Jsoup.parse(dataSaver.findPageContent(page.getId())) : null;
+            data.setTitle(selectTitle(page, legacy));
+            data.setSnippet(selectSnippet(page, legacy, new ArrayList<>(queryLemmas), positions.get(page.getId()), languages));
+            data.setRelevance(hit.getRelevance());
             response.getData().add(data);
         }
-        response.getData().sort((d1, d2) -> (int) (d2.getRelevance() - d1.getRelevance()));
+        searchMetrics.recordSnippet(snippetStart);
+        searchMetrics.recordLatency(start);
         return response;
     }
 
-    private String selectTitle(String content) {
-        String regex = "<title>[\\s\\S]*</title>";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            int start = matcher.start() + 7;
-            int end = matcher.end() - 8;
-            return content.substring(start, end);
-        }
-        return "Default Title";
+    /**
+     * @param legacy разобранный HTML страницы, сохранённой до появления текста и хранилища содержимого, иначе {@code null}
+     */
+    private String selectTitle(PageSummary page, Document legacy) {
+        String title = Objects.nonNull(legacy) ? legacy.title() : page.getTitle();
+        return Objects.isNull(title) || title.isBlank() ? "Default Title" : title;
     }
 
-    private String selectSnippet(String content, String[] lemmaList) {
-        StringBuilder result = new StringBuilder();
-        content = Jsoup.parse(content).text();
-        String contentLowerCase = content.toLowerCase();
-        StringBuilder regex = new StringBuilder("\\S*\\s\\S*\\s");
-        for (String lemma : lemmaList) {
-            regex.append(lemma.length() > 4 ? lemma.substring(0, lemma.length() / 2 + 1).toLowerCase() : lemma.toLowerCase())
-                    .append("\\S*\\s");
+    private String selectSnippet(PageSummary page, Document legacy, List<String> queryLemmas,
+                                 Map<String, int[]> positions, List<Language> languages) {
+        String text;
+        int[] offsets;
+        if (Objects.nonNull(legacy)) {
+            text = legacy.text();
+            offsets = WordOffsets.find(text);
+            return SnippetBuilder.matchLemmas(text, offsets, queryLemmas, languages).build();
         }
-        regex.append("\\S*");
-        Pattern pattern = Pattern.compile(regex.toString());
-        Matcher matcher = pattern.matcher(contentLowerCase);
-        while (matcher.find()) {
-            if (result.length() > 200) break;
-            int start = matcher.start();
-            int end = matcher.end();
-            result.append("<b>")
-                    .append(content, start, end)
-                    .append("...</b> ");
+        if (Objects.nonNull(page.getContentPointer())) {
+            StoredText stored = contentStore.readText(page.getContentPointer());
+            text = Objects.isNull(stored) ? "" : stored.getText();
+            offsets = Objects.isNull(stored) ? new int[0] : WordOffsets.decode(stored.getWordOffsets());
+        } else {
+            text = page.getText();
+            offsets = WordOffsets.decode(page.getWordOffsets());
         }
-        if (result.length() == 0) {
-            for (String lemma : lemmaList) {
-                if (lemma.length() == 1) continue;
-                if (result.length() > 200) break;
-                regex.delete(0, regex.length());
-                regex.append("\\S*\\s\\S*")
-                        .append(lemma)
-                        .append("\\S*\\s\\S*");
-                pattern = Pattern.compile(regex.toString());
-                matcher = pattern.matcher(contentLowerCase);
-                if (matcher.find()) {
-                    int start = matcher.start();
-                    int end = matcher.end();
-                    result.append("<b>")
-                            .append(content, start, end)
-                            .append("...</b> ");
-                }
-            }
+        if (Objects.nonNull(positions)) {
+            return SnippetBuilder.fromPositions(text, offsets, positions, queryLemmas).build();
         }
-        return result.toString();
+        return SnippetBuilder.matchLemmas(text, offsets, queryLemmas, languages).build();
     }
 
-    private float calculateRelevance(Page page, List<Lemma> lemmaList) {
-        List<Index> indexList = dataSaver.findIndexByPageAndLemmaList(page, lemmaList);
-        float result = 0f;
-        for (Index index : indexList) {
-            result += index.getRank();
-        }
-        return result;
+    /**
+     * Языки разбора запроса: языки заданного сайта или всех сайтов, если сайт не указан.
+     */
+    private List<Language> queryLanguages(String site) {
+        searchengine.config.Site siteConf = Objects.isNull(site) ? null : configContainsUrl(siteUrlToBaseForm(site));
+        if (Objects.nonNull(siteConf)) return siteConf.getLanguages();
+        Set<Language> languages = new LinkedHashSet<>();
+        sites.getSites().forEach(conf -> languages.addAll(conf.getLanguages()));
+        return new ArrayList<>(languages);
     }
 
     private searchengine.config.Site configContainsUrl(String url) {
@@ -233,7 +386,12 @@ public class IndexingServiceImpl implements IndexingService {
     }
 
     private Site saveSite(searchengine.config.Site siteConf) {
+        return saveSite(siteConf, false);
+    }
+
+    private Site saveSite(searchengine.config.Site siteConf, boolean shadow) {
         Site site = new Site();
+        site.setShadow(shadow);
         site.setUrl(siteUrlToBaseForm(siteConf.getUrl()));
         site.setName(siteConf.getName());
         site.setStatus(indexingStarted ? Site.Status.INDEXING : Site.Status.INDEXED);
@@ -248,29 +406,6 @@ public class IndexingServiceImpl implements IndexingService {
     private void deleteAllSiteData(String url) {
         Optional<Site> siteOptional = dataSaver.findSiteByUrl(url);
         siteOptional.ifPresent(dataSaver::removeAllBySite);
+        dataSaver.findShadowSiteByUrl(url).ifPresent(dataSaver::removeAllBySite);
     }
-
-    private void startCheckForEndingIndexing() {
-        service = Executors.newScheduledThreadPool(1);
-        service.scheduleAtFixedRate(() -> {
-            for (ForkJoinPool pool : new HashSet<>(poolParserMap.keySet())) {
-                SiteParser parser = poolParserMap.get(pool);
-                if (parser.isCompletedNormally()) {
-                    Site site = parser.getSite();
-                    dataSaver.updateSite(site, Site.Status.INDEXED, site.getLastError());
-                    poolParserMap.remove(pool);
-                    continue;
-                }
-                if (parser.isCompletedAbnormally()) {
-                    Site site = parser.getSite();
-                    dataSaver.updateSite(site, Site.Status.FAILED, site.getLastError());
-                    poolParserMap.remove(pool);
-                }
-            }
-            if (poolParserMap.size() == 0) {
-                indexingStarted = false;
-                service.shutdown();
-            }
-        }, 10000, 10000, TimeUnit.MILLISECONDS);
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.config.StatisticsSettings;
+import searchengine.dto.statistics.StatisticsResponse;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рассылает статистику подписчикам потока событий вместо периодических запросов панели.
+ * Раз в {@code statistics.push-interval} статистика собирается заново, если сменилась её версия,
+ * и отправляется, если изменилась.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatisticsPublisher {
+
+    private static final String EVENT_NAME = "statistics";
+    private final StatisticsService statisticsService;
+    private final StatisticsSettings settings;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "statistics-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private StatisticsResponse last;
+    private long lastVersion;
+    private static final Logger logger = LogManager.getLogger(StatisticsPublisher.class);
+
+    @PostConstruct
+    public void start() {
+        long interval = settings.getPushInterval().toMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                publish();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to publish statistics - " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(settings.getStreamTimeout().toMillis());
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        if (send(emitter, statisticsService.getStatistics())) emitters.add(emitter);
+        return emitter;
+    }
+
+    private void publish() {
+        if (emitters.isEmpty()) {
+            last = null;
+            return;
+        }
+        long version = statisticsService.version();
+        if (Objects.nonNull(last) && version == lastVersion) return;
+        StatisticsResponse statistics = statisticsService.getStatistics();
+        lastVersion = version;
+        if (Objects.equals(statistics, last)) return;
+        last = statistics;
+        for (SseEmitter emitter : emitters) {
+            if (!send(emitter, statistics)) emitters.remove(emitter);
+        }
+    }
+
+    private static boolean send(SseEmitter emitter, StatisticsResponse statistics) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(statistics, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
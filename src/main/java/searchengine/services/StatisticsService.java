@@ -4,4 +4,9 @@ import searchengine.dto.statistics.StatisticsResponse;
 
 public interface StatisticsService {
     StatisticsResponse getStatistics();
+
+    /**
+     * Номер, который меняется при каждом изменении статистики: пока он прежний, собирать её заново незачем.
+     */
+    long version();
 }
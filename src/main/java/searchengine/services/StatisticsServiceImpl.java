@@ -2,15 +2,14 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import searchengine.config.SiteParserData;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.Site;
+import searchengine.utils.SiteCounters;
 
-import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -22,21 +21,26 @@ import java.util.Optional;
 public class StatisticsServiceImpl implements StatisticsService {
 
     private final SitesList sites;
-    private final SiteParserData siteParserData;
-
+    private final SiteCounters siteCounters;
+    /**
+     * Время статуса сайтов, которые ещё не индексировались: постоянное, чтобы статистика без изменений
+     * совпадала с предыдущей и не рассылалась повторно.
+     */
+    private final long startTime = System.currentTimeMillis();
 
     @Override
     public StatisticsResponse getStatistics() {
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
-        total.setIndexing(true);
+        total.setIndexing(IndexingServiceImpl.isIndexingStarted());
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
         for (searchengine.config.Site siteConf : sites.getSites()) {
             DetailedStatisticsItem item;
-            Optional<Site> siteOptional = siteParserData.getDataSaver()
-                    .findSiteByUrl(IndexingServiceImpl.siteUrlToBaseForm(siteConf.getUrl()));
+            String url = IndexingServiceImpl.siteUrlToBaseForm(siteConf.getUrl());
+            Optional<Site> siteOptional = siteCounters.findSite(url);
             item = siteOptional.map(this::createStatisticsItemFromDBSite).orElseGet(() -> createStatisticsItemFromSiteConf(siteConf));
+            if (siteOptional.isPresent()) reportShadowFailure(item, url);
             total.setPages(total.getPages() + item.getPages());
             total.setLemmas(total.getLemmas() + item.getLemmas());
             detailed.add(item);
@@ -54,14 +58,28 @@ public class StatisticsServiceImpl implements StatisticsService {
         DetailedStatisticsItem item = new DetailedStatisticsItem();
         item.setName(site.getName());
         item.setUrl(site.getUrl());
-        item.setPages(siteParserData.getDataSaver().countPageBySite(site));
-        item.setLemmas(siteParserData.getDataSaver().countLemmaBySite(site));
+        item.setPages(siteCounters.getPages(site.getId()));
+        item.setLemmas(siteCounters.getLemmas(site.getId()));
         item.setStatus(site.getStatus().toString());
         item.setError(site.getLastError());
         item.setStatusTime(ZonedDateTime.of(site.getStatusTime(), ZoneId.systemDefault()).toInstant().toEpochMilli());
         return item;
     }
 
+    /**
+     * Неудавшаяся переиндексация не меняет статус действующего сайта, но её ошибка показывается вместе с ним.
+     */
+    private void reportShadowFailure(DetailedStatisticsItem item, String url) {
+        siteCounters.findShadowSite(url)
+                .filter(shadow -> shadow.getStatus() == Site.Status.FAILED)
+                .ifPresent(shadow -> item.setError("Переиндексация не завершена: " + shadow.getLastError()));
+    }
+
+    @Override
+    public long version() {
+        return siteCounters.version() * 2 + (IndexingServiceImpl.isIndexingStarted() ? 1 : 0);
+    }
+
     private DetailedStatisticsItem createStatisticsItemFromSiteConf(searchengine.config.Site site) {
         DetailedStatisticsItem item = new DetailedStatisticsItem();
         item.setName(site.getName());
@@ -70,7 +88,7 @@ public class StatisticsServiceImpl implements StatisticsService {
         item.setLemmas(0);
         item.setStatus("DON'T INDEXING");
         item.setError("");
-        item.setStatusTime(ZonedDateTime.of(LocalDateTime.now(), ZoneId.systemDefault()).toInstant().toEpochMilli());
+        item.setStatusTime(startTime);
         return item;
     }
 }
@@ -0,0 +1,87 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SitesList;
+
+import java.util.*;
+
+/**
+ * Удаление данных сайтов и страниц. Сайт удаляется частями по {@code delete-batch-size}
+ * страниц в порядке идентификаторов, каждая часть - в своей короткой транзакции,
+ * чтобы не блокировать таблицы на всё время удаления.
+ */
+@Component
+@RequiredArgsConstructor
+public class BulkDeleter {
+
+    private static final int IN_CLAUSE_SIZE = 1000;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SitesList sitesList;
+    private final SiteCounters siteCounters;
+
+    public void deleteSite(int siteId) {
+        int batchSize = Math.max(1, sitesList.getDeleteBatchSize());
+        int lastId = 0;
+        List<Integer> ids;
+        do {
+            ids = jdbcTemplate.queryForList("select id from page where site_id = ? and id > ? order by id limit ?",
+                    Integer.class, siteId, lastId, batchSize);
+            if (ids.isEmpty()) break;
+            lastId = ids.get(ids.size() - 1);
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+            transactionTemplate.executeWithoutResult(status -> {
+                namedJdbcTemplate.update("delete from page_positions where page_id in (:ids)", params);
+                namedJdbcTemplate.update("delete from `index` where page_id in (:ids)", params);
+                namedJdbcTemplate.update("delete from page where id in (:ids)", params);
+            });
+        } while (ids.size() == batchSize);
+        lastId = 0;
+        do {
+            ids = jdbcTemplate.queryForList("select id from lemma where site_id = ? and id > ? order by id limit ?",
+                    Integer.class, siteId, lastId, batchSize);
+            if (ids.isEmpty()) break;
+            lastId = ids.get(ids.size() - 1);
+            namedJdbcTemplate.update("delete from lemma where id in (:ids)", new MapSqlParameterSource("ids", ids));
+        } while (ids.size() == batchSize);
+        jdbcTemplate.update("delete from site where id = ?", siteId);
+    }
+
+    /**
+     * Удаляет страницу с её индексами и позициями, уменьшает частоты её лемм
+     * и удаляет леммы, которые больше не встречаются на сайте.
+     * Возвращает леммы, которые были на странице.
+     */
+    @Transactional
+    public List<String> deletePage(int pageId, int siteId) {
+        Map<Integer, String> lemmas = new HashMap<>();
+        jdbcTemplate.query("select l.id, l.lemma from `index` i join lemma l on l.id = i.lemma_id where i.page_id = ?",
+                rs -> {
+                    lemmas.put(rs.getInt("id"), rs.getString("lemma"));
+                }, pageId);
+        int removedLemmas = 0;
+        if (!lemmas.isEmpty()) {
+            jdbcTemplate.update("update lemma l join `index` i on i.lemma_id = l.id set l.frequency = l.frequency - 1 " +
+                    "where i.page_id = ? and l.site_id = ?", pageId, siteId);
+            jdbcTemplate.update("delete from `index` where page_id = ?", pageId);
+            List<Integer> ids = new ArrayList<>(lemmas.keySet());
+            for (int i = 0; i < ids.size(); i += IN_CLAUSE_SIZE) {
+                MapSqlParameterSource params = new MapSqlParameterSource("site", siteId)
+                        .addValue("ids", ids.subList(i, Math.min(ids.size(), i + IN_CLAUSE_SIZE)));
+                removedLemmas += namedJdbcTemplate.update(
+                        "delete from lemma where site_id = :site and id in (:ids) and frequency <= 0", params);
+            }
+        }
+        jdbcTemplate.update("delete from page_positions where page_id = ?", pageId);
+        int removedPages = jdbcTemplate.update("delete from page where id = ?", pageId);
+        siteCounters.add(siteId, -removedPages, -removedLemmas);
+        return new ArrayList<>(lemmas.values());
+    }
+}
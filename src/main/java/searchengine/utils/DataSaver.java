@@ -1,20 +1,27 @@
 package searchengine.utils;
 
 import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
-import searchengine.model.Index;
-import searchengine.model.Lemma;
+import searchengine.config.SitesList;
+import searchengine.crawler.CrawlCheckpoints;
+import searchengine.crawler.CrawlMetrics;
+import searchengine.dto.indexing.PageState;
+import searchengine.dto.search.PageSummary;
 import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.search.SearchIndex;
+import searchengine.services.IndexingServiceImpl;
+
+import javax.annotation.PreDestroy;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @RequiredArgsConstructor
@@ -22,97 +29,166 @@ public class DataSaver {
 
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final IndexRepository indexRepository;
-    private final LemmaRepository lemmaRepository;
-    private final Object o = new Object();
+    private final BulkDeleter bulkDeleter;
+    private final SearchIndex searchIndex;
+    private final SitesList sitesList;
+    private final IndexingBatchWriter batchWriter;
+    private final CrawlMetrics crawlMetrics;
+    private final SiteCounters siteCounters;
+    private final CrawlCheckpoints crawlCheckpoints;
+    private final Map<Integer, SiteWritePipeline> pipelines = new ConcurrentHashMap<>();
+    private static final Logger logger = LogManager.getLogger(DataSaver.class);
 
 
     public Optional<Site> findSiteByUrl(String url) {
         return siteRepository.findByUrl(url);
     }
 
-    public Optional<Page> findPageByPathAndSite(String path, Site site) {
-        return pageRepository.findByPathAndSite(path, site);
+    public Optional<Integer> findPageIdByPathAndSite(String path, Site site) {
+        return pageRepository.findIdByPathAndSite(path, site);
     }
 
     public Site saveSite(Site site) {
-        return siteRepository.save(site);
+        Site saved = siteRepository.save(site);
+        siteCounters.track(saved);
+        if (saved.isShadow()) searchIndex.hide(saved.getId());
+        return saved;
+    }
+
+    public Optional<Site> findShadowSiteByUrl(String url) {
+        return siteRepository.findShadowByUrl(url);
     }
 
     public void updateSite(Site site) {
         siteRepository.update(site.getStatus(), site.getStatusTime(), site.getLastError(), site.getId());
+        siteCounters.updateStatus(site.getId(), site.getStatus(), site.getStatusTime(), site.getLastError());
     }
 
     public void updateSite(Site site, Site.Status status, String lastError) {
-        siteRepository.update(status, LocalDateTime.now(), lastError, site.getId());
+        LocalDateTime statusTime = LocalDateTime.now();
+        siteRepository.update(status, statusTime, lastError, site.getId());
+        siteCounters.updateStatus(site.getId(), status, statusTime, lastError);
+    }
+
+    /**
+     * Обновляет время статуса индексируемого сайта; сайт с другим статусом не меняется.
+     */
+    public void touchSite(Site site) {
+        LocalDateTime statusTime = LocalDateTime.now();
+        siteRepository.updateStatusTime(Site.Status.INDEXING, statusTime, site.getId());
+        siteCounters.touch(site.getId(), statusTime);
     }
 
-    public List<Lemma> findLemmaByLemmaListAndSite(Set<String> lemmaString, Site site) {
-        return Objects.isNull(site) ?
-                lemmaRepository.findByLemmaList(lemmaString) :
-                lemmaRepository.findByLemmaListAndSite(lemmaString, site);
+    public List<PageSummary> findPageSummaries(List<Integer> idList) {
+        return pageRepository.findSummariesByIdIn(idList);
     }
 
-    public Optional<List<Page>> findPagesByLemmaAndSite(String lemma, Site site) {
-        return Objects.isNull(site) ? pageRepository.findByLemma(lemma)
-                : pageRepository.findByLemmaAndSite(lemma, site);
+    public String findPageContent(int pageId) {
+        return pageRepository.findContentById(pageId);
     }
 
-    public List<Index> findIndexByPageAndLemmaList(Page page, List<Lemma> lemmaList) {
-        return indexRepository.findByPageAndLemmaList(page, lemmaList);
+    public List<PageState> findPageStatesBySite(Site site) {
+        return pageRepository.findStatesBySite(site);
     }
 
-    @Transactional(isolation = Isolation.READ_UNCOMMITTED)
-    public boolean isPageSaved(String path, Site site) {
-        return pageRepository.existsByPathAndSite(path, site);
+    public void saveIndexingData(Page page, Map<String, Float> ranks) {
+        saveIndexingData(page, ranks, null);
     }
 
-    public void saveIndexingData(List<Lemma> lemmaList, Page page) {
-        synchronized (o) {
-            if (pageRepository.existsByPathAndSite(page.getPath(), page.getSite())) return;
-            pageRepository.save(page);
-            lemmaRepository.saveAll(lemmaList);
+    public void saveIndexingData(Page page, Map<String, Float> ranks, byte[] positions) {
+        try {
+            getPipeline(page.getSite()).submit(new IndexingData(page, ranks, positions));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while saving page: " + page.getPath());
         }
     }
 
-    public void removeAllBySite(Site site) {
-        indexRepository.removeAllBySite(site);
-        lemmaRepository.removeAllBySite(site);
-        pageRepository.removeAllBySite(site);
-        siteRepository.remove(site.getId());
+    public void flush(Site site) {
+        SiteWritePipeline pipeline = pipelines.get(site.getId());
+        if (Objects.nonNull(pipeline)) pipeline.flush();
     }
 
-    public List<Lemma> removeIndexByPage(Page page) {
-        List<Lemma> result = indexRepository.findLemmaByPage(page);
-        indexRepository.removeByPage(page);
-        return result;
+    private SiteWritePipeline getPipeline(Site site) {
+        return pipelines.computeIfAbsent(site.getId(), id -> {
+            Counter pages = crawlMetrics.pages(site);
+            Counter lemmas = crawlMetrics.lemmas(site);
+            crawlMetrics.queueGauge(site, () -> queueDepth(site.getUrl()));
+            return new SiteWritePipeline(site, findSiteConf(site), batchWriter, data -> {
+                searchIndex.updatePage(site.getId(), data.getPage().getId(), data.getRemovedLemmas(), data.getRanks());
+                pages.increment();
+                lemmas.increment(data.getRanks().size());
+            }, crawlMetrics.batchTimer(site));
+        });
     }
 
-    public void removeAllByPage(Page page) {
-        List<Lemma> lemmaList = removeIndexByPage(page);
-        decrementLemmaFrequencyByLemmaId(lemmaList);
-        removeLemmaIfFrequencyIsZero();
-        removePageByPathAndSite(page.getPath(), page.getSite());
+    /**
+     * Глубина очередей записи всех копий сайта, включая теневую.
+     */
+    private int queueDepth(String url) {
+        int depth = 0;
+        for (SiteWritePipeline pipeline : pipelines.values()) {
+            if (pipeline.getSite().getUrl().equals(url)) depth += pipeline.queueDepth();
+        }
+        return depth;
     }
 
-    public void removePageByPathAndSite(String path, Site site) {
-        pageRepository.removeByPathAndSite(path, site);
+    private searchengine.config.Site findSiteConf(Site site) {
+        return sitesList.getSites().stream()
+                .filter(siteConf -> IndexingServiceImpl.siteUrlToBaseForm(siteConf.getUrl()).equals(site.getUrl()))
+                .findFirst()
+                .orElseGet(searchengine.config.Site::new);
+    }
+
+    @PreDestroy
+    public void closePipelines() {
+        pipelines.values().forEach(SiteWritePipeline::close);
+        pipelines.clear();
     }
 
-    public void removeLemmaIfFrequencyIsZero() {
-        lemmaRepository.removeIfFrequencyIsZero();
+    public void removeAllBySite(Site site) {
+        SiteWritePipeline pipeline = pipelines.remove(site.getId());
+        if (Objects.nonNull(pipeline)) pipeline.close();
+        searchIndex.removeSite(site.getId());
+        bulkDeleter.deleteSite(site.getId());
+        siteCounters.remove(site.getId());
+        crawlCheckpoints.delete(site.getId());
     }
 
-    public void decrementLemmaFrequencyByLemmaId(List<Lemma> lemmaList) {
-        lemmaRepository.decrementFrequencyById(lemmaList);
+    public void removeAllByPage(int pageId, Site site) {
+        List<String> lemmas = bulkDeleter.deletePage(pageId, site.getId());
+        searchIndex.removePage(site.getId(), pageId, lemmas);
+    }
+
+    public void removePageByPathAndSite(String path, Site site) {
+        findPageIdByPathAndSite(path, site).ifPresent(pageId -> removeAllByPage(pageId, site));
+    }
+
+    /**
+     * Делает теневой сайт {@code shadow} основным вместо {@code replaced} одним обновлением
+     * в базе и в индексе поиска; данные заменённого сайта после этого можно удалять.
+     */
+    public void swapSites(Site replaced, Site shadow) {
+        siteRepository.swap(replaced.getId(), shadow.getId());
+        siteCounters.swap(replaced.getId(), shadow.getId());
+        replaced.setShadow(true);
+        shadow.setShadow(false);
+        searchIndex.swap(replaced.getId(), shadow.getId());
     }
 
     public int countLemmaBySite(Site site) {
-        return lemmaRepository.countBySite(site);
+        return siteCounters.getLemmas(site.getId());
     }
 
     public int countPageBySite(Site site) {
-        return pageRepository.countBySite(site);
+        return siteCounters.getPages(site.getId());
+    }
+
+    /**
+     * Сверяет счётчики страниц и лемм сайта с базой.
+     */
+    public void recountSite(Site site) {
+        siteCounters.recount(site);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат разбора страницы {@link HtmlExtractor}: заголовок, видимый текст, значения href ссылок
+ * и прочитанная разметка.
+ */
+@Getter
+@RequiredArgsConstructor
+public class HtmlContent {
+
+    private final String title;
+    private final String text;
+    private final List<String> links;
+    private final String html;
+}
@@ -0,0 +1,310 @@
+package searchengine.utils;
+
+import org.jsoup.nodes.Entities;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.*;
+
+/**
+ * Разбор HTML за один проход без построения дерева документа. Документ читается из потока
+ * порциями, заголовок, видимый текст и ссылки собираются по мере чтения тегов. Содержимое head (кроме title), script, style
+ * и template в текст не попадает; head заканчивается на первом тексте или элементе, которых
+ * не бывает в head. Блочные элементы отделяют текст пробелом, как в {@code Element.text()},
+ * а пробельные символы схлопываются в один пробел.
+ */
+public class HtmlExtractor {
+
+    private static final int CHARSET_SNIFF_LENGTH = 1024;
+    private static final Set<String> SKIPPED = Set.of("script", "style", "template");
+    private static final Set<String> HEAD_ELEMENTS = Set.of("base", "basefont", "bgsound", "link", "meta", "noscript",
+            "script", "style", "template", "title");
+    private static final Set<String> BLOCKS = Set.of("address", "article", "aside", "blockquote", "br", "caption",
+            "dd", "details", "dialog", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form",
+            "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "img", "li", "main", "nav", "ol", "option", "p",
+            "pre", "section", "summary", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+
+    private static final int CHUNK_LENGTH = 8192;
+    private final Reader reader;
+    private final char[] chunk = new char[CHUNK_LENGTH];
+    private final StringBuilder html = new StringBuilder(CHUNK_LENGTH);
+    private final StringBuilder text = new StringBuilder(CHUNK_LENGTH / 4);
+    private final List<String> links = new ArrayList<>();
+    private boolean finished;
+    private String title;
+    private int position;
+    private boolean head;
+    private boolean space;
+
+    private HtmlExtractor(Reader reader) {
+        this.reader = reader;
+    }
+
+    public static HtmlContent extract(String html) {
+        try {
+            return extract(new StringReader(html));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Разбирает документ по мере чтения. Прочитанная разметка сохраняется в {@link HtmlContent#getHtml()},
+     * поэтому отдельно декодировать тело ответа в строку не нужно.
+     */
+    public static HtmlContent extract(Reader reader) throws IOException {
+        HtmlExtractor extractor = new HtmlExtractor(reader);
+        extractor.run();
+        return new HtmlContent(Objects.isNull(extractor.title) ? "" : extractor.title, extractor.text.toString(),
+                extractor.links, extractor.html.toString());
+    }
+
+    /**
+     * Кодировка тела ответа: указанная в заголовке Content-Type, иначе объявленная в meta
+     * в начале документа, иначе UTF-8. Начало документа читается с возвратом, поэтому поток
+     * должен поддерживать {@link InputStream#mark(int)}.
+     */
+    public static Charset charset(InputStream body, String declared) throws IOException {
+        Charset charset = forName(declared);
+        if (Objects.nonNull(charset)) return charset;
+        body.mark(CHARSET_SNIFF_LENGTH);
+        byte[] start = body.readNBytes(CHARSET_SNIFF_LENGTH);
+        body.reset();
+        String head = new String(start, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+        int index = head.indexOf("charset=");
+        if (index >= 0) {
+            int from = index + "charset=".length();
+            while (from < head.length() && (head.charAt(from) == '"' || head.charAt(from) == '\'')) from++;
+            int to = from;
+            while (to < head.length() && (Character.isLetterOrDigit(head.charAt(to))
+                    || head.charAt(to) == '-' || head.charAt(to) == '_')) to++;
+            charset = forName(head.substring(from, to));
+        }
+        return Objects.isNull(charset) ? StandardCharsets.UTF_8 : charset;
+    }
+
+    private static Charset forName(String name) {
+        if (Objects.isNull(name) || name.isBlank()) return null;
+        try {
+            return Charset.forName(name.trim());
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+
+    private void run() throws IOException {
+        while (has(position)) {
+            int tag = indexOf("<", position);
+            if (tag < 0) tag = html.length();
+            if (head && !isBlank(position, tag)) head = false;
+            if (!head) appendText(position, tag);
+            if (tag == html.length()) break;
+            position = tag;
+            if (matches(position, "<!--")) {
+                skipPast("-->", position + 4);
+            } else if (has(position + 1) && (html.charAt(position + 1) == '!' || html.charAt(position + 1) == '?')) {
+                skipPast(">", position + 2);
+            } else if (!readTag()) {
+                if (!head) appendText(position, position + 1);
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Читает открывающий или закрывающий тег в текущей позиции.
+     * Возвращает {@code false}, если символ '<' не начинает тег.
+     */
+    private boolean readTag() throws IOException {
+        boolean closing = has(position + 1) && html.charAt(position + 1) == '/';
+        int nameStart = position + (closing ? 2 : 1);
+        if (!has(nameStart) || !isAsciiLetter(html.charAt(nameStart))) return false;
+        int nameEnd = nameStart;
+        while (has(nameEnd) && isNameChar(html.charAt(nameEnd))) nameEnd++;
+        String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+        String href = readAttributes(nameEnd, !closing && name.equals("a"));
+        if (BLOCKS.contains(name)) space = true;
+        if (closing) {
+            if (name.equals("head")) head = false;
+            return true;
+        }
+        if (Objects.nonNull(href)) links.add(href);
+        if (name.equals("head")) {
+            head = true;
+        } else if (head && !HEAD_ELEMENTS.contains(name)) {
+            head = false;
+        }
+        if (name.equals("title") || SKIPPED.contains(name)) {
+            int end = findClosingTag(name);
+            if (name.equals("title") && Objects.isNull(title)) title = normalize(unescape(html.substring(position, end)));
+            position = end;
+        }
+        return true;
+    }
+
+    /**
+     * Пропускает атрибуты до конца тега с учётом кавычек и возвращает значение href, если оно нужно.
+     */
+    private String readAttributes(int from, boolean wantHref) throws IOException {
+        String href = null;
+        int i = from;
+        while (has(i)) {
+            char c = html.charAt(i);
+            if (c == '>') {
+                position = i + 1;
+                return href;
+            }
+            if (Character.isWhitespace(c) || c == '/') {
+                i++;
+                continue;
+            }
+            int nameStart = i;
+            while (has(i) && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '='
+                    && html.charAt(i) != '>' && html.charAt(i) != '/') i++;
+            int nameEnd = i;
+            while (has(i) && Character.isWhitespace(html.charAt(i))) i++;
+            if (!has(i) || html.charAt(i) != '=') continue;
+            i++;
+            while (has(i) && Character.isWhitespace(html.charAt(i))) i++;
+            int valueStart;
+            int valueEnd;
+            if (has(i) && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                valueStart = i + 1;
+                valueEnd = indexOf(String.valueOf(html.charAt(i)), valueStart);
+                if (valueEnd < 0) valueEnd = html.length();
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while (has(i) && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '>') i++;
+                valueEnd = i;
+            }
+            if (wantHref && Objects.isNull(href) && nameEnd - nameStart == 4 && matches(nameStart, "href")) {
+                href = unescape(html.substring(valueStart, valueEnd));
+            }
+        }
+        position = html.length();
+        return href;
+    }
+
+    /**
+     * Ищет закрывающий тег элемента с текстовым содержимым, начиная с текущей позиции.
+     */
+    private int findClosingTag(String name) throws IOException {
+        int i = position;
+        while ((i = indexOf("</", i)) >= 0) {
+            int end = i + 2 + name.length();
+            if (matches(i + 2, name) && (!has(end) || !isNameChar(html.charAt(end)))) return i;
+            i += 2;
+        }
+        return html.length();
+    }
+
+    private void skipPast(String terminator, int from) throws IOException {
+        int end = indexOf(terminator, from);
+        position = end < 0 ? html.length() : end + terminator.length();
+    }
+
+    /**
+     * Дочитывает вход, пока символ с номером {@code index} не окажется в буфере.
+     * Возвращает {@code false}, если вход кончился раньше.
+     */
+    private boolean has(int index) throws IOException {
+        while (index >= html.length()) {
+            if (finished) return false;
+            int read = reader.read(chunk);
+            if (read < 0) {
+                finished = true;
+            } else {
+                html.append(chunk, 0, read);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ищет строку, начиная с позиции {@code from}, дочитывая вход, пока она не найдётся.
+     */
+    private int indexOf(String target, int from) throws IOException {
+        int searchFrom = from;
+        while (true) {
+            int index = html.indexOf(target, searchFrom);
+            if (index >= 0) return index;
+            int loaded = html.length();
+            searchFrom = Math.max(from, loaded - target.length() + 1);
+            if (!has(loaded)) return -1;
+        }
+    }
+
+    /**
+     * Проверяет без учёта регистра, что с позиции {@code at} идёт строка {@code target} в нижнем регистре.
+     */
+    private boolean matches(int at, String target) throws IOException {
+        if (!has(at + target.length() - 1)) return false;
+        for (int k = 0; k < target.length(); k++) {
+            if (Character.toLowerCase(html.charAt(at + k)) != target.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private void appendText(int start, int end) {
+        if (start >= end) return;
+        int entity = html.indexOf("&", start);
+        if (entity >= 0 && entity < end) {
+            String run = Entities.unescape(html.substring(start, end));
+            appendText(run, 0, run.length());
+        } else {
+            appendText(html, start, end);
+        }
+    }
+
+    private void appendText(CharSequence chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00a0') {
+                space = true;
+                continue;
+            }
+            if (space && !text.isEmpty()) text.append(' ');
+            space = false;
+            text.append(c);
+        }
+    }
+
+    private static String unescape(String value) {
+        return value.indexOf('&') < 0 ? value : Entities.unescape(value);
+    }
+
+    private static String normalize(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        boolean pending = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00a0') {
+                pending = true;
+                continue;
+            }
+            if (pending && !result.isEmpty()) result.append(' ');
+            pending = false;
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(html.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNameChar(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':';
+    }
+}
@@ -0,0 +1,232 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.*;
+
+@Component
+@RequiredArgsConstructor
+public class IndexingBatchWriter {
+
+    private static final int IN_CLAUSE_SIZE = 1000;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SiteCounters siteCounters;
+
+    /**
+     * Сохраняет пачку страниц сайта вместе с леммами, индексами и позициями лемм.
+     * Новые страницы, уже сохранённые ранее, пропускаются. Страница, которую успели сохранить
+     * между проверкой и вставкой, не пропускается молча, а откатывает всю пачку
+     * с {@link org.springframework.dao.DuplicateKeyException}: иначе её леммы и индексы
+     * записались бы второй раз для чужой строки. {@link SiteWritePipeline} повторит такую пачку
+     * по одной странице, и повтор уже найдёт страницу при проверке. Для изменившихся страниц
+     * (с заданным идентификатором) обновляется строка страницы и применяется только
+     * разница в леммах и индексах.
+     * Возвращает сохранённые данные с проставленными идентификаторами страниц.
+     * Число новых страниц и лемм сайта прибавляется к {@link SiteCounters} после фиксации транзакции.
+     */
+    @Transactional
+    public List<IndexingData> write(Site site, List<IndexingData> batch) {
+        Map<String, IndexingData> byPath = new LinkedHashMap<>();
+        Map<Integer, IndexingData> changed = new LinkedHashMap<>();
+        for (IndexingData data : batch) {
+            if (data.getPage().getId() != 0) {
+                changed.put(data.getPage().getId(), data);
+            } else {
+                byPath.putIfAbsent(data.getPage().getPath(), data);
+            }
+        }
+        byPath.keySet().removeAll(findPageIds(site, byPath.keySet()).keySet());
+        if (byPath.isEmpty() && changed.isEmpty()) return new ArrayList<>();
+
+        if (!byPath.isEmpty()) {
+            List<Object[]> pageRows = new ArrayList<>();
+            for (IndexingData data : byPath.values()) {
+                Page page = data.getPage();
+                pageRows.add(new Object[]{page.getCode(), page.getContent(), page.getContentHash(), page.getContentPointer(),
+                        page.getEtag(), page.getLastModified(), page.getPath(), site.getId(), page.getText(),
+                        page.getTitle(), page.getWordOffsets()});
+            }
+            jdbcTemplate.batchUpdate("insert into page (code, content, content_hash, content_pointer, etag, " +
+                    "last_modified, path, site_id, text, title, word_offsets) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    pageRows);
+            Map<String, Integer> pageIds = findPageIds(site, byPath.keySet());
+            byPath.forEach((path, data) -> data.getPage().setId(pageIds.getOrDefault(path, 0)));
+        }
+        int[] removedLemmas = new int[1];
+        Map<Integer, Map<String, Integer>> previous = updateChangedPages(changed.values(), removedLemmas);
+
+        SortedMap<String, Integer> frequencies = new TreeMap<>();
+        for (IndexingData data : byPath.values()) {
+            data.getRanks().keySet().forEach(lemma -> frequencies.merge(lemma, 1, Integer::sum));
+        }
+        for (IndexingData data : changed.values()) {
+            Map<String, Integer> old = previous.get(data.getPage().getId());
+            data.getRanks().keySet().forEach(lemma -> {
+                if (!old.containsKey(lemma)) frequencies.merge(lemma, 1, Integer::sum);
+            });
+        }
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        int addedLemmas = 0;
+        if (!frequencies.isEmpty()) {
+            lemmaIds = findLemmaIds(site, frequencies.keySet());
+            List<Object[]> lemmaRows = new ArrayList<>();
+            frequencies.forEach((lemma, frequency) -> lemmaRows.add(new Object[]{frequency, lemma, site.getId()}));
+            jdbcTemplate.batchUpdate("insert into lemma (frequency, lemma, site_id) values (?, ?, ?) " +
+                    "on duplicate key update frequency = lemma.frequency + values(frequency)", lemmaRows);
+            List<String> added = new ArrayList<>();
+            for (String lemma : frequencies.keySet()) {
+                if (!lemmaIds.containsKey(lemma)) added.add(lemma);
+            }
+            addedLemmas = added.size();
+            lemmaIds.putAll(findLemmaIds(site, added));
+        }
+        List<Object[]> indexRows = new ArrayList<>();
+        List<Object[]> rankRows = new ArrayList<>();
+        for (IndexingData data : byPath.values()) {
+            int pageId = data.getPage().getId();
+            Map<String, Integer> ids = lemmaIds;
+            data.getRanks().forEach((lemma, rank) -> {
+                Integer lemmaId = ids.get(lemma);
+                if (Objects.nonNull(lemmaId)) indexRows.add(new Object[]{pageId, lemmaId, rank});
+            });
+        }
+        for (IndexingData data : changed.values()) {
+            int pageId = data.getPage().getId();
+            Map<String, Integer> old = previous.get(pageId);
+            Map<String, Integer> ids = lemmaIds;
+            data.getRanks().forEach((lemma, rank) -> {
+                Integer lemmaId = old.get(lemma);
+                if (Objects.nonNull(lemmaId)) {
+                    rankRows.add(new Object[]{rank, pageId, lemmaId});
+                } else if (Objects.nonNull(lemmaId = ids.get(lemma))) {
+                    indexRows.add(new Object[]{pageId, lemmaId, rank});
+                }
+            });
+        }
+        jdbcTemplate.batchUpdate("insert into `index` (page_id, lemma_id, `rank`) values (?, ?, ?)", indexRows);
+        jdbcTemplate.batchUpdate("update `index` set `rank` = ? where page_id = ? and lemma_id = ?", rankRows);
+
+        List<Object[]> positionRows = new ArrayList<>();
+        for (IndexingData data : byPath.values()) {
+            if (Objects.nonNull(data.getPositions()) && data.getPage().getId() != 0) {
+                positionRows.add(new Object[]{data.getPage().getId(), data.getPositions()});
+            }
+        }
+        if (!positionRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert ignore into page_positions (page_id, positions) values (?, ?)", positionRows);
+        }
+        List<Object[]> changedPositionRows = new ArrayList<>();
+        List<Object[]> removedPositionRows = new ArrayList<>();
+        for (IndexingData data : changed.values()) {
+            if (Objects.nonNull(data.getPositions())) {
+                changedPositionRows.add(new Object[]{data.getPage().getId(), data.getPositions()});
+            } else {
+                removedPositionRows.add(new Object[]{data.getPage().getId()});
+            }
+        }
+        jdbcTemplate.batchUpdate("replace into page_positions (page_id, positions) values (?, ?)", changedPositionRows);
+        jdbcTemplate.batchUpdate("delete from page_positions where page_id = ?", removedPositionRows);
+
+        int addedPages = 0;
+        for (IndexingData data : byPath.values()) {
+            if (data.getPage().getId() != 0) addedPages++;
+        }
+        siteCounters.add(site.getId(), addedPages, addedLemmas - removedLemmas[0]);
+
+        List<IndexingData> result = new ArrayList<>(byPath.values());
+        result.addAll(changed.values());
+        return result;
+    }
+
+    /**
+     * Обновляет строки изменившихся страниц и удаляет индексы лемм, которых на них больше нет.
+     * Возвращает для каждой страницы оставшиеся леммы с их идентификаторами,
+     * а в {@code removedLemmas[0]} - число лемм, удалённых с сайта.
+     */
+    private Map<Integer, Map<String, Integer>> updateChangedPages(Collection<IndexingData> changed, int[] removedLemmas) {
+        Map<Integer, Map<String, Integer>> result = new HashMap<>();
+        if (changed.isEmpty()) return result;
+        List<Object[]> pageRows = new ArrayList<>();
+        for (IndexingData data : changed) {
+            Page page = data.getPage();
+            result.put(page.getId(), new HashMap<>());
+            pageRows.add(new Object[]{page.getCode(), page.getContent(), page.getContentHash(), page.getContentPointer(),
+                    page.getEtag(), page.getLastModified(), page.getText(), page.getTitle(), page.getWordOffsets(),
+                    page.getId()});
+        }
+        jdbcTemplate.batchUpdate("update page set code = ?, content = ?, content_hash = ?, content_pointer = ?, " +
+                "etag = ?, last_modified = ?, text = ?, title = ?, word_offsets = ? where id = ?", pageRows);
+        for (List<Integer> chunk : chunks(result.keySet())) {
+            namedJdbcTemplate.query("select i.page_id, i.lemma_id, l.lemma from `index` i join lemma l on l.id = i.lemma_id " +
+                    "where i.page_id in (:pages)", new MapSqlParameterSource("pages", chunk), rs -> {
+                result.get(rs.getInt("page_id")).put(rs.getString("lemma"), rs.getInt("lemma_id"));
+            });
+        }
+        List<Object[]> removedRows = new ArrayList<>();
+        Map<Integer, Integer> decrements = new TreeMap<>();
+        for (IndexingData data : changed) {
+            int pageId = data.getPage().getId();
+            List<String> removed = new ArrayList<>();
+            result.get(pageId).entrySet().removeIf(entry -> {
+                if (data.getRanks().containsKey(entry.getKey())) return false;
+                removed.add(entry.getKey());
+                removedRows.add(new Object[]{pageId, entry.getValue()});
+                decrements.merge(entry.getValue(), 1, Integer::sum);
+                return true;
+            });
+            data.setRemovedLemmas(removed);
+        }
+        if (!removedRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from `index` where page_id = ? and lemma_id = ?", removedRows);
+            List<Object[]> decrementRows = new ArrayList<>();
+            decrements.forEach((lemmaId, count) -> decrementRows.add(new Object[]{count, lemmaId}));
+            jdbcTemplate.batchUpdate("update lemma set frequency = frequency - ? where id = ?", decrementRows);
+            for (List<Integer> chunk : chunks(decrements.keySet())) {
+                removedLemmas[0] += namedJdbcTemplate.update("delete from lemma where id in (:ids) and frequency <= 0",
+                        new MapSqlParameterSource("ids", chunk));
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Integer> findPageIds(Site site, Collection<String> paths) {
+        Map<String, Integer> result = new HashMap<>();
+        for (List<String> chunk : chunks(paths)) {
+            MapSqlParameterSource params = new MapSqlParameterSource("site", site.getId()).addValue("paths", chunk);
+            namedJdbcTemplate.query("select id, path from page where site_id = :site and path in (:paths)", params,
+                    rs -> {
+                        result.put(rs.getString("path"), rs.getInt("id"));
+                    });
+        }
+        return result;
+    }
+
+    private Map<String, Integer> findLemmaIds(Site site, Collection<String> lemmas) {
+        Map<String, Integer> result = new HashMap<>();
+        for (List<String> chunk : chunks(lemmas)) {
+            MapSqlParameterSource params = new MapSqlParameterSource("site", site.getId()).addValue("lemmas", chunk);
+            namedJdbcTemplate.query("select id, lemma from lemma where site_id = :site and lemma in (:lemmas)", params,
+                    rs -> {
+                        result.put(rs.getString("lemma"), rs.getInt("id"));
+                    });
+        }
+        return result;
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> values) {
+        List<List<T>> result = new ArrayList<>();
+        List<T> list = new ArrayList<>(values);
+        for (int i = 0; i < list.size(); i += IN_CLAUSE_SIZE) {
+            result.add(list.subList(i, Math.min(list.size(), i + IN_CLAUSE_SIZE)));
+        }
+        return result;
+    }
+}
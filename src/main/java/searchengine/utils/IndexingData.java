@@ -0,0 +1,28 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import searchengine.model.Page;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@RequiredArgsConstructor
+public class IndexingData {
+
+    private final Page page;
+    private final Map<String, Float> ranks;
+    private final byte[] positions;
+    /**
+     * Леммы, которых больше нет на ранее сохранённой странице.
+     */
+    @Setter
+    private Collection<String> removedLemmas = List.of();
+
+    public IndexingData(Page page, Map<String, Float> ranks) {
+        this(page, ranks, null);
+    }
+}
@@ -0,0 +1,134 @@
+package searchengine.utils;
+
+import java.util.Arrays;
+
+/**
+ * Словарь int -> int на открытой адресации без упаковки значений в объекты.
+ * Ключ 0 зарезервирован как признак пустой ячейки.
+ */
+public class IntIntHashMap {
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int key, int defaultValue) {
+        int slot = find(key);
+        return keys[slot] == 0 ? defaultValue : values[slot];
+    }
+
+    /**
+     * Возвращает прежнее значение или {@code 0}, если ключа не было.
+     */
+    public int put(int key, int value) {
+        int slot = find(key);
+        if (keys[slot] != 0) {
+            int previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) resize();
+        return 0;
+    }
+
+    /**
+     * Прибавляет {@code delta} к значению ключа и возвращает новое значение.
+     */
+    public int add(int key, int delta) {
+        int slot = find(key);
+        if (keys[slot] != 0) return values[slot] += delta;
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) resize();
+        return delta;
+    }
+
+    /**
+     * Возвращает удалённое значение или {@code 0}, если ключа не было.
+     */
+    public int remove(int key) {
+        int slot = find(key);
+        if (keys[slot] == 0) return 0;
+        int previous = values[slot];
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+        return previous;
+    }
+
+    public boolean containsKey(int key) {
+        return keys[find(key)] != 0;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) consumer.accept(keys[i], values[i]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    private int find(int key) {
+        if (key == 0) throw new IllegalArgumentException("Key 0 is reserved");
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = mix(oldKeys[i]) & mask;
+            while (keys[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+}
@@ -1,52 +1,144 @@
 package searchengine.utils;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.nodes.Document;
+import searchengine.morphology.Analyzer;
+import searchengine.morphology.Language;
 
-import java.io.IOException;
 import java.util.*;
 
 public class LemmaFinder {
 
-    private static final LuceneMorphology morphology;
-    private static final String[] PARTS_OF_SPEECH = {"СОЮЗ", "ПРЕДЛ", "МС", "КР_ПРИЛ", "МЕЖД", "ДЕЕПРИЧАСТИЕ", "L С"};
+    private static final WordLemmaCache CACHE = new WordLemmaCache(200_000);
 
     private LemmaFinder() {}
 
-    static {
-        try {
-            morphology = new RussianLuceneMorphology();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    public static long cacheHits() {
+        return CACHE.hits();
+    }
+
+    public static long cacheMisses() {
+        return CACHE.misses();
+    }
+
+    public static int cacheSize() {
+        return CACHE.size();
     }
 
-    public static Map<String, Integer> findLemma(String text) {
-        Map<String, Integer> result = new HashMap<>();
-        String[] words = text.replaceAll("[^А-Яа-я\\s]", "").toLowerCase(Locale.ROOT).trim().split("\\s+");
-        for (String word : words) {
-            List<String> morphInfo = morphology.getMorphInfo(word);
-            for (String morph : morphInfo) {
-                if (morphFilter(morph)) {
-                    String lemma = morph.substring(0, morph.indexOf("|"));
-                    result.put(lemma, result.getOrDefault(lemma, 0) + 1);
+    /**
+     * Возвращает для каждой леммы текста номера слов, в которых она встречается.
+     * Слова нумеруются по границам {@code offsets}, включая слова без лемм.
+     * Каждое слово разбирается анализатором того из языков, алфавиту которого принадлежит большинство его букв.
+     */
+    public static Map<String, int[]> findLemmaPositions(String text, int[] offsets, List<Language> languages) {
+        Analyzer[] analyzers = analyzers(languages);
+        Map<String, Integer> slots = new HashMap<>(512);
+        String[] lemmas = new String[256];
+        int[][] positions = new int[256][];
+        int[] sizes = new int[256];
+        int count = 0;
+        char[] buffer = new char[64];
+        for (int i = 0; i < offsets.length / 2; i++) {
+            int start = offsets[2 * i];
+            int end = offsets[2 * i + 1];
+            Analyzer analyzer = detect(text, start, end, analyzers);
+            if (Objects.isNull(analyzer)) continue;
+            if (end - start > buffer.length) buffer = new char[end - start];
+            int length = normalize(text, start, end, analyzer, buffer);
+            for (String lemma : CACHE.get(new String(buffer, 0, length), analyzer::lemmas)) {
+                Integer found = slots.get(lemma);
+                int slot;
+                if (Objects.isNull(found)) {
+                    if (count == lemmas.length) {
+                        lemmas = Arrays.copyOf(lemmas, count * 2);
+                        positions = Arrays.copyOf(positions, count * 2);
+                        sizes = Arrays.copyOf(sizes, count * 2);
+                    }
+                    slot = count++;
+                    slots.put(lemma, slot);
+                    lemmas[slot] = lemma;
+                    positions[slot] = new int[4];
+                } else {
+                    slot = found;
+                    if (positions[slot][sizes[slot] - 1] == i) continue;
+                    if (sizes[slot] == positions[slot].length) {
+                        positions[slot] = Arrays.copyOf(positions[slot], sizes[slot] * 2);
+                    }
                 }
+                positions[slot][sizes[slot]++] = i;
             }
         }
+        Map<String, int[]> result = new HashMap<>(count * 2);
+        for (int slot = 0; slot < count; slot++) {
+            result.put(lemmas[slot], Arrays.copyOf(positions[slot], sizes[slot]));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает леммы отдельного слова, прошедшие тот же фильтр, что и при индексации.
+     */
+    public static List<String> findWordLemmas(String word, List<Language> languages) {
+        List<String> result = new ArrayList<>();
+        Analyzer analyzer = detect(word, 0, word.length(), analyzers(languages));
+        if (Objects.isNull(analyzer)) return result;
+        char[] buffer = new char[word.length()];
+        int length = normalize(word, 0, word.length(), analyzer, buffer);
+        result.addAll(Arrays.asList(CACHE.get(new String(buffer, 0, length), analyzer::lemmas)));
+        return result;
+    }
+
+    /**
+     * Приводит начало слова к виду, в котором леммы хранятся в индексе, или возвращает
+     * пустую строку, если в нём нет букв ни одного из языков.
+     */
+    public static String normalizeWord(String word, List<Language> languages) {
+        Analyzer analyzer = detect(word, 0, word.length(), analyzers(languages));
+        if (Objects.isNull(analyzer)) return "";
+        char[] buffer = new char[word.length()];
+        return new String(buffer, 0, normalize(word, 0, word.length(), analyzer, buffer));
+    }
+
+    private static Analyzer[] analyzers(List<Language> languages) {
+        Analyzer[] result = new Analyzer[languages.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = languages.get(i).analyzer();
+        }
         return result;
     }
 
-    private static boolean morphFilter(String word) {
-        for (String s : PARTS_OF_SPEECH) {
-            if (word.contains(s)) {
-                return false;
+    /**
+     * Выбирает анализатор, к алфавиту которого относится больше всего букв слова.
+     */
+    private static Analyzer detect(String text, int start, int end, Analyzer[] analyzers) {
+        if (analyzers.length == 1) {
+            for (int i = start; i < end; i++) {
+                if (analyzers[0].normalize(text.charAt(i)) != 0) return analyzers[0];
             }
+            return null;
         }
-        return true;
+        Analyzer result = null;
+        int best = 0;
+        for (Analyzer analyzer : analyzers) {
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                if (analyzer.normalize(text.charAt(i)) != 0) count++;
+            }
+            if (count > best) {
+                best = count;
+                result = analyzer;
+            }
+        }
+        return result;
     }
 
-    public static String deleteHtmlTags(Document document) {
-        return document.body().text();
+    /**
+     * Оставляет только буквы алфавита анализатора в нижнем регистре и возвращает длину результата.
+     */
+    private static int normalize(String text, int start, int end, Analyzer analyzer, char[] buffer) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = analyzer.normalize(text.charAt(i));
+            if (c != 0) buffer[length++] = c;
+        }
+        return length;
     }
 }
@@ -0,0 +1,62 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Компактная запись позиций лемм страницы. Для каждой леммы хранятся её текст,
+ * число позиций, длина блока позиций в байтах и сами позиции как разности
+ * с предыдущей в формате varint, поэтому ненужные леммы пропускаются без разбора.
+ */
+public class PositionCodec {
+
+    private PositionCodec() {}
+
+    public static byte[] encode(Map<String, int[]> positions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+            byte[] lemma = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            block.reset();
+            int previous = 0;
+            for (int position : entry.getValue()) {
+                VarInt.write(block, position - previous);
+                previous = position;
+            }
+            VarInt.write(out, lemma.length);
+            out.writeBytes(lemma);
+            VarInt.write(out, entry.getValue().length);
+            VarInt.write(out, block.size());
+            out.writeBytes(block.toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Читает позиции только тех лемм, которые входят в {@code lemmas}.
+     */
+    public static Map<String, int[]> decode(byte[] bytes, Collection<String> lemmas) {
+        Map<String, int[]> result = new HashMap<>();
+        int[] position = {0};
+        while (position[0] < bytes.length && result.size() < lemmas.size()) {
+            int length = VarInt.read(bytes, position);
+            String lemma = new String(bytes, position[0], length, StandardCharsets.UTF_8);
+            position[0] += length;
+            int count = VarInt.read(bytes, position);
+            int blockLength = VarInt.read(bytes, position);
+            if (!lemmas.contains(lemma)) {
+                position[0] += blockLength;
+                continue;
+            }
+            int[] values = new int[count];
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += VarInt.read(bytes, position);
+                values[i] = previous;
+            }
+            result.put(lemma, values);
+        }
+        return result;
+    }
+}
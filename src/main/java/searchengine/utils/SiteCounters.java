@@ -0,0 +1,253 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.StatisticsSettings;
+import searchengine.model.Site;
+import searchengine.model.SiteStats;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.repositories.SiteStatsRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Число страниц и лемм каждого сайта в памяти. Изменения применяются после фиксации
+ * транзакции записи и раз в {@code statistics.flush-interval} сохраняются в таблицу site_stats.
+ * Сайты без сохранённых счётчиков и сайты, индексация которых была прервана, пересчитываются
+ * при запуске; по завершении индексации сайта счётчики сверяются с базой.
+ * <p>
+ * Рядом хранятся копии строк сайтов со статусом и ошибкой: {@link DataSaver} обновляет их
+ * вместе с базой, и статистика собирается без запросов к ней.
+ */
+@Component
+@RequiredArgsConstructor
+public class SiteCounters {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SiteRepository siteRepository;
+    private final SiteStatsRepository siteStatsRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final StatisticsSettings settings;
+    private final Map<Integer, Counters> counters = new ConcurrentHashMap<>();
+    private final Map<Integer, Site> sites = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "site-stats-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Logger logger = LogManager.getLogger(SiteCounters.class);
+
+    @PostConstruct
+    public void load() {
+        Map<Integer, SiteStats> saved = new HashMap<>();
+        siteStatsRepository.findAll().forEach(stats -> saved.put(stats.getSiteId(), stats));
+        for (Site site : siteRepository.findAll()) {
+            sites.put(site.getId(), copy(site));
+            SiteStats stats = saved.remove(site.getId());
+            if (Objects.isNull(stats) || site.getStatus() == Site.Status.INDEXING) {
+                recount(site);
+            } else {
+                counters.put(site.getId(), new Counters(stats.getPages(), stats.getLemmas()));
+            }
+        }
+        saved.keySet().forEach(siteStatsRepository::deleteById);
+        flush();
+        long interval = settings.getFlushInterval().toMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to save site statistics - " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        timer.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Прибавляет изменения к счётчикам сайта. Внутри транзакции изменения применяются
+     * только после её фиксации, чтобы откат или повтор записи не искажал счётчики.
+     */
+    public void add(int siteId, int pages, int lemmas) {
+        if (pages == 0 && lemmas == 0) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(siteId, pages, lemmas);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(siteId, pages, lemmas);
+            }
+        });
+    }
+
+    private void apply(int siteId, int pages, int lemmas) {
+        Counters siteCounters = counters.computeIfAbsent(siteId, id -> new Counters(0, 0));
+        siteCounters.pages.addAndGet(pages);
+        siteCounters.lemmas.addAndGet(lemmas);
+        siteCounters.dirty = true;
+        version.incrementAndGet();
+    }
+
+    public int getPages(int siteId) {
+        Counters siteCounters = counters.get(siteId);
+        return Objects.isNull(siteCounters) ? 0 : siteCounters.pages.get();
+    }
+
+    public int getLemmas(int siteId) {
+        Counters siteCounters = counters.get(siteId);
+        return Objects.isNull(siteCounters) ? 0 : siteCounters.lemmas.get();
+    }
+
+    /**
+     * Сайт с адресом {@code url}, кроме теневого, по состоянию на последнее обновление.
+     * Возвращается копия, изменения которой ни на что не влияют.
+     */
+    public Optional<Site> findSite(String url) {
+        return findSite(url, false);
+    }
+
+    /**
+     * Теневой сайт с адресом {@code url}: идущая или неудавшаяся переиндексация действующего сайта.
+     */
+    public Optional<Site> findShadowSite(String url) {
+        return findSite(url, true);
+    }
+
+    private Optional<Site> findSite(String url, boolean shadow) {
+        for (Site site : sites.values()) {
+            if (site.isShadow() == shadow && site.getUrl().equals(url)) return Optional.of(copy(site));
+        }
+        return Optional.empty();
+    }
+
+    public void track(Site site) {
+        sites.put(site.getId(), copy(site));
+        version.incrementAndGet();
+    }
+
+    public void updateStatus(int siteId, Site.Status status, LocalDateTime statusTime, String lastError) {
+        sites.computeIfPresent(siteId, (id, site) -> {
+            Site updated = copy(site);
+            updated.setStatus(status);
+            updated.setStatusTime(statusTime);
+            updated.setLastError(lastError);
+            return updated;
+        });
+        version.incrementAndGet();
+    }
+
+    public void touch(int siteId, LocalDateTime statusTime) {
+        Site touched = sites.computeIfPresent(siteId, (id, site) -> {
+            if (site.getStatus() != Site.Status.INDEXING) return site;
+            Site updated = copy(site);
+            updated.setStatusTime(statusTime);
+            return updated;
+        });
+        if (Objects.nonNull(touched) && touched.getStatus() == Site.Status.INDEXING) version.incrementAndGet();
+    }
+
+    public void swap(int replacedId, int shadowId) {
+        sites.computeIfPresent(replacedId, (id, site) -> withShadow(site, true));
+        sites.computeIfPresent(shadowId, (id, site) -> withShadow(site, false));
+        version.incrementAndGet();
+    }
+
+    private static Site withShadow(Site site, boolean shadow) {
+        Site updated = copy(site);
+        updated.setShadow(shadow);
+        return updated;
+    }
+
+    private static Site copy(Site site) {
+        Site result = new Site();
+        result.setId(site.getId());
+        result.setUrl(site.getUrl());
+        result.setName(site.getName());
+        result.setStatus(site.getStatus());
+        result.setStatusTime(site.getStatusTime());
+        result.setLastError(site.getLastError());
+        result.setShadow(site.isShadow());
+        return result;
+    }
+
+    /**
+     * Номер, который меняется при каждом изменении счётчиков.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Заменяет счётчики сайта числом его страниц и лемм в базе.
+     */
+    public void recount(Site site) {
+        Counters siteCounters = new Counters(pageRepository.countBySite(site), lemmaRepository.countBySite(site));
+        siteCounters.dirty = true;
+        counters.put(site.getId(), siteCounters);
+        version.incrementAndGet();
+    }
+
+    public synchronized void remove(int siteId) {
+        counters.remove(siteId);
+        sites.remove(siteId);
+        jdbcTemplate.update("delete from site_stats where site_id = ?", siteId);
+        version.incrementAndGet();
+    }
+
+    public synchronized void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        List<Counters> flushed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        counters.forEach((siteId, siteCounters) -> {
+            if (!siteCounters.dirty) return;
+            siteCounters.dirty = false;
+            flushed.add(siteCounters);
+            rows.add(new Object[]{siteId, siteCounters.pages.get(), siteCounters.lemmas.get(), now});
+        });
+        if (rows.isEmpty()) return;
+        try {
+            jdbcTemplate.batchUpdate("insert into site_stats (site_id, pages, lemmas, updated_time) values (?, ?, ?, ?) " +
+                    "on duplicate key update pages = values(pages), lemmas = values(lemmas), " +
+                    "updated_time = values(updated_time)", rows);
+        } catch (RuntimeException e) {
+            flushed.forEach(siteCounters -> siteCounters.dirty = true);
+            throw e;
+        }
+    }
+
+    private static class Counters {
+
+        private final AtomicInteger pages;
+        private final AtomicInteger lemmas;
+        private volatile boolean dirty;
+
+        Counters(int pages, int lemmas) {
+            this.pages = new AtomicInteger(pages);
+            this.lemmas = new AtomicInteger(lemmas);
+        }
+    }
+}
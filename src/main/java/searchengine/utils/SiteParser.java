@@ -3,83 +3,146 @@ package searchengine.utils;
 import lombok.Getter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jsoup.Connection;
 import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import searchengine.config.SiteParserData;
+import searchengine.crawler.SiteCrawler;
+import searchengine.dto.indexing.PageState;
 import searchengine.model.*;
+import searchengine.morphology.Language;
 import searchengine.services.IndexingServiceImpl;
 
-import java.io.IOException;
+import java.io.*;
 import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.net.UnknownHostException;
-import java.time.LocalDateTime;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 
 @Getter
-public class SiteParser extends RecursiveAction {
+public class SiteParser {
 
     private final String path;
     private final Site site;
     private final SiteParserData siteParserData;
     private final String uri;
-    private Document document;
+    private final SiteCrawler crawler;
+    private final List<Language> languages;
+    private final PageState known;
+    private Connection.Response response;
+    private String html;
+    private String contentHash;
+    private byte[] body;
+    private Charset charset;
+    private HtmlContent content;
+    private boolean notModified;
     private static final Logger logger = LogManager.getLogger(SiteParser.class);
 
-    public SiteParser(String path, Site site, SiteParserData siteParserData) {
+    public SiteParser(String path, Site site, SiteParserData siteParserData, List<Language> languages) {
+        this(path, site, siteParserData, null, languages);
+    }
+
+    public SiteParser(String path, Site site, SiteParserData siteParserData, SiteCrawler crawler) {
+        this(path, site, siteParserData, crawler, crawler.getLanguages());
+    }
+
+    private SiteParser(String path, Site site, SiteParserData siteParserData, SiteCrawler crawler,
+                       List<Language> languages) {
         this.path = path;
         this.site = site;
         this.siteParserData = siteParserData;
+        this.crawler = crawler;
+        this.languages = languages;
         uri = site.getUrl() + path;
+        known = Objects.isNull(crawler) ? null : crawler.getKnownPage(path.isEmpty() ? "/" : path);
     }
 
 
-    @Override
-    protected void compute() {
-        if (!IndexingServiceImpl.isIndexingStarted() ||
-                siteParserData.getDataSaver().isPageSaved(path, site) || !indexPage()) return;
-        Elements aElements = document.getElementsByTag("a");
-        document = null;
-        List<SiteParser> parsers = new ArrayList<>();
-        for (Element element : aElements) {
-            String path = element.attr("href");
-            if (!isCorrectPath(path)) continue;
-            if (path.startsWith("http")) path = path.replace(site.getUrl(), "");
-            if (siteParserData.getDataSaver().isPageSaved(path, site)) continue;
-            SiteParser parser = new SiteParser(path, site, siteParserData);
-            parsers.add(parser);
+    public void fetch() {
+        if (!IndexingServiceImpl.isIndexingStarted() || !crawler.isActive()) {
+            crawler.onPageCancelled();
+            return;
+        }
+        boolean fetched = false;
+        try {
+            fetched = connect();
+        } finally {
+            if (fetched) {
+                crawler.parse(this);
+            } else {
+                crawler.onPageDone(path);
+            }
+        }
+    }
+
+    /**
+     * Разбирает и индексирует загруженную страницу и добавляет её ссылки в границу обхода. Ссылки
+     * неизменившейся страницы тоже добавляются: по ним могут быть доступны новые страницы сайта.
+     */
+    public void parse() {
+        if (crawler.isFailed()) return;
+        if (notModified) {
+            content = storedContent();
+        } else {
+            extract();
+            index();
+        }
+        if (Objects.isNull(content)) return;
+        List<String> links = content.getLinks();
+        content = null;
+        for (String link : links) {
+            crawler.getFrontier().offer(link);
         }
-        invokeAll(parsers);
     }
 
-    private boolean connect() {
+    boolean connect() {
+        long start = System.nanoTime();
         try {
-            Thread.sleep(400);
-            document = Jsoup.connect(uri)
+            Connection connection = Jsoup.connect(uri)
                     .userAgent(siteParserData.getConnectionData().getUserAgent())
                     .referrer(siteParserData.getConnectionData().getReferrer())
-                    .maxBodySize(0)
+                    .maxBodySize((int) Math.min(Integer.MAX_VALUE,
+                            siteParserData.getConnectionData().getMaxBodySize().toBytes()))
                     .timeout(20_000)
                     .ignoreContentType(true)
-                    .followRedirects(true)
-                    .get();
-        } catch (IOException | InterruptedException e) {
+                    .followRedirects(true);
+            boolean conditional = Objects.nonNull(known) && Objects.nonNull(known.getContentPointer());
+            if (conditional && Objects.nonNull(known.getEtag())) {
+                connection.header("If-None-Match", known.getEtag());
+            }
+            if (conditional && Objects.nonNull(known.getLastModified())) {
+                connection.header("If-Modified-Since", known.getLastModified());
+            }
+            response = connection.execute();
+            if (response.statusCode() == 304 || !isText(response.contentType())) {
+                response.bodyStream().close();
+                recordFetch(start, String.valueOf(response.statusCode()));
+                notModified = conditional && response.statusCode() == 304;
+                return notModified;
+            }
+            read();
+            recordFetch(start, String.valueOf(response.statusCode()));
+        } catch (IOException e) {
+            recordFetch(start, e instanceof HttpStatusException
+                    ? String.valueOf(((HttpStatusException) e).getStatusCode()) : "error");
             if (e instanceof HttpStatusException) {
                 int statusCode = ((HttpStatusException) e).getStatusCode();
                 if (statusCode == 403 && site.getUrl().equals(uri)) {
-                    siteParserData.getDataSaver().
-                            updateSite(site, Site.Status.FAILED, "Ошибка индексации: требуется авторизация");
-                    this.completeExceptionally(null);
+                    fail("Ошибка индексации: требуется авторизация");
+                }
+                if (Objects.isNull(known)) {
+                    savePage(statusCode, true);
+                } else if (statusCode == 404 || statusCode == 410) {
+                    removeDisappeared();
                 }
-                savePage(statusCode, true);
             }
             if (e instanceof UnknownHostException) {
-                siteParserData.getDataSaver()
-                        .updateSite(site, Site.Status.FAILED, "Ошибка подключиня: указан не верный хост");
-                this.completeExceptionally(null);
+                fail("Ошибка подключиня: указан не верный хост");
             }
             if (e instanceof SocketTimeoutException) {
                 String errorMessage = uri.equals(site.getUrl())
@@ -91,12 +154,30 @@ public class SiteParser extends RecursiveAction {
             logger.warn("Failed to connect to page: " + uri + " - " + e.getMessage());
             return false;
         }
-        return Objects.nonNull(document) && Objects.requireNonNull(document.connection().response().contentType())
-                .toLowerCase(Locale.ROOT).contains("text");
+        return true;
     }
 
-    private boolean isCorrectPath(String path) {
-        return path.startsWith("/") || path.startsWith(site.getUrl());
+    /**
+     * Страницы с другим типом содержимого не загружаются: тело ответа закрывается непрочитанным.
+     */
+    private static boolean isText(String contentType) {
+        return Objects.nonNull(contentType) && contentType.toLowerCase(Locale.ROOT).contains("text");
+    }
+
+    private void recordFetch(long start, String status) {
+        String host = URI.create(site.getUrl()).getHost();
+        siteParserData.getCrawlMetrics().fetchTimer(host).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        siteParserData.getCrawlMetrics().response(host, status);
+    }
+
+    private void removeDisappeared() {
+        siteParserData.getDataSaver().removeAllByPage(known.getId(), site);
+        logger.info("Page disappeared: " + uri);
+    }
+
+    private void fail(String error) {
+        siteParserData.getDataSaver().updateSite(site, Site.Status.FAILED, error);
+        if (Objects.nonNull(crawler)) crawler.fail(error);
     }
 
     private Page savePage(int statusCode, boolean isFailed) {
@@ -104,34 +185,85 @@ public class SiteParser extends RecursiveAction {
         page.setCode(statusCode);
         page.setSite(site);
         page.setPath(path.length() > 0 ? path : "/");
-        page.setContent(Objects.isNull(document) ? "<Default Content>" : document.toString());
-        if (siteParserData.getDataSaver().isPageSaved(path, site)) return null;
-        site.setStatusTime(LocalDateTime.now());
-        site.setStatus(IndexingServiceImpl.isIndexingStarted() ? Site.Status.INDEXING : Site.Status.INDEXED);
-        siteParserData.getDataSaver().updateSite(site);
-        if (isFailed) siteParserData.getDataSaver().saveIndexingData(new ArrayList<>(), page);
+        page.setContent(Objects.isNull(html) ? "<Default Content>" : html);
+        if (isFailed) siteParserData.getDataSaver().saveIndexingData(page, new HashMap<>());
         return page;
     }
 
+    /**
+     * Загружает тело ответа и попутно считает его хэш. Поток загрузки только читает байты:
+     * разбор {@link #extract()} выполняется в пуле разбора, и соединение не ждёт его.
+     */
+    private void read() throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream stream = new BufferedInputStream(new DigestInputStream(response.bodyStream(), digest))) {
+            charset = HtmlExtractor.charset(stream, response.charset());
+            body = stream.readAllBytes();
+        }
+        contentHash = HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Разбирает загруженное тело {@link HtmlExtractor} потоком, не декодируя его в отдельную строку:
+     * остаётся только прочитанная разметка, которую сохраняет хранилище содержимого.
+     */
+    private void extract() {
+        try {
+            content = HtmlExtractor.extract(new InputStreamReader(new ByteArrayInputStream(body), charset));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        body = null;
+        html = content.getHtml();
+    }
+
+    /**
+     * Разметка страницы, не изменившейся с прошлого обхода, из хранилища содержимого.
+     * Условный запрос отправляется только для страниц с сохранённой разметкой.
+     */
+    private HtmlContent storedContent() {
+        String stored = siteParserData.getContentStore().readHtml(known.getContentPointer());
+        return Objects.isNull(stored) ? null : HtmlExtractor.extract(stored);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public boolean indexPage() {
         if (!connect()) return false;
-        Page page = savePage(document.connection().response().statusCode(), false);
-        if (Objects.isNull(page)) return false;
-        String text = LemmaFinder.deleteHtmlTags(document);
-        Map<String, Integer> lemmas = LemmaFinder.findLemma(text);
-        List<Lemma> lemmaList = new LinkedList<>();
-        for (String l : lemmas.keySet()) {
-            Lemma lemma = new Lemma();
-            lemma.setSite(site);
-            lemma.setLemma(l);
-            lemma.setFrequency(1);
-            Index index = new Index();
-            index.setPage(page);
-            index.setRank(lemmas.get(l));
-            lemma.addIndex(index);
-            lemmaList.add(lemma);
-        }
-        siteParserData.getDataSaver().saveIndexingData(lemmaList, page);
+        extract();
+        return index();
+    }
+
+    /**
+     * Индексирует загруженную страницу. Если содержимое сохранённой ранее страницы
+     * не изменилось, страница не лемматизируется и не индексируется повторно, но её ссылки остаются в {@link #content}.
+     * Текст, заголовок и ссылки уже извлечены {@link #extract()}.
+     */
+    private boolean index() {
+        if (Objects.nonNull(known) && contentHash.equals(known.getContentHash())) return false;
+        Page page = savePage(response.statusCode(), false);
+        if (Objects.nonNull(known)) page.setId(known.getId());
+        page.setEtag(response.header("ETag"));
+        page.setLastModified(response.header("Last-Modified"));
+        page.setContentHash(contentHash);
+        response = null;
+        String text = content.getText();
+        page.setTitle(content.getTitle());
+        int[] offsets = WordOffsets.find(text);
+        page.setContentPointer(siteParserData.getContentStore().write(text, WordOffsets.encode(offsets), page.getContent()));
+        page.setContent("");
+        html = null;
+        Map<String, int[]> positions = LemmaFinder.findLemmaPositions(text, offsets, languages);
+        Map<String, Float> ranks = new HashMap<>();
+        positions.forEach((lemma, wordPositions) -> ranks.put(lemma, (float) wordPositions.length));
+        siteParserData.getDataSaver().saveIndexingData(page, ranks,
+                siteParserData.getSitesList().isStorePositions() ? PositionCodec.encode(positions) : null);
         return true;
     }
 }
@@ -0,0 +1,168 @@
+package searchengine.utils;
+
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.dao.PessimisticLockingFailureException;
+import searchengine.model.Site;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Очередь записи данных индексации одного сайта. Страницы распределяются по полосам
+ * по хешу пути, каждую полосу обслуживает свой поток, который сохраняет страницы пачками.
+ * Если очередь полосы заполнена, поток краулера ждёт освобождения места.
+ */
+public class SiteWritePipeline {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Object STOP = new Object();
+    private final Site site;
+    private final IndexingBatchWriter writer;
+    private final Consumer<IndexingData> onSaved;
+    private final Timer batchTimer;
+    private final int batchSize;
+    private final List<BlockingQueue<Object>> stripes = new ArrayList<>();
+    private static final Logger logger = LogManager.getLogger(SiteWritePipeline.class);
+
+    public SiteWritePipeline(Site site, searchengine.config.Site siteConf,
+                             IndexingBatchWriter writer, Consumer<IndexingData> onSaved, Timer batchTimer) {
+        this.site = site;
+        this.writer = writer;
+        this.onSaved = onSaved;
+        this.batchTimer = batchTimer;
+        batchSize = Math.max(1, siteConf.getWriteBatchSize());
+        int threads = Math.max(1, siteConf.getWriterThreads());
+        int capacity = Math.max(1, siteConf.getWriteQueueCapacity() / threads);
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<Object> queue = new ArrayBlockingQueue<>(capacity);
+            stripes.add(queue);
+            Thread thread = new Thread(() -> run(queue), "writer-" + site.getId() + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void submit(IndexingData data) throws InterruptedException {
+        stripes.get(Math.floorMod(data.getPage().getPath().hashCode(), stripes.size())).put(data);
+    }
+
+    public Site getSite() {
+        return site;
+    }
+
+    /**
+     * Число страниц и служебных меток, ожидающих записи во всех полосах.
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (BlockingQueue<Object> queue : stripes) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Блокирует вызывающий поток, пока не будут записаны все страницы, переданные до вызова.
+     */
+    public void flush() {
+        List<CompletableFuture<Void>> markers = new ArrayList<>();
+        try {
+            for (BlockingQueue<Object> queue : stripes) {
+                CompletableFuture<Void> marker = new CompletableFuture<>();
+                queue.put(marker);
+                markers.add(marker);
+            }
+            CompletableFuture.allOf(markers.toArray(new CompletableFuture[0])).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void close() {
+        flush();
+        for (BlockingQueue<Object> queue : stripes) {
+            queue.offer(STOP);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run(BlockingQueue<Object> queue) {
+        List<Object> items = new ArrayList<>();
+        List<IndexingData> batch = new ArrayList<>();
+        while (true) {
+            try {
+                items.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(items, batchSize - 1);
+            for (Object item : items) {
+                if (item instanceof IndexingData) {
+                    batch.add((IndexingData) item);
+                    continue;
+                }
+                write(batch);
+                if (item == STOP) return;
+                ((CompletableFuture<Void>) item).complete(null);
+            }
+            write(batch);
+            items.clear();
+        }
+    }
+
+    /**
+     * Записывает пачку целиком, а если это не удалось, повторяет запись по одной странице,
+     * чтобы ошибка одной страницы не теряла остальные: обход уже отметил их обработанными.
+     */
+    private void write(List<IndexingData> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            save(batch);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to save pages of site " + site.getUrl() + " - " + e.getMessage());
+            if (batch.size() > 1) {
+                for (IndexingData data : batch) {
+                    try {
+                        save(List.of(data));
+                    } catch (RuntimeException failure) {
+                        logger.warn("Failed to save page " + site.getUrl() + data.getPage().getPath()
+                                + " - " + failure.getMessage());
+                    }
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Повторяет запись при взаимной блокировке транзакций. Номера, выданные новым страницам
+     * в откаченной транзакции, сбрасываются, чтобы повтор снова вставил их, а не обновлял.
+     */
+    private void save(List<IndexingData> batch) {
+        List<IndexingData> added = new ArrayList<>();
+        for (IndexingData data : batch) {
+            if (data.getPage().getId() == 0) added.add(data);
+        }
+        List<IndexingData> saved;
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                saved = writer.write(site, batch);
+                break;
+            } catch (RuntimeException e) {
+                added.forEach(data -> data.getPage().setId(0));
+                if (!(e instanceof PessimisticLockingFailureException) || attempt == MAX_ATTEMPTS) throw e;
+            } finally {
+                batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        saved.forEach(onSaved);
+    }
+}
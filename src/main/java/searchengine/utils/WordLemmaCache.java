@@ -0,0 +1,67 @@
+package searchengine.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Общий для всех потоков ограниченный кэш "форма слова -> леммы".
+ * Записи хранятся в двух поколениях: когда текущее заполняется наполовину,
+ * оно становится старым, а прежнее старое отбрасывается вместе со своими леммами.
+ * Найденные в старом поколении записи переносятся в текущее, поэтому частые слова не вытесняются.
+ */
+class WordLemmaCache {
+
+    private final int maxSize;
+    private volatile Map<String, String[]> current = new ConcurrentHashMap<>();
+    private volatile Map<String, String[]> previous = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    WordLemmaCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    String[] get(String word, Function<String, String[]> loader) {
+        String[] result = current.get(word);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        result = previous.get(word);
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            result = loader.apply(word);
+        }
+        store(word, result);
+        return result;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    int size() {
+        return current.size() + previous.size();
+    }
+
+    private void store(String word, String[] value) {
+        Map<String, String[]> map = current;
+        map.put(word, value);
+        if (map.size() > maxSize / 2) {
+            synchronized (this) {
+                if (current == map) {
+                    previous = map;
+                    current = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+}
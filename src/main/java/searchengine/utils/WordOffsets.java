@@ -0,0 +1,53 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Границы слов в тексте страницы: массив пар (начало, конец) и их компактная запись,
+ * где каждое значение хранится как разность с предыдущим в формате varint.
+ */
+public class WordOffsets {
+
+    private WordOffsets() {}
+
+    public static int[] find(String text) {
+        int[] result = new int[64];
+        int size = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i == length) break;
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (size + 2 > result.length) result = Arrays.copyOf(result, result.length * 2);
+            result[size++] = start;
+            result[size++] = i;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public static byte[] encode(int[] offsets) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(offsets.length);
+        int previous = 0;
+        for (int offset : offsets) {
+            VarInt.write(out, offset - previous);
+            previous = offset;
+        }
+        return out.toByteArray();
+    }
+
+    public static int[] decode(byte[] bytes) {
+        int[] result = new int[64];
+        int size = 0;
+        int[] position = {0};
+        int previous = 0;
+        while (position[0] < bytes.length) {
+            if (size == result.length) result = Arrays.copyOf(result, result.length * 2);
+            previous += VarInt.read(bytes, position);
+            result[size++] = previous;
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
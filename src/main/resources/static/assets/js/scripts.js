@@ -1458,6 +1458,55 @@ var API = function(){
         });
     }
     
+    function statisticsStatusClass(status) {
+        switch (status) {
+            case 'INDEXED':
+                return 'Statistics-status_checked';
+            case 'FAILED':
+                return 'Statistics-status_cancel';
+            case 'INDEXING':
+                return 'Statistics-status_pause';
+        }
+        return '';
+    }
+
+    function statisticsDescription(site) {
+        var time = new Date(site.statusTime);
+        return '<div class="Statistics-option"><strong>Status time:</strong> ' +
+            time.getDate() + '.' +
+            (time.getMonth() + 1) + '.' +
+            time.getFullYear() + ' ' +
+            time.getHours() + ':' +
+            time.getMinutes() + ':' +
+            time.getSeconds() +
+            '</div><div class="Statistics-option"><strong>Pages:</strong> ' + site.pages +
+            '</div><div class="Statistics-option"><strong>Lemmas:</strong> ' + site.lemmas +
+            '</div><div class="Statistics-option Statistics-option_error"><strong>Error:</strong> ' + site.error + '</div>';
+    }
+
+    // updates counters of the rendered sites in place so opened blocks stay open
+    function updateStatistics(result) {
+        var $blocks = $('.Statistics .HideBlock').not('.Statistics-example');
+        if (!result.result || $blocks.length !== result.statistics.detailed.length) {
+            var $site = $('select[name="site"]'),
+                site = $site.val();
+            send['statistics'].action(result, $('.Statistics'));
+            $site.val(site);
+            return;
+        }
+        $('#totalSites').text(result.statistics.total.sites);
+        $('#totalPages').text(result.statistics.total.pages);
+        $('#totalLemmas').text(result.statistics.total.lemmas);
+        result.statistics.detailed.forEach(function(site, i){
+            var $block = $blocks.eq(i);
+            $block.find('.Statistics-status')
+                .removeClass('Statistics-status_checked Statistics-status_cancel Statistics-status_pause')
+                .addClass(statisticsStatusClass(site.status))
+                .text(site.status);
+            $block.find('.Statistics-description').html(statisticsDescription(site));
+        });
+    }
+
     var send = {
         startIndexing:{
             address: '/startIndexing',
@@ -1590,19 +1639,7 @@ var API = function(){
                     $('select[name="site"] option').not(':first-child').remove();
                     result.statistics.detailed.forEach(function(site){
                         var $blockSiteExample = $('.Statistics-example').clone(true);
-                        var statusClass = '';
-                        switch (site.status) {
-                            case 'INDEXED':
-                                statusClass = 'Statistics-status_checked';
-                                break;
-                            case 'FAILED':
-                                statusClass = 'Statistics-status_cancel';
-                                break;
-                            case 'INDEXING':
-                                statusClass = 'Statistics-status_pause';
-                                break;
-                            
-                        }
+                        var statusClass = statisticsStatusClass(site.status);
                         $('select[name="site"]').append('' +
                             '<option value="' + site.url + '">' +
                                 site.url +
@@ -1612,19 +1649,8 @@ var API = function(){
                             .addClass(statusClass)
                             .text(site.status)
                             .before(site.name + ' - ' + site.url);
-                        var time = new Date(site.statusTime);
                         $blockSiteExample.find('.Statistics-description')
-                            .html('<div class="Statistics-option"><strong>Status time:</strong> ' +
-                                time.getDate() + '.' +
-                                (time.getMonth() + 1) + '.' +
-                                time.getFullYear() + ' ' +
-                                time.getHours() + ':' +
-                                time.getMinutes() + ':' +
-                                time.getSeconds() +
-                                '</div><div class="Statistics-option"><strong>Pages:</strong> ' + site.pages +
-                                '</div><div class="Statistics-option"><strong>Lemmas:</strong> ' + site.lemmas +
-                                '</div><div class="Statistics-option Statistics-option_error"><strong>Error:</strong> ' + site.error + '</div>'+
-                                '')
+                            .html(statisticsDescription(site))
     
                         
                         $statistics.append($blockSiteExample);
@@ -1730,6 +1756,12 @@ var API = function(){
                 send['statistics'].action,
                 $('.Statistics')
             )
+            if (window.EventSource) {
+                var statisticsStream = new EventSource(backendApiUrl + send['statistics'].address + '/stream');
+                statisticsStream.addEventListener('statistics', function(e){
+                    updateStatistics(JSON.parse(e.data));
+                });
+            }
             var $send = $('[data-send]');
             $send.on('submit click', function(e){
                 var $this = $(this);
@@ -0,0 +1,46 @@
+package searchengine.content;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import searchengine.config.ContentStoreSettings;
+import searchengine.crawler.CrawlActivity;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ContentCompactorTest {
+
+    private final ContentStore contentStore = mock(ContentStore.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final CrawlActivity crawlActivity = mock(CrawlActivity.class);
+    private final ContentCompactor compactor = new ContentCompactor(contentStore, jdbcTemplate,
+            new ContentStoreSettings(), crawlActivity);
+
+    @Test
+    void leavesSegmentsAloneWhileCrawling() {
+        when(contentStore.sealedSegments()).thenReturn(List.of(1, 2));
+        when(crawlActivity.isCrawling()).thenReturn(true);
+
+        compactor.compact();
+
+        verifyNoInteractions(jdbcTemplate);
+        verify(contentStore, never()).dropSegment(anyInt());
+    }
+
+    @Test
+    void dropsSegmentWithoutLivePagesWhenIdle() {
+        when(contentStore.sealedSegments()).thenReturn(List.of(1));
+        when(contentStore.usedBytes(1)).thenReturn(1000L);
+
+        compactor.compact();
+
+        verify(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        verify(contentStore).dropSegment(1);
+    }
+}
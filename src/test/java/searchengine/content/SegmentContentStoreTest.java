@@ -0,0 +1,58 @@
+package searchengine.content;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import searchengine.config.ContentStoreSettings;
+import searchengine.utils.WordOffsets;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentContentStoreTest {
+
+    private static final String TEXT = "Первый абзац, второй абзац";
+    private static final String HTML = "<html><body><p>Первый абзац,</p><p>второй абзац</p></body></html>";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesWordOffsetsNextToText() throws IOException {
+        SegmentContentStore store = open();
+        int[] offsets = WordOffsets.find(TEXT);
+
+        long pointer = store.write(TEXT, WordOffsets.encode(offsets), HTML);
+        store.close();
+        SegmentContentStore reopened = open();
+
+        StoredText stored = reopened.readText(pointer);
+        assertThat(stored.getText()).isEqualTo(TEXT);
+        assertThat(WordOffsets.decode(stored.getWordOffsets())).containsExactly(offsets);
+        assertThat(reopened.readHtml(pointer)).isEqualTo(HTML);
+    }
+
+    @Test
+    void copiedRecordKeepsWordOffsets() throws IOException {
+        SegmentContentStore store = open();
+        long first = store.write("другая страница", WordOffsets.encode(WordOffsets.find("другая страница")), "<p>другая страница</p>");
+        long second = store.write(TEXT, WordOffsets.encode(WordOffsets.find(TEXT)), HTML);
+
+        long copy = store.copy(second);
+
+        assertThat(store.readText(first).getText()).isEqualTo("другая страница");
+        assertThat(WordOffsets.decode(store.readText(copy).getWordOffsets())).containsExactly(WordOffsets.find(TEXT));
+        assertThat(store.readHtml(copy)).isEqualTo(HTML);
+    }
+
+    private SegmentContentStore open() throws IOException {
+        ContentStoreSettings settings = new ContentStoreSettings();
+        settings.setDirectory(directory.toString());
+        settings.setSegmentSize(DataSize.ofKilobytes(64));
+        SegmentContentStore store = new SegmentContentStore(settings);
+        store.open();
+        return store;
+    }
+}
@@ -0,0 +1,112 @@
+package searchengine.repositories;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.dto.search.PageSummary;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Следит, чтобы поиск и индексация страницы не возвращались к загрузке сущностей со связями:
+ * число запросов не должно зависеть от числа страниц.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:queries;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class QueryCountTest {
+
+    private static final int PAGES = 20;
+    @Autowired
+    private PageRepository pageRepository;
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManager entityManager;
+    private Statistics statistics;
+    private Site site;
+    private final List<Integer> pageIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        site = new Site();
+        site.setStatus(Site.Status.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        site.setUrl("https://example.com");
+        site.setName("Example");
+        site = siteRepository.save(site);
+        jdbcTemplate.update("insert into lemma (frequency, lemma, site_id) values (?, ?, ?)", PAGES, "слово", site.getId());
+        Integer lemmaId = jdbcTemplate.queryForObject("select id from lemma where site_id = ?", Integer.class, site.getId());
+        for (int i = 0; i < PAGES; i++) {
+            jdbcTemplate.update("insert into page (code, content, path, site_id, title, text) values (200, ?, ?, ?, ?, ?)",
+                    "<html><body>слово " + i + "</body></html>", "/page-" + i, site.getId(), "Страница " + i, "слово " + i);
+            Integer pageId = jdbcTemplate.queryForObject("select id from page where path = ?", Integer.class, "/page-" + i);
+            jdbcTemplate.update("insert into `index` (page_id, lemma_id, `rank`) values (?, ?, 1)", pageId, lemmaId);
+            pageIds.add(pageId);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void searchResultPageIsLoadedWithOneStatement() {
+        List<PageSummary> summaries = pageRepository.findSummariesByIdIn(pageIds);
+
+        assertThat(summaries).hasSize(PAGES);
+        assertThat(summaries).allSatisfy(summary -> assertThat(summary.getSiteUrl()).isEqualTo(site.getUrl()));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+    }
+
+    @Test
+    void indexPageLooksUpSiteAndPageIdWithTwoStatements() {
+        Site found = siteRepository.findByUrl(site.getUrl()).orElseThrow();
+        Optional<Integer> pageId = pageRepository.findIdByPathAndSite("/page-3", found);
+
+        assertThat(pageId).contains(pageIds.get(3));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+    }
+
+    @Test
+    void recrawlReadsPageStatesWithOneStatement() {
+        assertThat(pageRepository.findStatesBySite(site)).hasSize(PAGES);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void pageEntityDoesNotLoadItsIndexesOrSite() {
+        Page page = pageRepository.findById(pageIds.get(0)).orElseThrow();
+
+        assertThat(page.getPath()).isEqualTo("/page-0");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+    }
+}
@@ -0,0 +1,118 @@
+package searchengine.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import searchengine.config.IndexMergeSettings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndexMergerTest {
+
+    @TempDir
+    Path root;
+    private IndexDirectory directory;
+    private SiteIndex siteIndex;
+    private final IndexMergeSettings settings = new IndexMergeSettings();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        settings.setSegmentsPerTier(2);
+        settings.setMaxMergeAtOnce(4);
+        settings.setMaxBytesPerSecond(DataSize.ofBytes(0));
+        directory = new IndexDirectory(root);
+        siteIndex = new SiteIndex(1, directory, mock(SearchMetrics.class));
+        for (int pageId = 1; pageId <= 4; pageId++) {
+            siteIndex.addPage(pageId, Map.of("лемма", 1f, "слово" + pageId, 2f));
+            siteIndex.flush();
+        }
+    }
+
+    @Test
+    void mergesEligibleSegments() {
+        IndexMerger merger = merger();
+
+        merger.mergeAll();
+
+        assertThat(merger.getStatistics().getMerges()).isEqualTo(1);
+        assertThat(siteIndex.segments()).hasSize(1);
+        assertThat(siteIndex.getStatistics().getPageCount()).isEqualTo(4);
+    }
+
+    @Test
+    void throttlesReadAndWrittenBytes() throws Exception {
+        List<SiteIndex.SegmentSnapshot> merging = siteIndex.segments();
+        long[] acquired = {0};
+        IoThrottle counting = new IoThrottle(0) {
+            @Override
+            void acquire(long amount) {
+                acquired[0] += amount;
+            }
+        };
+
+        long written = siteIndex.merge(merging, counting);
+
+        assertThat(written).isPositive();
+        assertThat(acquired[0]).isGreaterThan(written);
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(siteIndex.contains("слово3")).isTrue();
+        assertThat(siteIndex.segments().get(0).getSegment().docFreq("лемма")).isEqualTo(4);
+    }
+
+    @Test
+    void skipsSiteRemovedBeforeMerge() throws IOException {
+        List<SiteIndex.SegmentSnapshot> eligible = new TieredMergePolicy(settings).select(siteIndex.segments());
+        assertThat(eligible).isNotEmpty();
+        IndexMerger merger = merger();
+
+        siteIndex.close();
+        directory.deleteSiteFiles(1, Set.of());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), merger::mergeAll);
+        assertThat(siteIndex.segments()).isEmpty();
+        assertThat(merger.getStatistics().getMerges()).isZero();
+        assertThat(merger.getStatistics().getSegments()).isZero();
+    }
+
+    @Test
+    void abandonsMergeWhenSiteIsRemovedMidway() throws Exception {
+        List<SiteIndex.SegmentSnapshot> merging = siteIndex.segments();
+        IoThrottle closing = new IoThrottle(0) {
+            @Override
+            void acquire(long amount) {
+                siteIndex.close();
+            }
+        };
+
+        long written = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> siteIndex.merge(merging, closing));
+
+        assertThat(written).isEqualTo(-1);
+        assertThat(segmentFiles()).hasSize(merging.size());
+    }
+
+    private IndexMerger merger() {
+        SearchIndex searchIndex = mock(SearchIndex.class);
+        when(searchIndex.siteIndexes()).thenReturn(List.of(siteIndex));
+        return new IndexMerger(searchIndex, settings, new SimpleMeterRegistry());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(root)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("site-1-")).toList();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixExpansionTest {
+
+    @Test
+    void sumsDocFreqsOfSameTermAcrossParts() {
+        ListCursor first = new ListCursor(new String[]{"дом", "дома", "домик"}, new int[]{5, 1, 2});
+        ListCursor second = new ListCursor(new String[]{"дома", "домик"}, new int[]{3, 2});
+
+        Set<String> top = PrefixExpansion.top(List.of(first, second), 2);
+
+        assertThat(top).containsExactlyInAnyOrder("дом", "дома");
+    }
+
+    @Test
+    void prefersEarlierTermOnEqualDocFreq() {
+        ListCursor cursor = new ListCursor(new String[]{"дом", "дома", "домик"}, new int[]{2, 2, 2});
+
+        assertThat(PrefixExpansion.top(List.of(cursor), 2)).containsExactlyInAnyOrder("дом", "дома");
+    }
+
+    @Test
+    void stopsOnceRemainingTermsCannotEnterTop() {
+        ListCursor cursor = new ListCursor(new String[]{"дом", "дома", "домик", "домина", "домов"},
+                new int[]{9, 8, 1, 1, 1});
+
+        Set<String> top = PrefixExpansion.top(List.of(cursor), 2);
+
+        assertThat(top).containsExactlyInAnyOrder("дом", "дома");
+        assertThat(cursor.read).as("дальше первой леммы, которая уже не попадёт в результат, курсор не идёт").isEqualTo(3);
+    }
+
+    @Test
+    void returnsNothingWithoutTermsOrLimit() {
+        assertThat(PrefixExpansion.top(List.of(new ListCursor(new String[0], new int[0])), 5)).isEmpty();
+        assertThat(PrefixExpansion.top(List.of(new ListCursor(new String[]{"дом"}, new int[]{1})), 0)).isEmpty();
+    }
+
+    /**
+     * Курсор по готовому списку лемм с точной оценкой сверху, как у буфера в памяти.
+     */
+    private static class ListCursor implements TermCursor {
+
+        private final String[] terms;
+        private final int[] docFreqs;
+        private int index = -1;
+        private int read;
+
+        ListCursor(String[] terms, int[] docFreqs) {
+            this.terms = terms;
+            this.docFreqs = docFreqs;
+        }
+
+        @Override
+        public boolean next() {
+            if (index == terms.length) return false;
+            index++;
+            if (index < terms.length) read++;
+            return index < terms.length;
+        }
+
+        @Override
+        public byte[] term() {
+            return terms[index].getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int docFreq() {
+            return docFreqs[index];
+        }
+
+        @Override
+        public int maxDocFreq() {
+            int max = 0;
+            for (int i = Math.max(index, 0); i < docFreqs.length; i++) max = Math.max(max, docFreqs[i]);
+            return max;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package searchengine.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class QueryCursorTest {
+
+    @TempDir
+    Path root;
+    private final MemoryIndex memory = new MemoryIndex();
+    private final Scorer scorer = new RankSumScorer();
+
+    @BeforeEach
+    void setUp() {
+        page(1, "а", 1f, "б", 2f, "д", 2f);
+        page(2, "а", 3f, "в", 1f);
+        page(3, "а", 1f, "б", 1f, "в", 1f);
+        page(4, "б", 5f);
+        page(5, "а", 2f, "г", 1f);
+        page(6, "а", 1f, "б", 4f, "г", 2f, "е", 3f);
+    }
+
+    @Test
+    void conjunctionSkipsExcludedPages() {
+        QueryNode query = QueryNode.and(List.of(term("а"), term("б"), new QueryNode.Not(term("в"))));
+
+        QueryCursor cursor = plan(query);
+
+        assertThat(cursor).isInstanceOf(QueryCursor.Conjunction.class);
+        assertThat(pages(cursor)).containsExactly(Map.entry(1, 3f), Map.entry(6, 5f));
+    }
+
+    @Test
+    void unknownExclusionDoesNotEmptyConjunction() {
+        QueryNode query = QueryNode.and(List.of(term("г"), new QueryNode.Not(term("я"))));
+
+        assertThat(pages(plan(query))).containsExactly(Map.entry(5, 1f), Map.entry(6, 2f));
+    }
+
+    @Test
+    void conjunctionOfExclusionsOnlyFindsNothing() {
+        QueryNode query = QueryNode.and(List.of(new QueryNode.Not(term("а")), new QueryNode.Not(term("б"))));
+
+        assertThat(plan(query)).isNull();
+    }
+
+    @Test
+    void lazyAndMaterializedDisjunctionsAgree() {
+        QueryNode query = QueryNode.or(List.of(term("в"), term("г"), term("д"), term("е")));
+
+        QueryCursor planned = plan(query);
+        QueryCursor lazy = new QueryCursor.Disjunction(new QueryCursor[]{cursor("в"), cursor("г"), cursor("д"), cursor("е")});
+
+        assertThat(planned).as("операндов больше, чем стоит сортировка их страниц")
+                .isInstanceOf(QueryCursor.Materialized.class);
+        assertThat(pages(planned)).containsExactlyEntriesOf(pages(lazy))
+                .containsExactly(Map.entry(1, 2f), Map.entry(2, 1f), Map.entry(3, 1f), Map.entry(5, 1f),
+                        Map.entry(6, 5f));
+    }
+
+    @Test
+    void disjunctionOfTwoListsStaysLazy() {
+        QueryCursor cursor = plan(QueryNode.or(List.of(term("б"), term("в"))));
+
+        assertThat(cursor).isInstanceOf(QueryCursor.Disjunction.class);
+        assertThat(pages(cursor)).containsExactly(Map.entry(1, 2f), Map.entry(2, 1f), Map.entry(3, 2f),
+                Map.entry(4, 5f), Map.entry(6, 4f));
+    }
+
+    @Test
+    void disjunctionFollowsShortLeadWithAdvance() {
+        QueryNode query = QueryNode.and(List.of(term("г"), QueryNode.or(List.of(term("б"), term("в")))));
+
+        assertThat(pages(plan(query))).containsExactly(Map.entry(6, 6f));
+    }
+
+    @Test
+    void exclusionInsideOrIsDroppedOnResolve() {
+        QueryNode query = QueryNode.or(List.of(term("г"), new QueryNode.Not(term("а"))));
+
+        QueryNode resolved = query.resolve(lemma -> true, prefix -> Set.of());
+
+        assertThat(resolved.key()).isEqualTo("г");
+        assertThat(pages(plan(resolved))).containsExactly(Map.entry(5, 1f), Map.entry(6, 2f));
+    }
+
+    @Test
+    void prefixExpandsOverMemoryAndSegments() throws Exception {
+        SiteIndex index = new SiteIndex(1, new IndexDirectory(root), mock(SearchMetrics.class));
+        index.addPage(1, Map.of("кот", 1f));
+        index.addPage(2, Map.of("котёл", 2f));
+        index.flush();
+        index.addPage(3, Map.of("котёл", 1f, "кот", 1f));
+        index.addPage(4, Map.of("кит", 1f));
+
+        QueryNode query = new QueryNode.Prefix("кот")
+                .resolve(index::contains, prefix -> index.withTerms(prefix, cursors -> PrefixExpansion.top(cursors, 10)));
+        TopHits hits = new TopHits(10);
+        index.search(query, scorer, hits, new SearchMetrics.Stages());
+
+        assertThat(query.key()).isEqualTo("(|кот котёл)");
+        assertThat(hits.toList(0)).extracting(SearchHit::getPageId).containsExactly(2, 3, 1);
+        Set<String> top = index.withTerms("кот", cursors -> PrefixExpansion.top(cursors, 1));
+        assertThat(top).as("при равном числе страниц берётся меньшая лемма").containsExactly("кот");
+    }
+
+    private void page(int pageId, Object... ranks) {
+        Map<String, Float> result = new HashMap<>();
+        for (int i = 0; i < ranks.length; i += 2) {
+            result.put((String) ranks[i], (Float) ranks[i + 1]);
+        }
+        memory.updatePage(pageId, List.of(), result);
+    }
+
+    private QueryCursor plan(QueryNode query) {
+        Map<String, Float> weights = new HashMap<>();
+        for (String lemma : List.of("а", "б", "в", "г", "д", "е")) {
+            weights.put(lemma, 1f);
+        }
+        return new QueryPlanner(memory, weights, scorer, statistics()).plan(query);
+    }
+
+    private QueryCursor cursor(String lemma) {
+        return new QueryCursor.Term(memory.cursor(lemma), 1f, scorer, statistics());
+    }
+
+    private SiteStatistics statistics() {
+        return new SiteStatistics(memory.pageCount(), memory.totalLength());
+    }
+
+    private Map<Integer, Float> pages(QueryCursor cursor) {
+        Map<Integer, Float> result = new LinkedHashMap<>();
+        for (int pageId = cursor.next(); pageId != PostingCursor.NO_MORE; pageId = cursor.next()) {
+            result.put(pageId, cursor.score(memory.pageLength(pageId)));
+        }
+        return result;
+    }
+
+    private static QueryNode term(String lemma) {
+        return new QueryNode.Term(lemma);
+    }
+}
@@ -0,0 +1,114 @@
+package searchengine.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.SearchSettings;
+import searchengine.config.SitesList;
+import searchengine.model.PagePositions;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.PagePositionsRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.utils.PositionCodec;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchIndexTest {
+
+    @TempDir
+    Path root;
+    private final PagePositionsRepository pagePositionsRepository = mock(PagePositionsRepository.class);
+    private final Map<Integer, Map<String, int[]>> positions = new HashMap<>();
+    private final List<Integer> loaded = new ArrayList<>();
+    private SearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        SearchSettings settings = new SearchSettings();
+        settings.setIndexDirectory(root.toString());
+        searchIndex = new SearchIndex(mock(IndexRepository.class), mock(SiteRepository.class), pagePositionsRepository,
+                new SitesList(), new RankSumScorer(), settings, mock(SearchMetrics.class));
+        searchIndex.load();
+        when(pagePositionsRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<PagePositions> result = new ArrayList<>();
+            for (Integer pageId : invocation.<Iterable<Integer>>getArgument(0)) {
+                loaded.add(pageId);
+                PagePositions pagePositions = new PagePositions();
+                pagePositions.setPageId(pageId);
+                pagePositions.setPositions(PositionCodec.encode(positions.get(pageId)));
+                result.add(pagePositions);
+            }
+            return result;
+        });
+    }
+
+    @Test
+    void phraseVerificationStopsOnceResultIsSettled() {
+        for (int pageId = 1; pageId <= 2000; pageId++) {
+            addPage(pageId, 3000 - pageId, new int[]{0}, new int[]{1});
+        }
+
+        SearchResult result = searchIndex.search(new SearchQuery(phrase()), null, 0, 10);
+
+        assertThat(result.getHits()).extracting(SearchHit::getPageId).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(result.getTotal()).isEqualTo(2000);
+        assertThat(loaded).hasSizeLessThan(50);
+    }
+
+    @Test
+    void pagesWithoutPhraseAreDropped() {
+        for (int pageId = 1; pageId <= 2000; pageId++) {
+            addPage(pageId, 3000 - pageId, new int[]{0}, new int[]{pageId % 2 == 0 ? 1 : 5});
+        }
+
+        SearchResult result = searchIndex.search(new SearchQuery(phrase()), null, 0, 5);
+
+        assertThat(result.getHits()).extracting(SearchHit::getPageId).containsExactly(2, 4, 6, 8, 10);
+        assertThat(loaded).hasSizeLessThan(50);
+    }
+
+    @Test
+    void excludedPhraseIsCheckedOnlyForCandidatesThatCanBeReturned() {
+        for (int pageId = 1; pageId <= 5000; pageId++) {
+            addPage(pageId, 6000 - pageId, new int[]{0}, new int[]{pageId % 2 == 0 ? 1 : 5});
+        }
+        QueryNode query = QueryNode.and(List.of(new QueryNode.Term("а"), new QueryNode.Not(phrase())));
+
+        SearchResult result = searchIndex.search(new SearchQuery(query), null, 0, 5);
+
+        assertThat(result.getHits()).extracting(SearchHit::getPageId).containsExactly(1, 3, 5, 7, 9);
+        assertThat(loaded).hasSizeLessThan(50);
+    }
+
+    @Test
+    void proximityRanksWholeRequestedWindow() {
+        for (int pageId = 1; pageId <= 300; pageId++) {
+            addPage(pageId, 1000 - pageId, new int[]{0}, new int[]{pageId == 150 ? 1 : 900});
+        }
+        SearchQuery query = new SearchQuery(QueryNode.and(List.of(new QueryNode.Term("а"), new QueryNode.Term("б"))));
+
+        List<SearchHit> all = searchIndex.search(query, null, 0, 200).getHits();
+        List<SearchHit> second = searchIndex.search(query, null, 100, 100).getHits();
+
+        assertThat(all.get(0).getPageId()).isEqualTo(150);
+        assertThat(second).extracting(SearchHit::getPageId)
+                .containsExactlyElementsOf(all.subList(100, 200).stream().map(SearchHit::getPageId).toList());
+    }
+
+    private void addPage(int pageId, float rank, int[] first, int[] second) {
+        searchIndex.addPage(1, pageId, Map.of("а", rank, "б", 1f));
+        positions.put(pageId, Map.of("а", first, "б", second));
+    }
+
+    private static QueryNode phrase() {
+        SearchQuery.Phrase phrase = new SearchQuery.Phrase(List.of(
+                new SearchQuery.Term(Set.of("а"), 0), new SearchQuery.Term(Set.of("б"), 1)));
+        return new QueryNode.Phrase(phrase, QueryNode.and(List.of(new QueryNode.Term("а"), new QueryNode.Term("б"))));
+    }
+}
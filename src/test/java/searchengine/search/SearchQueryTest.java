@@ -0,0 +1,78 @@
+package searchengine.search;
+
+import org.junit.jupiter.api.Test;
+import searchengine.morphology.Language;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchQueryTest {
+
+    @Test
+    void andBindsTighterThanOr() {
+        assertThat(key("кот дом | лес")).isEqualTo("(|(&дом кот) лес)");
+        assertThat(key("кот AND дом OR лес")).isEqualTo("(|(&дом кот) лес)");
+        assertThat(key("кот (дом | лес)")).isEqualTo("(&(|дом лес) кот)");
+    }
+
+    @Test
+    void operatorsAfterWordAreRecognized() {
+        assertThat(key("кот OR лес")).isEqualTo("(|кот лес)");
+        assertThat(key("лес -кот")).isEqualTo("(&-кот лес)");
+        assertThat(key("лес NOT кот")).isEqualTo("(&-кот лес)");
+    }
+
+    @Test
+    void unbalancedParenthesesAreClosedOrSkipped() {
+        assertThat(key("кот (дом | лес")).isEqualTo("(&(|дом лес) кот)");
+        assertThat(key("кот) дом")).isEqualTo("(&дом кот)");
+        assertThat(key(")) кот")).isEqualTo("кот");
+    }
+
+    @Test
+    void unclosedQuoteRunsToEndOfQuery() {
+        assertThat(key("\"кот дом")).isEqualTo("\"0[кот]1[дом]\"");
+        assertThat(key("лес \"кот")).isEqualTo("(&кот лес)");
+    }
+
+    @Test
+    void operatorWithoutOperandIsSkipped() {
+        assertThat(key("кот |")).isEqualTo("кот");
+        assertThat(key("кот -")).isEqualTo("кот");
+        assertThat(SearchQuery.parse("NOT", Language.DEFAULT).getRoot()).isNull();
+    }
+
+    @Test
+    void doubleNegationIsTheOperandItself() {
+        assertThat(key("-(-кот) дом")).isEqualTo("(&дом кот)");
+        assertThat(key("NOT -кот")).isEqualTo("кот");
+    }
+
+    @Test
+    void queryOfExclusionsOnlyIsRecognized() {
+        assertThat(SearchQuery.parse("-кот", Language.DEFAULT).isExclusionOnly()).isTrue();
+        assertThat(SearchQuery.parse("-кот | NOT дом", Language.DEFAULT).isExclusionOnly()).isTrue();
+        assertThat(SearchQuery.parse("лес -кот", Language.DEFAULT).isExclusionOnly()).isFalse();
+        assertThat(SearchQuery.parse("-(-кот)", Language.DEFAULT).isExclusionOnly()).isFalse();
+    }
+
+    @Test
+    void exclusionInsideOrIsDroppedOnResolve() {
+        SearchQuery query = SearchQuery.parse("кот | -дом", Language.DEFAULT);
+
+        assertThat(query.key()).isEqualTo("(|-дом кот)");
+        assertThat(query.isExclusionOnly()).isFalse();
+        assertThat(query.getRoot().resolve(lemma -> true, prefix -> Set.of()).key()).isEqualTo("кот");
+    }
+
+    @Test
+    void shortPrefixIsIgnored() {
+        assertThat(key("ко*")).isEqualTo("ко*");
+        assertThat(key("к* дом")).isEqualTo("дом");
+    }
+
+    private static String key(String query) {
+        return SearchQuery.parse(query, Language.DEFAULT).key();
+    }
+}
@@ -0,0 +1,151 @@
+package searchengine.utils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlExtractorTest {
+
+    private static final String[] WORDS = {"год", "человек", "время", "дело", "жизнь", "работа", "поиск", "страница",
+            "сайт", "данные", "новый", "большой", "сказать", "сделать", "online", "market", "data", "release"};
+    private static final String[] INLINE = {"span", "b", "i", "em", "strong", "a", "code", "small"};
+    private static final String[] BLOCK = {"div", "p", "h2", "section", "blockquote", "article"};
+
+    @Test
+    void matchesJsoupOnCorpus() {
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            assertMatchesJsoup(page(random, i));
+        }
+    }
+
+    @Test
+    void matchesJsoupOnMarkupEdgeCases() {
+        List<String> pages = List.of(
+                "<html><head><title> Заголовок  &amp; ещё </title></head><body><p>Первый&nbsp;абзац</p>второй</body></html>",
+                "<HTML><BODY><DIV>Верхний</DIV><SPAN>регистр</SPAN><BR>перенос</BODY></HTML>",
+                "<body><!-- <p>комментарий</p> -->текст<!DOCTYPE x>после</body>",
+                "<body><a href=\"/a?x=1&amp;y=2\" title='a > b'>ссылка</a><a HREF=/plain>вторая</a><a>без</a></body>",
+                "<body><script>var s = '<div>не текст</div>';</script><style>p{}</style>видимый</body>",
+                "<body>1 &lt; 2 и 3 > 2, а <5 не тег</body>",
+                "<body><ul><li>один</li><li>два</li></ul><table><tr><td>три</td><td>четыре</td></tr></table></body>",
+                "<body>слово<b>слитно</b>, <i>раздельно</i>\n\t  пробелы</body>",
+                "<head><meta charset=utf-8><title>Без body</title></head>текст сразу после head",
+                "<body><p>незакрытый<p>абзац<div>блок");
+        pages.forEach(HtmlExtractorTest::assertMatchesJsoup);
+    }
+
+    @Test
+    void readsInputInSmallPortions() throws IOException {
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            String html = page(random, i);
+            HtmlContent whole = HtmlExtractor.extract(html);
+            HtmlContent streamed = HtmlExtractor.extract(new TrickleReader(html, 1 + random.nextInt(7)));
+
+            assertThat(streamed.getTitle()).isEqualTo(whole.getTitle());
+            assertThat(streamed.getText()).isEqualTo(whole.getText());
+            assertThat(streamed.getLinks()).isEqualTo(whole.getLinks());
+            assertThat(streamed.getHtml()).isEqualTo(html);
+        }
+    }
+
+    @Test
+    void detectsCharsetWithoutConsumingBody() throws IOException {
+        String html = "<html><head><meta charset=\"windows-1251\"><title>Кодировка</title></head><body>текст</body></html>";
+        InputStream body = new BufferedInputStream(new ByteArrayInputStream(html.getBytes(Charset.forName("windows-1251"))));
+
+        Charset charset = HtmlExtractor.charset(body, null);
+        HtmlContent content = HtmlExtractor.extract(new InputStreamReader(body, charset));
+
+        assertThat(charset).isEqualTo(Charset.forName("windows-1251"));
+        assertThat(content.getHtml()).isEqualTo(html);
+        assertThat(content.getText()).isEqualTo("текст");
+        assertThat(HtmlExtractor.charset(body, "UTF-8")).isEqualTo(StandardCharsets.UTF_8);
+    }
+
+    private static void assertMatchesJsoup(String html) {
+        Document document = Jsoup.parse(html);
+        List<String> links = new ArrayList<>();
+        for (Element link : document.select("a[href]")) {
+            links.add(link.attr("href"));
+        }
+
+        HtmlContent content = HtmlExtractor.extract(html);
+
+        assertThat(content.getText()).as(html).isEqualTo(document.body().text());
+        assertThat(content.getTitle()).as(html).isEqualTo(document.title());
+        assertThat(content.getLinks()).as(html).isEqualTo(links);
+    }
+
+    private static String page(Random random, int number) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html lang=\"ru\"><head><meta charset=\"utf-8\"><title>")
+                .append(words(random, 4)).append("</title><script>if (a < b && c) { x = '</p>'; }</script>")
+                .append("<style>.menu > li { margin: 0 }</style></head><body>");
+        int blocks = 5 + random.nextInt(10);
+        for (int i = 0; i < blocks; i++) {
+            String block = BLOCK[random.nextInt(BLOCK.length)];
+            html.append('<').append(block).append(" class=\"c").append(i).append("\">").append(words(random, 3));
+            if (random.nextBoolean()) {
+                String inline = INLINE[random.nextInt(INLINE.length)];
+                html.append(random.nextBoolean() ? " " : "").append('<').append(inline);
+                if (inline.equals("a")) html.append(" href=\"/page/").append(number).append('/').append(i).append('"');
+                html.append('>').append(words(random, 2)).append("</").append(inline).append('>');
+            }
+            if (random.nextInt(4) == 0) html.append(" &laquo;").append(words(random, 1)).append("&raquo;&nbsp;");
+            if (random.nextInt(5) == 0) html.append("<!-- ").append(words(random, 2)).append(" -->");
+            if (random.nextInt(6) == 0) html.append("<br>");
+            html.append(random.nextBoolean() ? "\n  " : "").append("</").append(block).append('>');
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) result.append(random.nextInt(5) == 0 ? ",  " : " ");
+            result.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Отдаёт текст порциями не длиннее заданной, как медленное соединение.
+     */
+    private static class TrickleReader extends Reader {
+
+        private final StringReader reader;
+        private final int portion;
+
+        TrickleReader(String text, int portion) {
+            reader = new StringReader(text);
+            this.portion = portion;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(length, portion));
+        }
+
+        @Override
+        public void close() {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.config.StatisticsSettings;
+import searchengine.model.Site;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.repositories.SiteStatsRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SiteCountersTest {
+
+    private final SiteCounters counters = new SiteCounters(mock(JdbcTemplate.class), mock(SiteRepository.class),
+            mock(SiteStatsRepository.class), mock(PageRepository.class), mock(LemmaRepository.class),
+            new StatisticsSettings());
+
+    @Test
+    void tracksStatusWithoutDatabase() {
+        counters.track(site(1, false, Site.Status.INDEXING));
+        LocalDateTime failedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        counters.updateStatus(1, Site.Status.FAILED, failedAt, "Ошибка индексации");
+
+        Site found = counters.findSite("https://example.com").orElseThrow();
+        assertThat(found.getStatus()).isEqualTo(Site.Status.FAILED);
+        assertThat(found.getStatusTime()).isEqualTo(failedAt);
+        assertThat(found.getLastError()).isEqualTo("Ошибка индексации");
+    }
+
+    @Test
+    void touchMovesStatusTimeOfIndexingSiteOnly() {
+        counters.track(site(1, false, Site.Status.INDEXING));
+        LocalDateTime touchedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        long version = counters.version();
+
+        counters.touch(1, touchedAt);
+        counters.updateStatus(1, Site.Status.FAILED, touchedAt, "Ошибка индексации");
+        long failedVersion = counters.version();
+        counters.touch(1, touchedAt.plusMinutes(1));
+
+        Site found = counters.findSite("https://example.com").orElseThrow();
+        assertThat(failedVersion).isEqualTo(version + 2);
+        assertThat(counters.version()).isEqualTo(failedVersion);
+        assertThat(found.getStatus()).isEqualTo(Site.Status.FAILED);
+        assertThat(found.getStatusTime()).isEqualTo(touchedAt);
+    }
+
+    @Test
+    void findsShadowSiteOnlyAfterSwap() {
+        counters.track(site(1, false, Site.Status.INDEXED));
+        counters.track(site(2, true, Site.Status.INDEXING));
+        counters.updateStatus(2, Site.Status.INDEXED, LocalDateTime.now(), null);
+        assertThat(counters.findSite("https://example.com").orElseThrow().getId()).isEqualTo(1);
+        assertThat(counters.findShadowSite("https://example.com").orElseThrow().getId()).isEqualTo(2);
+
+        counters.swap(1, 2);
+        counters.remove(1);
+
+        assertThat(counters.findSite("https://example.com").orElseThrow().getId()).isEqualTo(2);
+        assertThat(counters.findShadowSite("https://example.com")).isEmpty();
+        counters.remove(2);
+        assertThat(counters.findSite("https://example.com")).isEmpty();
+    }
+
+    @Test
+    void returnedSiteIsCopy() {
+        counters.track(site(1, false, Site.Status.INDEXED));
+
+        counters.findSite("https://example.com").orElseThrow().setStatus(Site.Status.FAILED);
+
+        assertThat(counters.findSite("https://example.com").orElseThrow().getStatus()).isEqualTo(Site.Status.INDEXED);
+    }
+
+    private static Site site(int id, boolean shadow, Site.Status status) {
+        Site site = new Site();
+        site.setId(id);
+        site.setUrl("https://example.com");
+        site.setName("Example");
+        site.setStatus(status);
+        site.setStatusTime(LocalDateTime.now());
+        site.setShadow(shadow);
+        return site;
+    }
+}
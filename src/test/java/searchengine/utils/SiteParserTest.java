@@ -0,0 +1,149 @@
+package searchengine.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.ConnectionData;
+import searchengine.config.SiteParserData;
+import searchengine.config.SitesList;
+import searchengine.content.ContentStore;
+import searchengine.crawler.CrawlFrontier;
+import searchengine.crawler.CrawlMetrics;
+import searchengine.crawler.SiteCrawler;
+import searchengine.dto.indexing.PageState;
+import searchengine.model.Site;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class SiteParserTest {
+
+    private static final String INDEX = "<html><head><title>Главная</title></head>"
+            + "<body><a href=\"/old\">старая</a> <a href=\"/new\">новая</a></body></html>";
+    private static final String ETAG = "\"v1\"";
+    private final DataSaver dataSaver = mock(DataSaver.class);
+    private final ContentStore contentStore = mock(ContentStore.class);
+    private HttpServer server;
+    private Site site;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = INDEX.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        site = new Site();
+        site.setId(1);
+        site.setUrl("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void unchangedPageStillOffersItsLinks() throws Exception {
+        SiteCrawler crawler = crawler(state(null, sha256(INDEX), null));
+
+        SiteParser parser = new SiteParser("/", site, parserData(), crawler);
+        assertThat(parser.connect()).isTrue();
+        parser.parse();
+
+        assertThat(crawler.getFrontier().isVisited("/new")).isTrue();
+        verify(dataSaver, never()).saveIndexingData(any(), any(), any());
+    }
+
+    @Test
+    void bodyIsExtractedOnParseNotOnFetch() throws Exception {
+        SiteCrawler crawler = crawler(state(null, "old", null));
+
+        SiteParser parser = new SiteParser("/", site, parserData(), crawler);
+        assertThat(parser.connect()).isTrue();
+        assertThat(parser.getContentHash()).isEqualTo(sha256(INDEX));
+        assertThat(parser.getContent()).isNull();
+        parser.parse();
+
+        assertThat(parser.getBody()).isNull();
+        assertThat(crawler.getFrontier().isVisited("/new")).isTrue();
+    }
+
+    @Test
+    void notModifiedPageOffersLinksOfStoredMarkup() {
+        when(contentStore.readHtml(7L)).thenReturn(INDEX);
+        SiteCrawler crawler = crawler(state(ETAG, "old", 7L));
+
+        SiteParser parser = new SiteParser("/", site, parserData(), crawler);
+        assertThat(parser.connect()).isTrue();
+        parser.parse();
+
+        assertThat(crawler.getFrontier().isVisited("/new")).isTrue();
+        verify(dataSaver, never()).saveIndexingData(any(), any(), any());
+    }
+
+    @Test
+    void pageWithoutStoredMarkupIsRequestedUnconditionally() {
+        SiteCrawler crawler = crawler(state(ETAG, "old", null));
+
+        SiteParser parser = new SiteParser("/", site, parserData(), crawler);
+        assertThat(parser.connect()).isTrue();
+        parser.parse();
+
+        assertThat(crawler.getFrontier().isVisited("/new")).isTrue();
+        verify(contentStore, never()).readHtml(anyLong());
+        verify(dataSaver).saveIndexingData(any(), any(), any());
+    }
+
+    private SiteParserData parserData() {
+        ConnectionData connectionData = new ConnectionData();
+        connectionData.setUserAgent("test");
+        connectionData.setReferrer("http://localhost");
+        CrawlMetrics crawlMetrics = mock(CrawlMetrics.class);
+        when(crawlMetrics.fetchTimer(any())).thenReturn(mock(Timer.class));
+        return new SiteParserData(dataSaver, connectionData, new SitesList(), null, null, null,
+                contentStore, crawlMetrics);
+    }
+
+    private SiteCrawler crawler(PageState state) {
+        return new SiteCrawler(site, new searchengine.config.Site(), new CrawlFrontier(site), null, Map.of("/", state));
+    }
+
+    private static PageState state(String etag, String contentHash, Long contentPointer) {
+        PageState state = mock(PageState.class);
+        when(state.getId()).thenReturn(1);
+        when(state.getPath()).thenReturn("/");
+        when(state.getEtag()).thenReturn(etag);
+        when(state.getContentHash()).thenReturn(contentHash);
+        when(state.getContentPointer()).thenReturn(contentPointer);
+        return state;
+    }
+
+    private static String sha256(String body) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+}
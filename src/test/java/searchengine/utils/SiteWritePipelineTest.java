@@ -0,0 +1,80 @@
+package searchengine.utils;
+
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SiteWritePipelineTest {
+
+    private final IndexingBatchWriter writer = mock(IndexingBatchWriter.class);
+    private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void savesRestOfBatchPageByPageWhenOnePageFails() {
+        when(writer.write(any(), anyList())).thenAnswer(invocation -> {
+            List<IndexingData> batch = invocation.getArgument(1);
+            for (IndexingData data : batch) {
+                if (data.getPage().getPath().equals("/bad")) throw new DataIntegrityViolationException("Data too long");
+            }
+            batch.forEach(data -> data.getPage().setId(data.getPage().getPath().length()));
+            return new ArrayList<>(batch);
+        });
+
+        write("/a", "/bad", "/b", "/c");
+
+        assertThat(saved).containsExactly("/a", "/b", "/c");
+    }
+
+    @Test
+    void retriesDeadlockWithFreshPageIds() {
+        int[] calls = {0};
+        when(writer.write(any(), anyList())).thenAnswer(invocation -> {
+            List<IndexingData> batch = invocation.getArgument(1);
+            for (IndexingData data : batch) {
+                assertThat(data.getPage().getId()).isZero();
+                data.getPage().setId(7);
+            }
+            if (++calls[0] == 1) throw new PessimisticLockingFailureException("Deadlock found");
+            return new ArrayList<>(batch);
+        });
+
+        write("/a");
+
+        assertThat(calls[0]).isEqualTo(2);
+        assertThat(saved).containsExactly("/a");
+    }
+
+    private void write(String... paths) {
+        Site site = new Site();
+        site.setId(1);
+        site.setUrl("https://example.com");
+        searchengine.config.Site siteConf = new searchengine.config.Site();
+        siteConf.setWriteBatchSize(paths.length);
+        SiteWritePipeline pipeline = new SiteWritePipeline(site, siteConf, writer,
+                data -> saved.add(data.getPage().getPath()), mock(Timer.class));
+        for (String path : paths) {
+            Page page = new Page();
+            page.setPath(path);
+            try {
+                pipeline.submit(new IndexingData(page, Map.of(), null));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        pipeline.close();
+    }
+}